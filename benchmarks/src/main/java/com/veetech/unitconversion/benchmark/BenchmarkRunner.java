@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks once for each of a list of thread counts, with the GC
+ * profiler reporting allocation per operation. Results of each run are
+ * written as JSON to benchmarks-&lt;threads&gt;-threads.json, for comparison
+ * across changes:
+ *
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar com.veetech.unitconversion.benchmark.BenchmarkRunner [threads] [pattern]
+ * </pre>
+ *
+ * where threads is a comma-separated list of thread counts, default 1,2,4,8,
+ * and pattern a regular expression of the benchmarks to run, default all.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class BenchmarkRunner
+{
+	/**
+	 * Runs the benchmarks for each thread count.
+	 *
+	 * @param args The thread counts and benchmark pattern, both optional.
+	 * @throws org.openjdk.jmh.runner.RunnerException If a benchmark fails.
+	 */
+	public static void main( String[] args )
+			throws RunnerException
+	{
+		String[] threads = (args.length > 0 ? args[0] : DEFAULT_THREADS).split( "," );
+		String pattern = (args.length > 1 ? args[1] : DEFAULT_PATTERN);
+
+		for (String count : threads) {
+			int threadCount = Integer.parseInt( count.trim() );
+			Options options = new OptionsBuilder().
+					include( pattern ).
+					threads( threadCount ).
+					addProfiler( GCProfiler.class ).
+					resultFormat( ResultFormatType.JSON ).
+					result( String.format("benchmarks-%d-threads.json", threadCount) ).
+					build();
+			new Runner( options ).run();
+		}
+	}
+
+
+	private BenchmarkRunner()
+	{
+	}
+
+
+	private final static String DEFAULT_THREADS = "1,2,4,8";
+	private final static String DEFAULT_PATTERN = BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+}
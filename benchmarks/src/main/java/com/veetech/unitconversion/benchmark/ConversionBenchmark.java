@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.benchmark;
+
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Conversion;
+import com.veetech.unitconversion.domain.ConversionPlan;
+import com.veetech.unitconversion.domain.ConversionType;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of converting a value for every pair of temperature units and
+ * every pair of volume units: by the unit's converter, with
+ * Conversion.convertUnits, and by the pair's conversion plan, as requests
+ * convert.
+ *
+ * @author a.cook@veetechis.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark
+{
+	/**
+	 * Resolves the pair's unit types, converter and plan.
+	 */
+	@Setup
+	public void resolvePair()
+	{
+		String[] types = pair.split( ":" );
+		ConversionType from = ConversionUtil.getConversionType( types[0] );
+		to = ConversionUtil.getConversionType( types[1] );
+		converter = ConversionUtil.getConverter( from );
+		plan = ConversionUtil.getConversionPlan( from, to );
+		value = new BigDecimal( units );
+	}
+
+	/**
+	 * Converts the unit value text with the source unit's converter.
+	 *
+	 * @return The converted value.
+	 */
+	@Benchmark
+	public BigDecimal convertUnits()
+	{
+		return converter.convertUnits( units, to );
+	}
+
+	/**
+	 * Converts the parsed unit value with the pair's conversion plan.
+	 *
+	 * @return The converted value.
+	 */
+	@Benchmark
+	public BigDecimal convertPlan()
+	{
+		return plan.convert( value );
+	}
+
+
+	// instance members
+	@Param({
+		"celsius:fahrenheit", "celsius:kelvin", "celsius:rankine",
+		"fahrenheit:celsius", "fahrenheit:kelvin", "fahrenheit:rankine",
+		"kelvin:celsius", "kelvin:fahrenheit", "kelvin:rankine",
+		"rankine:celsius", "rankine:fahrenheit", "rankine:kelvin",
+		"cubicFeet:cubicInches", "cubicFeet:cups", "cubicFeet:gallons", "cubicFeet:liters", "cubicFeet:tablespoons",
+		"cubicInches:cubicFeet", "cubicInches:cups", "cubicInches:gallons", "cubicInches:liters", "cubicInches:tablespoons",
+		"cups:cubicFeet", "cups:cubicInches", "cups:gallons", "cups:liters", "cups:tablespoons",
+		"gallons:cubicFeet", "gallons:cubicInches", "gallons:cups", "gallons:liters", "gallons:tablespoons",
+		"liters:cubicFeet", "liters:cubicInches", "liters:cups", "liters:gallons", "liters:tablespoons",
+		"tablespoons:cubicFeet", "tablespoons:cubicInches", "tablespoons:cups", "tablespoons:gallons", "tablespoons:liters"
+	})
+	public String pair;
+	@Param({"22.5"})
+	public String units;
+
+	private ConversionType to;
+	private Conversion converter;
+	private ConversionPlan plan;
+	private BigDecimal value;
+}
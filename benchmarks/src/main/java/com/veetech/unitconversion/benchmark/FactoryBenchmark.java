@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.benchmark;
+
+import com.veetech.factory.ObjectFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of ObjectFactory.createObject, for unit types created without
+ * parameters and converters created with their type. A warm factory has
+ * resolved the key's class and constructor before; a cold factory is new for
+ * each creation, as on the first request for a key.
+ *
+ * Cold creation can't be repeated on one factory, so it's measured in single
+ * shots of a batch of creations, each with a factory of its own created
+ * before the iteration.
+ *
+ * @author a.cook@veetechis.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark
+{
+	/**
+	 * Resolves the constructor parameters of the key: none for a unit type,
+	 * or the unit type of a converter.
+	 *
+	 * @throws java.lang.Exception If the key's objects can't be created.
+	 */
+	@Setup
+	public void createParameters()
+			throws Exception
+	{
+		parms = (key.endsWith(TYPE_SUFFIX) ? null : new Object[] {
+			ObjectFactory.getInstance().createObject( key + TYPE_SUFFIX )
+		});
+	}
+
+	/**
+	 * Creates an object with the shared, warm factory.
+	 *
+	 * @return The new object.
+	 * @throws java.lang.Exception If the object can't be created.
+	 */
+	@Benchmark
+	public Object createWarm()
+			throws Exception
+	{
+		return ObjectFactory.getInstance().createObject( key, parms );
+	}
+
+	/**
+	 * Creates an object with a new, cold factory, the next of the iteration's
+	 * batch.
+	 *
+	 * @param cold The iteration's cold factories.
+	 * @return The new object.
+	 * @throws java.lang.Exception If the object can't be created.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5, batchSize = COLD_BATCH)
+	@Measurement(iterations = 10, batchSize = COLD_BATCH)
+	public Object createCold( ColdFactories cold )
+			throws Exception
+	{
+		return cold.next().createObject( key, parms );
+	}
+
+
+	/**
+	 * Factories created before each iteration, one per creation of its
+	 * batch, with nothing resolved.
+	 */
+	@State(Scope.Thread)
+	public static class ColdFactories
+	{
+		/**
+		 * Creates the iteration's factories, loading their configuration
+		 * outside the measurement.
+		 */
+		@Setup(Level.Iteration)
+		public void createFactories()
+		{
+			factories = new ObjectFactory[COLD_BATCH];
+			for (int i = 0; i < factories.length; i++) {
+				factories[i] = new NewFactory();
+			}
+			next = 0;
+		}
+
+		/*
+		 * Returns the next unused factory of the batch.
+		 */
+		ObjectFactory next()
+		{
+			return factories[next++];
+		}
+
+
+		// instance members
+		private ObjectFactory[] factories;
+		private int next;
+	}
+
+	/*
+	 * An ObjectFactory of its own, outside the shared instance.
+	 */
+	private static final class NewFactory
+			extends ObjectFactory
+	{
+	}
+
+
+	// instance members
+	@Param({"celsiusType", "cupsType", "celsius", "cups"})
+	public String key;
+	private Object[] parms;
+
+	private final static String TYPE_SUFFIX = "Type";
+	private final static int COLD_BATCH = 1000;
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.benchmark;
+
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Constants;
+import com.veetech.unitconversion.service.ResponseTemplate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of rendering the response body template: by token replacement
+ * with ConversionUtil.textFormat, and by the compiled ResponseTemplate that
+ * replaced it on the request path.
+ *
+ * @author a.cook@veetechis.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFormatBenchmark
+{
+	/**
+	 * Loads the template and the tokens of a validated conversion.
+	 */
+	@Setup
+	public void loadTemplate()
+	{
+		template = ConversionUtil.getMessageText( "responseBodyTemplate" );
+		for (int i = 0; i < TAGS.length; i++) {
+			tokens.put( TAGS[i], VALUES[i] );
+		}
+		compiled = ResponseTemplate.compile( template, TAGS );
+	}
+
+	/**
+	 * Renders the template by token replacement.
+	 *
+	 * @return The response body.
+	 */
+	@Benchmark
+	public String textFormat()
+	{
+		return ConversionUtil.textFormat( template, tokens );
+	}
+
+	/**
+	 * Renders the compiled template.
+	 *
+	 * @return The response body.
+	 */
+	@Benchmark
+	public String compiledTemplate()
+	{
+		return compiled.render( VALUES );
+	}
+
+
+	// instance members
+	private String template;
+	private final Map<String,String> tokens = new LinkedHashMap<>();
+	private ResponseTemplate compiled;
+
+	private final static String[] TAGS = {
+		Constants.APP_RESULT_TAG, Constants.INPUT_TYPE_TAG, Constants.INPUT_VALUE_TAG, Constants.OUTPUT_TYPE_TAG,
+		Constants.OUTPUT_VALUE_TAG, Constants.VALIDATION_VALUE_TAG, Constants.VALIDATION_RESULT_TAG
+	};
+	private final static String[] VALUES = {
+		"Result: 100.0/C = 212.0/F, Validate 212.0 = Correct", "Celsius", "100.0", "Fahrenheit", "212.0", "212.0",
+		"Correct"
+	};
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.benchmark;
+
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.ConversionType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of ConversionUtil.getConversionType, for names as typed by
+ * users: factory keys, printable names, symbols and aliases.
+ *
+ * @author a.cook@veetechis.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeResolutionBenchmark
+{
+	/**
+	 * Resolves the unit type name.
+	 *
+	 * @return The conversion type.
+	 */
+	@Benchmark
+	public ConversionType getConversionType()
+	{
+		return ConversionUtil.getConversionType( type );
+	}
+
+
+	// instance members
+	@Param({"celsius", "Fahrenheit", "cubic feet", "tbsp", "litres"})
+	public String type;
+}
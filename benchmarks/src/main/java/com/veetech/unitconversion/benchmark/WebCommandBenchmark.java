@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.benchmark;
+
+import com.veetech.unitconversion.service.ConversionHandler;
+import com.veetech.unitconversion.service.WebCommand;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks of a whole validate request, from its values to its response
+ * body: a WebCommand executed and rendered, the conversion handler without
+ * its response cache, and the handler serving the cached body.
+ *
+ * @author a.cook@veetechis.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebCommandBenchmark
+{
+	/**
+	 * Executes a web command and renders its response.
+	 *
+	 * @return The response body.
+	 */
+	@Benchmark
+	public String webCommand()
+	{
+		WebCommand web = new WebCommand( fromType, toType, units, validation );
+		web.execute();
+		String response = web.getResponseBody();
+		web.cleanup();
+
+		return response;
+	}
+
+	/**
+	 * Converts and renders the response body with the handler, uncached.
+	 *
+	 * @return The response body.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	@Benchmark
+	public byte[] handler()
+			throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream( RESPONSE_SIZE );
+		handler.writeResponseBody( fromType, toType, units, validation, output );
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Returns the response body from the handler's response cache.
+	 *
+	 * @return The response body.
+	 */
+	@Benchmark
+	public byte[] handlerCached()
+	{
+		return handler.getResponseBytes( fromType, toType, units, validation );
+	}
+
+
+	// instance members
+	@Param({"celsius"})
+	public String fromType;
+	@Param({"fahrenheit"})
+	public String toType;
+	@Param({"100"})
+	public String units;
+	@Param({"212"})
+	public String validation;
+
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
+	private final static int RESPONSE_SIZE = 512;
+}
@@ -9,13 +9,15 @@ LIBDIR=${LIBDIR:-${APPHOME}/lib}
 CONFIG=${CONFIG:-${APPHOME}/config}
 RUNTIME=${LIBDIR}/${NAME}-${VERS}-jar-with-deps.jar
 JAVA=${JAVA:-java}
+# e.g. JAVA_OPTS="--add-modules jdk.incubator.vector" for vector bulk kernels
+JAVA_OPTS=${JAVA_OPTS:-}
 
 LOGGER=-Dorg.apache.commons.logging.Log=org.apache.commons.logging.impl.Jdk14Logger
 LOGCFG=-Djava.util.logging.config.file=${CONFIG}/logging.properties
 
 echo "Starting application main with:" > run.out
-echo "$JAVA $LOGGER $LOGCFG -jar $RUNTIME" >> run.out
+echo "$JAVA $JAVA_OPTS $LOGGER $LOGCFG -jar $RUNTIME" >> run.out
 
-$JAVA $LOGGER $LOGCFG -jar $RUNTIME "$@"
+$JAVA $JAVA_OPTS $LOGGER $LOGCFG -jar $RUNTIME "$@"
 
 echo "\nShutdown complete." >> run.out
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Traces phases as Java Flight Recorder events, one event type per phase
+ * under category 'Unit Conversion'. Every event is disabled by default; a
+ * phase not enabled in a recording creates no event, as its event type's
+ * enabled state is checked before the event is created. Enable the events in
+ * a recording's settings, e.g. in a copy of default.jfc:
+ *
+ * <pre>
+ *     &lt;event name="com.veetech.Request"&gt;
+ *       &lt;setting name="enabled"&gt;true&lt;/setting&gt;
+ *       &lt;setting name="threshold"&gt;0 ms&lt;/setting&gt;
+ *     &lt;/event&gt;
+ * </pre>
+ *
+ * with events com.veetech.ObjectFactory, com.veetech.TypeResolution,
+ * com.veetech.Parsing, com.veetech.Conversion, com.veetech.Rendering and
+ * com.veetech.Request.
+ *
+ * Requires Java 11 or later. If JFR is absent this class fails to load and
+ * Tracing falls back to tracing nothing.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class JfrTracer
+		implements Tracer
+{
+	/**
+	 * Creates a tracer, registering the event type of each phase.
+	 */
+	public JfrTracer()
+	{
+		Phase[] phases = Phase.values();
+		types = new EventType[phases.length];
+		for (Phase phase : phases) {
+			types[phase.ordinal()] = EventType.getEventType( eventClass(phase) );
+		}
+	}
+
+	/**
+	 * Begins an event of the given phase, or returns the no-op span if the
+	 * phase's event isn't enabled.
+	 */
+	@Override
+	public Span begin( Phase phase )
+	{
+		if (!types[phase.ordinal()].isEnabled()) return Tracing.NO_SPAN;
+
+		PhaseEvent event;
+		switch (phase) {
+			case FACTORY:
+				event = new FactoryEvent();
+				break;
+			case TYPE_RESOLUTION:
+				event = new TypeResolutionEvent();
+				break;
+			case PARSING:
+				event = new ParsingEvent();
+				break;
+			case CONVERSION:
+				event = new ConversionEvent();
+				break;
+			case RENDERING:
+				event = new RenderingEvent();
+				break;
+			default:
+				event = new RequestEvent();
+		}
+
+		event.begin();
+		return event;
+	}
+
+
+	/*
+	 * Returns the event class of the given phase.
+	 */
+	private static Class<? extends PhaseEvent> eventClass( Phase phase )
+	{
+		switch (phase) {
+			case FACTORY:
+				return FactoryEvent.class;
+			case TYPE_RESOLUTION:
+				return TypeResolutionEvent.class;
+			case PARSING:
+				return ParsingEvent.class;
+			case CONVERSION:
+				return ConversionEvent.class;
+			case RENDERING:
+				return RenderingEvent.class;
+			default:
+				return RequestEvent.class;
+		}
+	}
+
+
+	/*
+	 * An event of a phase, with the unit pair and result.
+	 */
+	@Category("Unit Conversion")
+	@Enabled(false)
+	@StackTrace(false)
+	abstract static class PhaseEvent
+			extends Event
+			implements Span
+	{
+		@Override
+		public void end( String fromType, String toType, String result )
+		{
+			end();
+			if (shouldCommit()) {
+				this.fromType = fromType;
+				this.toType = toType;
+				this.result = result;
+				commit();
+			}
+		}
+
+		@Label("From Type")
+		String fromType;
+
+		@Label("To Type")
+		String toType;
+
+		@Label("Result")
+		String result;
+	}
+
+	@Name("com.veetech.ObjectFactory")
+	@Label("Object Creation")
+	@Description("Object created by ObjectFactory; From Type is the class key.")
+	static final class FactoryEvent
+			extends PhaseEvent
+	{
+	}
+
+	@Name("com.veetech.TypeResolution")
+	@Label("Type Resolution")
+	@Description("Unit type name resolved to its conversion type.")
+	static final class TypeResolutionEvent
+			extends PhaseEvent
+	{
+	}
+
+	@Name("com.veetech.Parsing")
+	@Label("Parsing")
+	@Description("Unit and validation values parsed as decimals.")
+	static final class ParsingEvent
+			extends PhaseEvent
+	{
+	}
+
+	@Name("com.veetech.Conversion")
+	@Label("Conversion")
+	@Description("Value converted from one unit type to another.")
+	static final class ConversionEvent
+			extends PhaseEvent
+	{
+	}
+
+	@Name("com.veetech.Rendering")
+	@Label("Rendering")
+	@Description("Response body rendered from the response template.")
+	static final class RenderingEvent
+			extends PhaseEvent
+	{
+	}
+
+	@Name("com.veetech.Request")
+	@Label("Request")
+	@Description("Web request handled, from arrival to response.")
+	static final class RequestEvent
+			extends PhaseEvent
+	{
+	}
+
+
+	// instance members
+	private final EventType[] types;
+}
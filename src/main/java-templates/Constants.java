@@ -33,6 +33,11 @@ public interface Constants {
 	public final static String UNIT_VALUE_ARG = "units";
 	public final static String VALIDATE_VALUE_ARG = "validate";
 	public final static String HELP_ARG = "help";
+	public final static String BATCH_ARG = "batch";
+	public final static String PARALLEL_ARG = "parallel";
+	public final static String GRADE_ARG = "grade";
+	public final static String SERVER_ARG = "server";
+	public final static String SERVER_TIMING_ARG = "serverTiming";
 
 	// Web
 	// - query parameters
@@ -40,6 +45,14 @@ public interface Constants {
 	public final static String TO_TYPE_PARAM = TO_TYPE_ARG;
 	public final static String UNIT_VALUE_PARAM = "unitValue";
 	public final static String VALIDATE_VALUE_PARAM = "validateValue";
+	// - configuration
+	public final static String BATCH_MAX_SIZE_PARAM = "batchMaxSize";
+	public final static int DEFAULT_BATCH_MAX_SIZE = 1000;
+	public final static String SERVER_TIMING_PARAM = "serverTimingRate";
+	public final static String CONTEXT_PATH = "/${project.context}";
+	public final static int DEFAULT_SERVER_PORT = 8080;
+	// - response caching, revalidated by entity tag
+	public final static String RESPONSE_CACHE_CONTROL = "public, max-age=86400";
 	// - response template tags
 	public final static String APP_RESULT_TAG = "@appResult@";
 	public final static String INPUT_TYPE_TAG = "@inputType@";
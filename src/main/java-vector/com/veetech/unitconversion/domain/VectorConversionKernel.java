@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * A bulk conversion kernel using the JDK Vector API. Values are converted in
+ * lanes of the platform's preferred vector width, with the remainder of each
+ * slice converted by the scalar kernel. Every lane operation is the same IEEE
+ * operation as in the scalar kernel, so results are bit-for-bit identical.
+ * 
+ * Requires JDK 17 or later run with --add-modules jdk.incubator.vector. If the
+ * module is absent this class fails to load and ConversionUtil falls back to
+ * the scalar kernel.
+ * 
+ * @author a.cook@veetechis.com
+ */
+public class VectorConversionKernel
+		implements ConversionKernel
+{
+	/**
+	 * Converts a slice of values by floor(units * scale + offset) / 10.
+	 */
+	@Override
+	public void affine( double[] in, int inOffset, double[] out, int outOffset, int length, double scale, double offset )
+	{
+		int i = 0;
+		int bound = SPECIES.loopBound( length );
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector units = DoubleVector.fromArray( SPECIES, in, inOffset + i );
+			floor( units.mul(scale).add(offset) ).div( 10 ).intoArray( out, outOffset + i );
+		}
+		
+		scalar.affine( in, inOffset + i, out, outOffset + i, length - i, scale, offset );
+	}
+	
+	/**
+	 * Converts a slice of values by units / divisor, rounded half-up to 4
+	 * digits and then to tenths.
+	 */
+	@Override
+	public void quotient( double[] in, int inOffset, double[] out, int outOffset, int length, double divisor )
+	{
+		int i = 0;
+		int bound = SPECIES.loopBound( length );
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector quotient = DoubleVector.fromArray( SPECIES, in, inOffset + i ).div( divisor );
+			DoubleVector tenThousandths = floor( quotient.abs().mul(10000).add(0.5) );
+			tenThousandths = tenThousandths.blend( tenThousandths.neg(), quotient.lt(0) );
+			floor( tenThousandths.div(1000).add(0.5) ).div( 10 ).intoArray( out, outOffset + i );
+		}
+		
+		scalar.quotient( in, inOffset + i, out, outOffset + i, length - i, divisor );
+	}
+	
+	
+	/*
+	 * Returns the lanewise floor of the given values. The Vector API has no
+	 * floor operation, so magnitudes below 2^52 are rounded by adding and
+	 * subtracting 2^52 and then corrected downward; larger and non-finite
+	 * values are already integral and are returned unchanged.
+	 */
+	private static DoubleVector floor( DoubleVector values )
+	{
+		DoubleVector magnitude = values.abs();
+		DoubleVector rounded = magnitude.add( TWO_52 ).sub( TWO_52 );
+		rounded = rounded.blend( rounded.neg(), values.lt(0) );
+		DoubleVector floor = rounded.sub( 1, rounded.compare(VectorOperators.GT, values) );
+		
+		return values.blend( floor, magnitude.lt(TWO_52) );
+	}
+	
+	
+	private final ConversionKernel scalar = new ScalarConversionKernel();
+	
+	private final static VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private final static double TWO_52 = 0x1.0p52;
+}
@@ -10,14 +10,18 @@
  */
 package com.veetech.factory;
 
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
 import com.veetech.unitconversion.domain.Constants;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,10 +51,10 @@ public class ObjectFactory
 	 * @param parms The array of objects to type cast.
 	 * @return					the array of class types.
 	 */
-	public static Class[] asClassArray( Object[] parms )
+	public static Class<?>[] asClassArray( Object[] parms )
 	{
 		int numParms = (parms == null ? 0 : parms.length);
-		Class[] types = new Class[numParms];
+		Class<?>[] types = new Class<?>[numParms];
 		
 		for (int i = 0; i < numParms; i++) {
 			types[i] = parms[i].getClass();
@@ -82,7 +86,8 @@ public class ObjectFactory
 
 	/**
 	 * Creates an object with a specific class name key and the specified
-	 * parameters.
+	 * parameters. The class configured for a key is resolved once and cached.
+	 * Object creation is traced with the key.
 	 * 
 	 * Throws an exception if the key value is null or if an instance of the
 	 * specified class can not be created.
@@ -91,7 +96,7 @@ public class ObjectFactory
 	 * @param parms Constructor parameters for the requested class.
 	 * @return The new instance.
 	 * @throws java.lang.ClassNotFoundException A class for specified key isn't
-	 * found.ResourceBundle
+	 * found.
 	 * @throws java.lang.InstantiationException An instance of the class can't
 	 * be created.
 	 */
@@ -103,12 +108,28 @@ public class ObjectFactory
 					(parms == null ? "[]" : Arrays.asList(parms))) );
 		}
 
-		String className = bundle.getProperty( key );
-		if (className == null) {
-			throw new ClassNotFoundException( String.format("Class for key '%s' not found.", key) );
+		Tracer.Span span = Tracing.begin( Tracer.Phase.FACTORY );
+		String result = TRACE_FAILED;
+		try {
+			Class<?> cls = classes.get( key );
+			if (cls == null) {
+				String className = bundle.getProperty( key );
+				if (className == null) {
+					result = TRACE_NOT_FOUND;
+					throw new ClassNotFoundException( String.format("Class for key '%s' not found.", key) );
+				}
+				
+				cls = Class.forName( className );
+				classes.putIfAbsent( key, cls );
+			}
+			
+			Object object = createObject( cls, parms );
+			result = TRACE_CREATED;
+			
+			return object;
 		}
-		else {
-			return createObject( Class.forName(className), parms );
+		finally {
+			span.end( key, null, result );
 		}
 	}
 
@@ -117,7 +138,8 @@ public class ObjectFactory
 	 * Creates an object with the given class. The class is instantiated using
 	 * the constructor whose parameter types match the types of the objects in
 	 * the given parms array. If parms value is null then a default class
-	 * instance is returned.
+	 * instance is returned. Constructors are resolved once per class and
+	 * parameter types and then invoked through a cached method handle.
 	 * 
 	 * Throws an exception if the parameter cls is null or an instance can't be
 	 * created because no matching constructor is found for the class.
@@ -130,56 +152,57 @@ public class ObjectFactory
 	 * @throws java.lang.InstantiationException An instance of the class can't
 	 * be created.
 	 */
-	protected Object createObject( Class cls, Object[] parms )
+	protected Object createObject( Class<?> cls, Object[] parms )
 			throws ClassNotFoundException, InstantiationException, NullPointerException
 	{
-		if (parms == null) parms = new Object[] {};
-		String constructorKey = String.format( "%s%s", cls.getName(), Arrays.asList(parms) ).
-				replaceFirst( "\\[", "\\(" ).replaceFirst( "\\]", "\\)" );
+		if (parms == null) parms = NO_PARMS;
 		
 		if (log.isDebugEnabled()) {
-			log.debug( String.format("Using object constructor %s", constructorKey) );
+			log.debug( String.format("Using object constructor %s(%s)", cls.getName(),
+					Arrays.toString(asClassArray(parms))) );
 		}
 
+		MethodHandle ctor = constructors.get( cls ).find( parms );
 		try {
-			return findConstructor( constructorKey, cls, parms ).newInstance( parms );
+			return (Object) ctor.invokeExact( parms );
+		}
+		catch (RuntimeException exc) {
+			throw newInstantiationException( exc );
 		}
-		catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException exc) {
-			throw new InstantiationException( exc.getMessage() );
+		catch (Error err) {
+			throw err;
+		}
+		catch (Throwable exc) {
+			// a checked exception thrown by the constructor
+			throw newInstantiationException( exc );
 		}
 	}
 	
 	/**
-	 * Returns an object constructor for the specified constructor key and class
-	 * and which has parameter types matching the object types in the given
-	 * parms array.
+	 * Returns a method handle for the constructor of the specified class which
+	 * has the given parameter types. The handle takes the constructor
+	 * parameters as a single Object[] argument and returns the new instance as
+	 * an Object.
 	 * 
-	 * Throws an exception if the class does not have a matching constructor.
+	 * Throws an exception if the class does not have a matching public
+	 * constructor.
 	 * 
-	 * @param key The constructor lookup and binding key.
 	 * @param cls The class to find a matching constructor.
-	 * @param parms	The parameter types to match.
-	 * @return The matching constructor.
+	 * @param types	The parameter types to match.
+	 * @return The matching constructor handle.
 	 * @throws java.lang.ClassNotFoundException A matching constructor for the
 	 * class isn't found.
 	 */
-	protected Constructor findConstructor( String key, Class cls, Object[] parms )
+	protected MethodHandle findConstructor( Class<?> cls, Class<?>[] types )
 			throws ClassNotFoundException
 	{
-		synchronized (constructors) {
-			Constructor ctor = constructors.get( key );
-
-			if (ctor == null) {
-				try {
-					ctor = cls.getConstructor( asClassArray(parms) );
-					constructors.put( key, ctor );
-				}
-				catch (NoSuchMethodException exc) {
-					throw new ClassNotFoundException( exc.getMessage() );
-				}
-			}
-		
-			return ctor;
+		try {
+			return MethodHandles.publicLookup().unreflectConstructor( cls.getConstructor(types) ).
+					asSpreader( Object[].class, types.length ).
+					asType( MethodType.methodType(Object.class, Object[].class) );
+		}
+		catch (NoSuchMethodException | IllegalAccessException exc) {
+			throw new ClassNotFoundException( exc.getMessage() );
 		}
 	}
 	
@@ -189,7 +212,14 @@ public class ObjectFactory
 	 */
 	protected ObjectFactory()
 	{
-		constructors = new HashMap();
+		classes = new ConcurrentHashMap<>();
+		constructors = new ClassValue<Constructors>() {
+			@Override
+			protected Constructors computeValue( Class<?> type )
+			{
+				return new Constructors( type );
+			}
+		};
 		bundle = new Properties();
 		try {
 			bundle.load( getClass().getClassLoader().getResourceAsStream(Constants.CLASSES) );
@@ -202,10 +232,78 @@ public class ObjectFactory
 	}
 
 
+	/*
+	 * Returns an exception for a constructor invocation that failed with the
+	 * given cause.
+	 */
+	private static InstantiationException newInstantiationException( Throwable cause )
+	{
+		InstantiationException exc = new InstantiationException( cause.getMessage() );
+		exc.initCause( cause );
+		return exc;
+	}
+	
+	/*
+	 * Resolved constructor handles of a class, keyed by parameter types. The
+	 * common no and single parameter cases are looked up without allocation.
+	 */
+	private class Constructors
+	{
+		Constructors( Class<?> cls )
+		{
+			this.cls = cls;
+		}
+		
+		MethodHandle find( Object[] parms )
+				throws ClassNotFoundException
+		{
+			MethodHandle ctor;
+			switch (parms.length) {
+				case 0:
+					ctor = noParms;
+					if (ctor == null) {
+						ctor = noParms = findConstructor( cls, new Class<?>[0] );
+					}
+					break;
+				case 1:
+					Class<?> type = parms[0].getClass();
+					ctor = oneParm.get( type );
+					if (ctor == null) {
+						ctor = findConstructor( cls, new Class<?>[] {type} );
+						oneParm.putIfAbsent( type, ctor );
+					}
+					break;
+				default:
+					Class<?>[] parmTypes = asClassArray( parms );
+					List<Class<?>> types = Arrays.asList( parmTypes );
+					ctor = manyParms.get( types );
+					if (ctor == null) {
+						ctor = findConstructor( cls, parmTypes );
+						manyParms.putIfAbsent( types, ctor );
+					}
+			}
+			
+			return ctor;
+		}
+		
+		private final Class<?> cls;
+		private volatile MethodHandle noParms;
+		private final ConcurrentHashMap<Class<?>,MethodHandle> oneParm = new ConcurrentHashMap<>();
+		private final ConcurrentHashMap<List<Class<?>>,MethodHandle> manyParms = new ConcurrentHashMap<>();
+	}
+
+
 	// instance variables
-	private final HashMap<String,Constructor> constructors;
+	private final ConcurrentHashMap<String,Class<?>> classes;
+	private final ClassValue<Constructors> constructors;
 	private final Properties bundle;
 	
+	private final static Object[] NO_PARMS = {};
+	
+	private final static String TRACE_CREATED = "CREATED";
+	private final static String TRACE_NOT_FOUND = "NOT_FOUND";
+	private final static String TRACE_FAILED = "FAILED";
+	
 	private final static ObjectFactory instance = new ObjectFactory();
 	private final static Log log = LogFactory.getLog( ObjectFactory.class );
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.trace;
+
+
+/**
+ * The durations of the phases traced on a thread while it's timed, see
+ * Tracing.startTiming. A phase traced more than once adds up its durations,
+ * but a span nested in a span of the same phase isn't counted again. Phase
+ * times belong to the timed thread and aren't safe for use by others until
+ * its timing has stopped.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class PhaseTimes
+{
+	/**
+	 * Returns true if a span of the given phase ended while timed.
+	 *
+	 * @param phase The phase.
+	 * @return True if the phase was timed.
+	 */
+	public boolean isTimed( Tracer.Phase phase )
+	{
+		return (spans[phase.ordinal()] > 0);
+	}
+
+	/**
+	 * Returns the total duration of the given phase.
+	 *
+	 * @param phase The phase.
+	 * @return The duration in nanoseconds, or zero if it wasn't timed.
+	 */
+	public long getNanos( Tracer.Phase phase )
+	{
+		return nanos[phase.ordinal()];
+	}
+
+
+	PhaseTimes()
+	{
+	}
+
+
+	/*
+	 * Begins timing a span of the given phase, returning a span that ends
+	 * the timing and the given span.
+	 */
+	Tracer.Span begin( Tracer.Phase phase, Tracer.Span span )
+	{
+		int index = phase.ordinal();
+		if (depths[index]++ == 0) {
+			started[index] = System.nanoTime();
+		}
+
+		return new TimedSpan( index, span );
+	}
+
+
+	/*
+	 * A span timed as its phase, ending the traced span too.
+	 */
+	private final class TimedSpan
+			implements Tracer.Span
+	{
+		TimedSpan( int index, Tracer.Span span )
+		{
+			this.index = index;
+			this.span = span;
+		}
+
+		@Override
+		public void end( String fromType, String toType, String result )
+		{
+			if (ended) return;
+
+			ended = true;
+			if (--depths[index] == 0) {
+				nanos[index] += System.nanoTime() - started[index];
+				spans[index]++;
+			}
+			span.end( fromType, toType, result );
+		}
+
+
+		private final int index;
+		private final Tracer.Span span;
+		private boolean ended;
+	}
+
+
+	// instance members
+	private final long[] nanos = new long[PHASES];
+	private final long[] started = new long[PHASES];
+	private final int[] depths = new int[PHASES];
+	private final int[] spans = new int[PHASES];
+
+	private final static int PHASES = Tracer.Phase.values().length;
+}
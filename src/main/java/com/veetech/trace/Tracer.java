@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.trace;
+
+
+/**
+ * Traces the phases of Unit Conversion requests, e.g. as Java Flight
+ * Recorder events. A span is begun before a phase and ended after it with
+ * the unit pair and result of the phase. A tracer that isn't recording a
+ * phase returns a span whose end does nothing, so tracing costs next to
+ * nothing when it's off. See Tracing for the configured tracer.
+ *
+ * @author a.cook@veetechis.com
+ */
+public interface Tracer
+{
+	/**
+	 * Begins a span of the given phase.
+	 *
+	 * @param phase The phase to trace.
+	 * @return The span, to end when the phase ends.
+	 */
+	Span begin( Phase phase );
+
+
+	/**
+	 * A traced phase in progress.
+	 */
+	interface Span
+	{
+		/**
+		 * Ends the span with the given values, any of which may be null.
+		 *
+		 * @param fromType The unit type to convert, or the object key.
+		 * @param toType The unit type to output.
+		 * @param result The result of the phase.
+		 */
+		void end( String fromType, String toType, String result );
+	}
+
+	/**
+	 * The traced phases.
+	 */
+	enum Phase
+	{
+		/** Object creation by ObjectFactory. */
+		FACTORY,
+		/** Resolution of a unit type name. */
+		TYPE_RESOLUTION,
+		/** Parsing of the unit and validation values. */
+		PARSING,
+		/** Conversion of a value. */
+		CONVERSION,
+		/** Rendering of a response body. */
+		RENDERING,
+		/** Handling of a whole web request. */
+		REQUEST
+	}
+}
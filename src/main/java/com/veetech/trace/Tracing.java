@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.trace;
+
+import com.veetech.factory.ObjectFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Access to the configured tracer. The tracer configured with key
+ * 'jfrTracer' is used if it can be loaded on this JVM, i.e. Java 11 or later
+ * built with the jfr-events profile, otherwise nothing is traced.
+ *
+ * A thread may also be timed, to measure the phases it traces whether or not
+ * the tracer records them, e.g. for a sampled request. Untimed threads pay
+ * only a counter read for this.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class Tracing
+{
+	/**
+	 * Begins a span of the given phase with the configured tracer.
+	 *
+	 * @param phase The phase to trace.
+	 * @return The span, to end when the phase ends.
+	 */
+	public static Tracer.Span begin( Tracer.Phase phase )
+	{
+		// null only while the tracer is created, by the factory it uses
+		Tracer current = tracer;
+		Tracer.Span span = (current != null ? current.begin(phase) : NO_SPAN);
+		if (timedThreads.get() == 0) return span;
+
+		PhaseTimes times = threadTimes.get();
+		return (times != null ? times.begin(phase, span) : span);
+	}
+
+	/**
+	 * Starts timing the phases traced on the current thread, replacing any
+	 * timing in progress. The timing must be stopped by the same thread.
+	 *
+	 * @return The phase times, updated as spans end until timing stops.
+	 */
+	public static PhaseTimes startTiming()
+	{
+		PhaseTimes times = new PhaseTimes();
+		if (threadTimes.get() == null) {
+			timedThreads.incrementAndGet();
+		}
+		threadTimes.set( times );
+
+		return times;
+	}
+
+	/**
+	 * Stops timing the phases traced on the current thread, if timed.
+	 */
+	public static void stopTiming()
+	{
+		if (threadTimes.get() != null) {
+			threadTimes.remove();
+			timedThreads.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the configured tracer.
+	 *
+	 * @return The tracer.
+	 */
+	public static Tracer getTracer()
+	{
+		return (tracer != null ? tracer : NO_TRACER);
+	}
+
+
+	private Tracing()
+	{
+	}
+
+
+	/*
+	 * Creates the configured tracer, or the no-op tracer if it isn't
+	 * configured or its JDK module isn't available.
+	 */
+	private static Tracer createTracer()
+	{
+		try {
+			Tracer jfrTracer = (Tracer) ObjectFactory.getInstance().createObject( "jfrTracer" );
+			if (log.isDebugEnabled()) {
+				log.debug( String.format("Using tracer %s.", jfrTracer.getClass().getName()) );
+			}
+
+			return jfrTracer;
+		}
+		catch (ClassNotFoundException | InstantiationException | LinkageError exc) {
+			if (log.isDebugEnabled()) {
+				log.debug( "JFR tracer not available, tracing disabled.", exc );
+			}
+		}
+
+		return NO_TRACER;
+	}
+
+
+	/*
+	 * A span that records nothing.
+	 */
+	private static final class NoSpan
+			implements Tracer.Span
+	{
+		@Override
+		public void end( String fromType, String toType, String result )
+		{
+		}
+	}
+
+	/*
+	 * A tracer that traces nothing.
+	 */
+	private static final class NoTracer
+			implements Tracer
+	{
+		@Override
+		public Tracer.Span begin( Tracer.Phase phase )
+		{
+			return NO_SPAN;
+		}
+	}
+
+
+	private final static Log log = LogFactory.getLog( Tracing.class );
+
+	/**
+	 * The span of a phase not traced.
+	 */
+	public final static Tracer.Span NO_SPAN = new NoSpan();
+	private final static Tracer NO_TRACER = new NoTracer();
+	private final static ThreadLocal<PhaseTimes> threadTimes = new ThreadLocal<>();
+	private final static AtomicInteger timedThreads = new AtomicInteger();
+
+	// last, after the no-op instances it may return
+	private final static Tracer tracer = createTracer();
+}
@@ -10,14 +10,17 @@
  */
 package com.veetech.unitconversion;
 
+import com.veetech.unitconversion.batch.BatchCommand;
+import com.veetech.unitconversion.batch.GradeCommand;
+import com.veetech.unitconversion.batch.ParallelBatchCommand;
 import com.veetech.unitconversion.domain.Constants;
-import com.veetech.unitconversion.domain.Conversion;
 import com.veetech.unitconversion.domain.ConversionType;
+import com.veetech.unitconversion.service.ConversionServer;
+import com.veetech.unitconversion.service.ServerTiming;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -35,6 +38,13 @@ public class CommandLine
 		String toType = null;
 		String units = null;
 		String validate = null;
+		String batchSource = null;
+		boolean batch = false;
+		String gradeSource = null;
+		boolean grade = false;
+		int parallelism = 0;
+		int serverPort = -1;
+		double timingRate = 0.0;
 		boolean showUsage = false;
 		boolean hasParam = false;
 		
@@ -62,12 +72,42 @@ public class CommandLine
 					validate = (arg.length == 2 ? arg[1] : null);
 					hasParam = true;
 				}
+				if (arg[0].substring(2).equalsIgnoreCase(Constants.BATCH_ARG)) {
+					batchSource = (arg.length == 2 ? arg[1] : null);
+					batch = true;
+				}
+				if (arg[0].substring(2).equalsIgnoreCase(Constants.GRADE_ARG)) {
+					gradeSource = (arg.length == 2 ? arg[1] : null);
+					grade = true;
+				}
+				if (arg[0].substring(2).equalsIgnoreCase(Constants.PARALLEL_ARG)) {
+					parallelism = getParallelism( arg.length == 2 ? arg[1] : null );
+				}
+				if (arg[0].substring(2).equalsIgnoreCase(Constants.SERVER_ARG)) {
+					serverPort = getServerPort( arg.length == 2 ? arg[1] : null );
+				}
+				if (arg[0].substring(2).equalsIgnoreCase(Constants.SERVER_TIMING_ARG)) {
+					timingRate = getTimingRate( arg.length == 2 ? arg[1] : null );
+				}
 			}
 		}
 		
-		if (showUsage) {
+		if (showUsage || (grade && gradeSource == null)) {
+			// grading needs an answers file
 			usage();
 		}
+		else if (serverPort >= 0) {
+			ConversionServer.run( serverPort, timingRate );
+		}
+		else if (grade) {
+			GradeCommand.run( gradeSource, (parallelism > 0 ? parallelism : getParallelism(null)) );
+		}
+		else if (batch && parallelism > 0 && batchSource != null && !batchSource.equals("-")) {
+			ParallelBatchCommand.run( batchSource, parallelism );
+		}
+		else if (batch) {
+			BatchCommand.run( batchSource );
+		}
 		else if (!hasParam) {
 			System.out.println( String.format("%s\n  %s", Constants.VERSION, Constants.NO_ARG) );
 		}
@@ -105,43 +145,97 @@ public class CommandLine
 			throw new RuntimeException( exc );
 		}
 	}
-	
+
+	/**
+	 * Returns the number of batch threads given by a parallel argument value,
+	 * or the number of available processors if no valid count is given.
+	 *
+	 * @param value The thread count text, or null.
+	 * @return The number of threads, at least one.
+	 */
+	protected static int getParallelism( String value )
+	{
+		int processors = Runtime.getRuntime().availableProcessors();
+		if (value == null) return processors;
+
+		try {
+			int threads = Integer.parseInt( value.trim() );
+			return (threads > 0 ? threads : processors);
+		}
+		catch (NumberFormatException exc) {
+			if (log.isWarnEnabled()) {
+				log.warn( String.format("Invalid parallel thread count '%s', using %d.", value, processors) );
+			}
+			return processors;
+		}
+	}
+
+	/**
+	 * Returns the port given by a server argument value, or the default port
+	 * if no valid port is given.
+	 *
+	 * @param value The port text, or null.
+	 * @return The server port.
+	 */
+	protected static int getServerPort( String value )
+	{
+		if (value == null) return Constants.DEFAULT_SERVER_PORT;
+
+		try {
+			int port = Integer.parseInt( value.trim() );
+			if (port >= 0 && port <= MAX_PORT) return port;
+		}
+		catch (NumberFormatException exc) {
+			// reported below
+		}
+		if (log.isWarnEnabled()) {
+			log.warn( String.format("Invalid server port '%s', using %d.", value, Constants.DEFAULT_SERVER_PORT) );
+		}
+
+		return Constants.DEFAULT_SERVER_PORT;
+	}
+
+	/**
+	 * Returns the Server-Timing sampling rate given by a server timing
+	 * argument value: every request if no value is given, or none if the
+	 * value isn't a valid rate.
+	 *
+	 * @param value The rate text, from 0 to 1, or null.
+	 * @return The sampling rate.
+	 */
+	protected static double getTimingRate( String value )
+	{
+		if (value == null) return 1.0;
+
+		try {
+			return ServerTiming.getRate( value );
+		}
+		catch (IllegalArgumentException exc) {
+			if (log.isWarnEnabled()) {
+				log.warn( String.format("Invalid Server-Timing rate '%s', not timing.", value) );
+			}
+		}
+
+		return 0.0;
+	}
+
 	
 	protected CommandLine( String fromType, String toType, String units, String validation )
 	{
 		if (validateParameters(fromType, toType, units, validation)) {
-			try {
-				this.fromType = ConversionUtil.getConversionType( fromType );
-				this.toType = ConversionUtil.getConversionType( toType );
-				this.units = new BigDecimal( units );
-				try {
-					if (validation != null && !validation.equals(Constants.NO_VALUE)) {
-						this.validation = new BigDecimal( validation );
-					}
-				}
-				catch (NumberFormatException exc ) {
-					// bad validation input
-				}
-				initialized = true;
-			}
-			catch (NumberFormatException exc) {
-				if (this.units == null) {
-					printResult( ResultType.BAD_UNITS, new Object[] {units} );
-				}
-				else if (log.isErrorEnabled()) {
-					log.error( "Unexpected error while validating parameters.", exc );
-				}
-			}
-			catch (IllegalArgumentException exc) {
-				if (this.fromType == null) {
-					printResult( ResultType.BAD_TYPE, new Object[] {fromType} );
-				}
-				else if (this.toType == null) {
-					printResult( ResultType.BAD_TYPE, new Object[] {toType} );
-				}
-				else if (log.isErrorEnabled()) {
-					log.error( "Unexpected error while validating parameters.", exc );
-				}
+			result = ConversionResult.evaluate( fromType, toType, units, validation );
+			this.fromType = result.getFromType();
+			this.toType = result.getToType();
+			this.units = result.getUnitValue();
+			this.validation = result.getValidationValue();
+
+			switch (result.getResultType()) {
+				case BAD_TYPE:
+				case BAD_UNITS:
+					printResult( result.getResultType(), result.getParameters() );
+					break;
+				default:
+					initialized = true;
 			}
 		}
 	}
@@ -188,7 +282,7 @@ public class CommandLine
 	}
 	
 	/**
-	 * Returns the unit value to validate.
+	 * Returns the unit value to validate, in tenths.
 	 * 
 	 * @return The value to verify, or null.
 	 */
@@ -228,51 +322,20 @@ public class CommandLine
 	}
 	
 	/**
-	 * Performs the unit conversion and prints the result to the console.
+	 * Prints the result of the unit conversion to the console. The values are
+	 * converted, and the conversion traced, by ConversionResult.evaluate when
+	 * the command is created.
 	 */
 	protected void execute()
 	{
 		if (!isInitialized()) return;
 		
-		ConversionType unitType = getFromType();
-		ConversionType outType = getToType();
-		Conversion converter = ConversionUtil.getConverter( unitType );
-		
-		try {
-			output = converter.convertUnits( getUnitValue().toPlainString(), outType );
-			
-			if (output != null) {
-				if (log.isDebugEnabled()) {
-					log.debug( String.format("Value %s converted to %s.", getUnitValue().toPlainString(), output.toPlainString()) );
-				}
-				
-				ResultType result = ResultType.CONVERTED;
-				ArrayList<String> resultData = new ArrayList();
-				resultData.add( ConversionUtil.toSingleScale(getUnitValue()).toPlainString() );
-				resultData.add( unitType.getSymbol() );
-				resultData.add( output.toPlainString() );
-				resultData.add( outType.getSymbol() );
-				
-				if (doValidation()) {
-					BigDecimal validatedValue = ConversionUtil.toSingleScale( getValidationValue() );
-					resultData.add( validatedValue.toPlainString() );
-					if (validatedValue.compareTo(output) == 0) {
-						result = ResultType.VALIDATED;
-					}
-					else {
-						result = ResultType.INCORRECT;
-					}
-				}
-				else if (getValidationUnits() != null && !getValidationUnits().equals(Constants.NO_VALUE)) {
-					resultData.add( getValidationUnits() );
-					result = ResultType.INCORRECT;
-				}
-				printResult( result, resultData.toArray() );
-			}
-		}
-		catch (UnsupportedOperationException exc) {
-			printResult( ResultType.MISMATCH, new Object[] {unitType.getPrintableName(), outType.getPrintableName()} );
+		output = result.getOutputValue();
+		if (output != null && log.isDebugEnabled()) {
+			log.debug( String.format("Value %s converted to %s.", getUnitValue().toPlainString(), output.toPlainString()) );
 		}
+		
+		printResult( result.getResultType(), result.getParameters() );
 	}
 	
 	/**
@@ -313,7 +376,7 @@ public class CommandLine
 	{
 		StringBuilder message = new StringBuilder( String.format("%s\n", Constants.VERSION) ).
 				append( "  " ).
-				append( String.format(ConversionUtil.getMessageText(result.toString()), parms) );
+				append( formatResult(result, parms) );
 		
 		if (printMessage) System.out.println( message );
 		
@@ -324,10 +387,23 @@ public class CommandLine
 		return message.toString();
 	}
 
+	/**
+	 * Generates a result message from a template using parms as substitution
+	 * values and returns the message text alone, without the version header.
+	 * 
+	 * @param result The result to format.
+	 * @param parms The substitution parameters.
+	 * @return The result message text.
+	 */
+	protected String formatResult( ResultType result, Object[] parms )
+	{
+		return String.format( ConversionUtil.getMessageText(result.toString()), parms );
+	}
+
 	/**
 	 * Verifies the required input parameters are entered. Prints an error
 	 * message the console and returns false if any parameter other than
-	 * validation is null.
+	 * validation is not provided, as by ConversionResult.isProvided.
 	 * 
 	 * @param fromType The unit type to convert.
 	 * @param toType The unit to type to output.
@@ -339,15 +415,15 @@ public class CommandLine
 	{
 		boolean valid = true;
 		
-		if (fromType == null || fromType.equals(Constants.NO_VALUE)) {
+		if (!ConversionResult.isProvided(fromType)) {
 			printResult( ResultType.NO_FROM );
 			valid = false;
 		}
-		else if (toType == null || toType.equals(Constants.NO_VALUE)) {
+		else if (!ConversionResult.isProvided(toType)) {
 			printResult( ResultType.NO_TO );
 			valid = false;
 		}
-		else if (units == null || units.equals(Constants.NO_VALUE)) {
+		else if (!ConversionResult.isProvided(units)) {
 			printResult( ResultType.NO_UNITS );
 			valid = false;
 		}
@@ -362,6 +438,7 @@ public class CommandLine
 	 */
 	protected void cleanup()
 	{
+		result = null;
 		fromType = null;
 		toType = null;
 		units = null;
@@ -381,6 +458,7 @@ public class CommandLine
 		BAD_TYPE( "badType" ),
 		BAD_UNITS( "badUnits" ),
 		BAD_VALUE( "badValue" ),
+		BAD_INPUT( "badInput" ),
 		MISMATCH( "typeMismatch" );
 	
 		@Override
@@ -395,6 +473,7 @@ public class CommandLine
 
 
 	private boolean initialized;
+	private ConversionResult result;
 	private ConversionType fromType;
 	private ConversionType toType;
 	private BigDecimal units;
@@ -403,4 +482,5 @@ public class CommandLine
 	private String validationUnits;
 	
 	private final static Log log = LogFactory.getLog( CommandLine.class );
+	private final static int MAX_PORT = 0xffff;
 }
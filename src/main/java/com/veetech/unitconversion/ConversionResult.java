@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion;
+
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import com.veetech.unitconversion.CommandLine.ResultType;
+import com.veetech.unitconversion.domain.Constants;
+import com.veetech.unitconversion.domain.ConversionPlan;
+import com.veetech.unitconversion.domain.ConversionType;
+import com.veetech.unitconversion.domain.DecimalParser;
+import java.math.BigDecimal;
+
+
+/**
+ * The result of one conversion request, evaluated for the command line, batch
+ * and web paths alike: CommandLine, BatchCommand, GradeCommand and
+ * ConversionHandler each evaluate their request values here. The checks run
+ * in order: missing values, unknown types, non-numeric units, mismatched
+ * types, then conversion and optional validation. Its message is the text
+ * CommandLine prints for the request, without the version header, rendered
+ * from the result type's compiled message template.
+ *
+ * Results also hold the values resolved from the inputs before the result
+ * was decided: the unit types, the unit value, the validation value and the
+ * converted value, as far as each was reached, and the text of each value,
+ * formatted once. Results are immutable.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ConversionResult
+{
+	/**
+	 * Returns true if the given input value is provided, i.e. it isn't null,
+	 * empty or Constants.NO_VALUE.
+	 *
+	 * @param value The input value.
+	 * @return True if the value is provided.
+	 */
+	public static boolean isProvided( String value )
+	{
+		return (value != null && !value.isEmpty() && !value.equals(Constants.NO_VALUE));
+	}
+
+	/**
+	 * Evaluates the conversion request given by the input values. A value is
+	 * treated as not provided as by isProvided.
+	 *
+	 * @param fromType The unit type to convert.
+	 * @param toType The unit type to output.
+	 * @param units The unit value to convert.
+	 * @param validation The unit value to validate, or null.
+	 * @return The conversion result.
+	 */
+	public static ConversionResult evaluate( String fromType, String toType, String units, String validation )
+	{
+		if (!isProvided(fromType)) {
+			return new ConversionResult( ResultType.NO_FROM, NO_PARMS );
+		}
+		if (!isProvided(toType)) {
+			return new ConversionResult( ResultType.NO_TO, NO_PARMS );
+		}
+		if (!isProvided(units)) {
+			return new ConversionResult( ResultType.NO_UNITS, NO_PARMS );
+		}
+
+		ConversionType from;
+		ConversionType to;
+		try {
+			from = ConversionUtil.getConversionType( fromType );
+		}
+		catch (IllegalArgumentException exc) {
+			return new ConversionResult( ResultType.BAD_TYPE, new String[] {fromType} );
+		}
+		try {
+			to = ConversionUtil.getConversionType( toType );
+		}
+		catch (IllegalArgumentException exc) {
+			return new ConversionResult( ResultType.BAD_TYPE, new String[] {toType}, from, null, null, null, null, null );
+		}
+
+		// traced from the unit value to the validation value
+		Tracer.Span parsing = Tracing.begin( Tracer.Phase.PARSING );
+		Workspace workspace = getWorkspace();
+		DecimalParser parser = workspace.parser;
+		BigDecimal value;
+		if (parser.parse(units)) {
+			value = parser.toBigDecimal();
+		}
+		else {
+			return traced( parsing, new ConversionResult(ResultType.BAD_UNITS, new String[] {units}, from, to, null, null, null, null) );
+		}
+
+		BigDecimal validatedValue = null;
+		if (isProvided(validation) && parser.parse(validation)) {
+			validatedValue = ConversionUtil.toSingleScale( parser.toBigDecimal() );
+		}
+		parsing.end( from.getUnit().name(), to.getUnit().name(), TRACE_PARSED );
+
+		// traced from the plan lookup to the result
+		Tracer.Span span = Tracing.begin( Tracer.Phase.CONVERSION );
+		Value unit = new Value( ConversionUtil.toSingleScale(value) );
+		Value validated = (validatedValue != null ? new Value(validatedValue) : null);
+		ConversionPlan plan;
+		try {
+			plan = ConversionUtil.getConversionPlan( from, to );
+		}
+		catch (UnsupportedOperationException exc) {
+			return traced( span, new ConversionResult(ResultType.MISMATCH,
+					new String[] {from.getPrintableName(), to.getPrintableName()}, from, to, value, unit, null, validated) );
+		}
+
+		Value output = new Value( plan.convert(value, workspace.scratch) );
+
+		if (validated != null) {
+			ResultType result = (validated.value.compareTo(output.value) == 0 ? ResultType.VALIDATED : ResultType.INCORRECT);
+
+			return traced( span, new ConversionResult(result, new String[] {
+				unit.text, from.getSymbol(), output.text, to.getSymbol(), validated.text},
+				from, to, value, unit, output, validated) );
+		}
+		if (isProvided(validation)) {
+			// a validation value that isn't a number is incorrect
+			return traced( span, new ConversionResult(ResultType.INCORRECT, new String[] {
+				unit.text, from.getSymbol(), output.text, to.getSymbol(), validation},
+				from, to, value, unit, output, null) );
+		}
+
+		return traced( span, new ConversionResult(ResultType.CONVERTED, new String[] {
+			unit.text, from.getSymbol(), output.text, to.getSymbol()},
+			from, to, value, unit, output, null) );
+	}
+
+	/**
+	 * Returns the result type.
+	 *
+	 * @return The result type.
+	 */
+	public ResultType getResultType()
+	{
+		return result;
+	}
+
+	/**
+	 * Returns the values substituted in the result message, e.g. the source
+	 * value and symbol and the converted value and symbol.
+	 *
+	 * @return The message parameters.
+	 */
+	public Object[] getParameters()
+	{
+		return parms.clone();
+	}
+
+	/**
+	 * Returns the unit type to convert.
+	 *
+	 * @return The source unit type, or null if not resolved.
+	 */
+	public ConversionType getFromType()
+	{
+		return fromType;
+	}
+
+	/**
+	 * Returns the unit type to output.
+	 *
+	 * @return The target unit type, or null if not resolved.
+	 */
+	public ConversionType getToType()
+	{
+		return toType;
+	}
+
+	/**
+	 * Returns the unit value to convert.
+	 *
+	 * @return The value to convert, or null if not parsed.
+	 */
+	public BigDecimal getUnitValue()
+	{
+		return unitValue;
+	}
+
+	/**
+	 * Returns the unit value to convert in tenths, as plain text.
+	 *
+	 * @return The value text, or null if not parsed.
+	 */
+	public String getUnitText()
+	{
+		return (unitTenths != null ? unitTenths.text : null);
+	}
+
+	/**
+	 * Returns the converted unit value.
+	 *
+	 * @return The converted value, or null if not converted.
+	 */
+	public BigDecimal getOutputValue()
+	{
+		return (outputValue != null ? outputValue.value : null);
+	}
+
+	/**
+	 * Returns the converted unit value as plain text.
+	 *
+	 * @return The converted value text, or null if not converted.
+	 */
+	public String getOutputText()
+	{
+		return (outputValue != null ? outputValue.text : null);
+	}
+
+	/**
+	 * Returns the unit value to validate, in tenths.
+	 *
+	 * @return The value to validate, or null if not parsed.
+	 */
+	public BigDecimal getValidationValue()
+	{
+		return (validationValue != null ? validationValue.value : null);
+	}
+
+	/**
+	 * Returns the unit value to validate, in tenths, as plain text.
+	 *
+	 * @return The value text, or null if not parsed.
+	 */
+	public String getValidationText()
+	{
+		return (validationValue != null ? validationValue.text : null);
+	}
+
+	/**
+	 * Returns the result message text, without the version header.
+	 *
+	 * @return The result message.
+	 */
+	public String getMessage()
+	{
+		return templates[result.ordinal()].render( parms );
+	}
+
+	/**
+	 * Returns a string representation of the result.
+	 */
+	@Override
+	public String toString()
+	{
+		return getMessage();
+	}
+
+
+	private ConversionResult( ResultType result, String[] parms )
+	{
+		this( result, parms, null, null, null, null, null, null );
+	}
+
+	private ConversionResult( ResultType result, String[] parms, ConversionType fromType, ConversionType toType,
+			BigDecimal unitValue, Value unitTenths, Value outputValue, Value validationValue )
+	{
+		this.result = result;
+		this.parms = parms;
+		this.fromType = fromType;
+		this.toType = toType;
+		this.unitValue = unitValue;
+		this.unitTenths = unitTenths;
+		this.outputValue = outputValue;
+		this.validationValue = validationValue;
+	}
+
+
+	/*
+	 * A decimal value with its plain text.
+	 */
+	private static final class Value
+	{
+		Value( BigDecimal value )
+		{
+			this.value = value;
+			this.text = value.toPlainString();
+		}
+
+		final BigDecimal value;
+		final String text;
+	}
+
+	/*
+	 * The parser and conversion scratch space of a thread's evaluations.
+	 */
+	private static final class Workspace
+	{
+		final DecimalParser parser = new DecimalParser();
+		final ConversionPlan.Scratch scratch = new ConversionPlan.Scratch();
+	}
+
+
+	/*
+	 * Ends the given conversion span with the given result's unit pair and
+	 * type, and returns the result.
+	 */
+	private static ConversionResult traced( Tracer.Span span, ConversionResult result )
+	{
+		span.end( result.fromType.getUnit().name(), result.toType.getUnit().name(), result.result.name() );
+
+		return result;
+	}
+
+	/*
+	 * Returns the current thread's workspace.
+	 */
+	private static Workspace getWorkspace()
+	{
+		Workspace workspace = workspaces.get();
+		if (workspace == null) {
+			workspace = new Workspace();
+			workspaces.set( workspace );
+		}
+
+		return workspace;
+	}
+
+	/*
+	 * Compiles the message template of each result type, by ordinal.
+	 */
+	private static MessageTemplate[] compileTemplates()
+	{
+		ResultType[] types = ResultType.values();
+		MessageTemplate[] compiled = new MessageTemplate[types.length];
+		for (ResultType type : types) {
+			compiled[type.ordinal()] = MessageTemplate.compile( ConversionUtil.getMessageText(type.toString()) );
+		}
+
+		return compiled;
+	}
+
+
+	// instance members
+	private final ResultType result;
+	private final String[] parms;
+	private final ConversionType fromType;
+	private final ConversionType toType;
+	private final BigDecimal unitValue;
+	private final Value unitTenths;
+	private final Value outputValue;
+	private final Value validationValue;
+
+	private final static String[] NO_PARMS = new String[0];
+	private final static String TRACE_PARSED = "PARSED";
+	private final static MessageTemplate[] templates = compileTemplates();
+	private final static ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+}
@@ -12,13 +12,22 @@ package com.veetech.unitconversion;
 
 import com.veetech.unitconversion.domain.Constants;
 import com.veetech.unitconversion.domain.Conversion;
+import com.veetech.unitconversion.domain.ConversionKernel;
+import com.veetech.unitconversion.domain.ConversionPlan;
 import com.veetech.unitconversion.domain.ConversionType;
+import com.veetech.unitconversion.domain.ConversionUnit;
+import com.veetech.unitconversion.domain.ScalarConversionKernel;
+import com.veetech.unitconversion.domain.UnitResolver;
 import com.veetech.factory.ObjectFactory;
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -59,17 +68,24 @@ public class ConversionUtil
 
 	/**
 	 * Returns a unit converter for the specified conversion type. Returns null
-	 * if a matching converter type can't be found.
+	 * if a matching converter type can't be found. Converters are created once
+	 * per unit and shared.
 	 * 
 	 * @param type The conversion type to return.
 	 * @return A matching unit converter.
 	 */
 	public static Conversion getConverter( ConversionType type )
 	{
-		Conversion converter = null;
+		int index = type.getUnit().ordinal();
+		Conversion converter = converters.get( index );
+		if (converter != null) return converter;
 		
+		ConversionType canonical = type.getUnit().getType();
 		try {
-			return (Conversion) ObjectFactory.getInstance().createObject( type.getFactoryKey(), new Object[] {type} );
+			converter = (Conversion) ObjectFactory.getInstance().createObject( canonical.getFactoryKey(), new Object[] {canonical} );
+			converters.compareAndSet( index, null, converter );
+			
+			return converters.get( index );
 		}
 		catch (ClassNotFoundException exc) {
 			if (log.isDebugEnabled()) {
@@ -86,7 +102,81 @@ public class ConversionUtil
 	}
 	
 	/**
-	 * Returns the matching ConversionType for the given type value.
+	 * Returns the conversion plan for converting units of the given source
+	 * type to the given target type. Plans are shared and may be held by the
+	 * caller for any number of conversions.
+	 * 
+	 * Throws an exception if either type is null or if conversion between the
+	 * types is not supported.
+	 * 
+	 * @param fromType The source unit type.
+	 * @param toType The target unit type.
+	 * @return The matching conversion plan.
+	 */
+	public static ConversionPlan getConversionPlan( ConversionType fromType, ConversionType toType )
+			throws NullPointerException, UnsupportedOperationException
+	{
+		return ConversionPlan.getPlan( fromType, toType );
+	}
+	
+	/**
+	 * Converts the given value from the source type to the target type,
+	 * rounded to tenths, using double arithmetic and no allocation. Results
+	 * differ from the BigDecimal conversion by at most one tenth, and only for
+	 * values at or very near a rounding tie; see ConversionPlan.convert(double).
+	 * 
+	 * Throws an exception if either type is null or if conversion between the
+	 * types is not supported.
+	 * 
+	 * @param units The value to convert.
+	 * @param fromType The source unit type.
+	 * @param toType The target unit type.
+	 * @return The converted value.
+	 */
+	public static double convert( double units, ConversionType fromType, ConversionType toType )
+			throws NullPointerException, UnsupportedOperationException
+	{
+		return ConversionPlan.getPlan( fromType, toType ).convert( units );
+	}
+	
+	/**
+	 * Converts all values of the given source array from the source type to
+	 * the target type and stores them in the output array, as by
+	 * convert(double, ConversionType, ConversionType).
+	 * 
+	 * Throws an exception if any parameter is null, if the output array is
+	 * shorter than the source array, or if conversion between the types is not
+	 * supported.
+	 * 
+	 * @param in The values to convert.
+	 * @param out The array to receive the converted values.
+	 * @param fromType The source unit type.
+	 * @param toType The target unit type.
+	 */
+	public static void convertAll( double[] in, double[] out, ConversionType fromType, ConversionType toType )
+			throws IndexOutOfBoundsException, NullPointerException, UnsupportedOperationException
+	{
+		ConversionPlan.getPlan( fromType, toType ).convertAll( in, out );
+	}
+	
+	/**
+	 * Returns the kernel for bulk conversions. The kernel configured with key
+	 * 'vectorKernel' is used if it can be loaded on this JVM, otherwise the
+	 * scalar kernel is used.
+	 * 
+	 * @return The bulk conversion kernel.
+	 */
+	public static ConversionKernel getConversionKernel()
+	{
+		return kernel;
+	}
+	
+	/**
+	 * Returns the matching ConversionType for the given type value. The
+	 * canonical instance of the type's unit is returned, so repeated lookups
+	 * return the same instance. Unit names, symbols and aliases are resolved
+	 * by UnitResolver; other values are looked up as factory keys. The lookup
+	 * is traced with the type value and the resolved unit.
 	 * 
 	 * Throws an exception if a matching type isn't found.
 	 * 
@@ -98,29 +188,16 @@ public class ConversionUtil
 	public static ConversionType getConversionType( String type )
 			throws IllegalArgumentException
 	{
+		Tracer.Span span = Tracing.begin( Tracer.Phase.TYPE_RESOLUTION );
 		ConversionType ctype = null;
-		
-		String key = type.replaceAll( "_", "" ).replaceAll( "-", "" ).toLowerCase() + "Type";
-
 		try {
-			ctype = (ConversionType) ObjectFactory.getInstance().createObject( key );
-		}
-		catch (ClassNotFoundException exc) {
-			if (log.isDebugEnabled()) {
-				log.debug( String.format("Conversion type instance for key '%s' not found.", key), exc );
-			}
+			ctype = findConversionType( type );
 			
-			throw new IllegalArgumentException( String.format("No matching conversion type for '%s'.", type) );
+			return ctype;
 		}
-		catch (InstantiationException exc) {
-			if (log.isErrorEnabled()) {
-				log.error( String.format("Failed to create conversion type instance for key '%s'.", key), exc );
-			}
-			
-			throw new IllegalArgumentException( String.format("Conversion type error for '%s'.", type) );
+		finally {
+			span.end( type, null, (ctype != null ? ctype.getUnit().name() : TRACE_NOT_FOUND) );
 		}
-		
-		return ctype;
 	}
 	
 	/**
@@ -133,7 +210,7 @@ public class ConversionUtil
 	 */
 	public static String getMessageText( String key )
 	{
-		String message = messages.getProperty( key );
+		String message = messages.get( key );
 		if (message == null) message = Constants.DEFAULT_MESSAGE_TEXT;
 		
 		return message;
@@ -163,17 +240,86 @@ public class ConversionUtil
 	}
 
 	
+	/*
+	 * Returns the matching ConversionType for the given type value, as by
+	 * getConversionType without tracing.
+	 */
+	private static ConversionType findConversionType( String type )
+			throws IllegalArgumentException
+	{
+		ConversionType ctype = UnitResolver.resolveType( type );
+		if (ctype != null) return ctype;
+		
+		String key = type.replaceAll( "_", "" ).replaceAll( "-", "" ).toLowerCase() + "Type";
+
+		try {
+			ctype = ((ConversionType) ObjectFactory.getInstance().createObject( key )).getUnit().getType();
+		}
+		catch (ClassNotFoundException exc) {
+			if (log.isDebugEnabled()) {
+				log.debug( String.format("Conversion type instance for key '%s' not found.", key), exc );
+			}
+			
+			throw new IllegalArgumentException( String.format("No matching conversion type for '%s'.", type) );
+		}
+		catch (InstantiationException exc) {
+			if (log.isErrorEnabled()) {
+				log.error( String.format("Failed to create conversion type instance for key '%s'.", key), exc );
+			}
+			
+			throw new IllegalArgumentException( String.format("Conversion type error for '%s'.", type) );
+		}
+		
+		return ctype;
+	}
+
+	/*
+	 * Creates the configured vector kernel, or the scalar kernel if the vector
+	 * kernel isn't configured or its JDK module isn't available.
+	 */
+	private static ConversionKernel createKernel()
+	{
+		try {
+			ConversionKernel vectorKernel = (ConversionKernel) ObjectFactory.getInstance().createObject( "vectorKernel" );
+			if (log.isDebugEnabled()) {
+				log.debug( String.format("Using bulk conversion kernel %s.", vectorKernel.getClass().getName()) );
+			}
+			
+			return vectorKernel;
+		}
+		catch (ClassNotFoundException | InstantiationException | LinkageError exc) {
+			if (log.isDebugEnabled()) {
+				log.debug( "Vector kernel not available, using scalar kernel.", exc );
+			}
+		}
+		
+		return new ScalarConversionKernel();
+	}
+
+	
 	private final static Log log = LogFactory.getLog( ConversionUtil.class );
+	private final static String TRACE_NOT_FOUND = "NOT_FOUND";
+	private final static ConversionKernel kernel = createKernel();
 	
-	private final static Properties messages = new Properties();
+	// shared converters by unit ordinal
+	private final static AtomicReferenceArray<Conversion> converters =
+			new AtomicReferenceArray<>( ConversionUnit.values().length );
+	
+	// read-only after loading, so lookups from parallel conversions don't
+	// contend on the synchronized Properties table
+	private final static Map<String,String> messages = new HashMap<>();
 	static {
+		Properties properties = new Properties();
 		try {
-			messages.load( ConversionUtil.class.getClassLoader().getResourceAsStream(Constants.MESSAGES) );
+			properties.load( ConversionUtil.class.getClassLoader().getResourceAsStream(Constants.MESSAGES) );
 		}
 		catch (IOException exc) {
 			if (log.isWarnEnabled() ) {
 				log.warn( String.format("Could not load resource %s.", Constants.MESSAGES) );
 			}
 		}
+		for (String key : properties.stringPropertyNames()) {
+			messages.put( key, properties.getProperty(key) );
+		}
 	}
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A result message text compiled into literal text and value slots. Each
+ * '%s' in the text is a slot for the next value, as for String.format, and
+ * '%%' is a literal '%'; message texts use no other conversions. Rendering
+ * appends the literals and the values in their slots, without parsing the
+ * text again.
+ *
+ * A template is immutable and safe for use by concurrent threads.
+ *
+ * @author a.cook@veetechis.com
+ */
+final class MessageTemplate
+{
+	/**
+	 * Compiles the given message text.
+	 *
+	 * Throws an exception if the text is null.
+	 *
+	 * @param message The message text.
+	 * @return The compiled template.
+	 */
+	static MessageTemplate compile( String message )
+			throws NullPointerException
+	{
+		List<String> literals = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int length = message.length();
+		for (int i = 0; i < length; i++) {
+			char c = message.charAt( i );
+			if (c == '%' && i + 1 < length && message.charAt(i + 1) == 's') {
+				literals.add( literal.toString() );
+				literal.setLength( 0 );
+				i++;
+			}
+			else if (c == '%' && i + 1 < length && message.charAt(i + 1) == '%') {
+				literal.append( '%' );
+				i++;
+			}
+			else {
+				literal.append( c );
+			}
+		}
+		literals.add( literal.toString() );
+
+		return new MessageTemplate( literals.toArray(new String[literals.size()]) );
+	}
+
+
+	/**
+	 * Renders the message with the given values, in the order of its slots.
+	 * A null value is rendered as 'null' and extra values are ignored, as for
+	 * String.format.
+	 *
+	 * Throws an exception if there are fewer values than slots.
+	 *
+	 * @param values The slot values.
+	 * @return The message text.
+	 */
+	String render( String[] values )
+			throws IllegalArgumentException
+	{
+		int slots = literals.length - 1;
+		if (values.length < slots) {
+			throw new IllegalArgumentException(
+				String.format("Expected %d message values, found %d.", slots, values.length) );
+		}
+		if (slots == 0) return literals[0];
+
+		int length = literalLength;
+		for (int i = 0; i < slots; i++) {
+			length += String.valueOf( values[i] ).length();
+		}
+
+		StringBuilder text = new StringBuilder( length );
+		for (int i = 0; i < slots; i++) {
+			text.append( literals[i] ).append( values[i] );
+		}
+
+		return text.append( literals[slots] ).toString();
+	}
+
+
+	private MessageTemplate( String[] literals )
+	{
+		this.literals = literals;
+
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+	}
+
+
+	// instance members
+	private final String[] literals;
+	private final int literalLength;
+}
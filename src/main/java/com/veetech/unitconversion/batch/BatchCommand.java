@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.batch;
+
+import com.veetech.unitconversion.CommandLine.ResultType;
+import com.veetech.unitconversion.ConversionResult;
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Constants;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Converts a stream of conversion records in one run. Each record is a line
+ * of comma-separated values:
+ * 
+ * <pre>
+ *     fromType,toType,units[,validate]
+ * </pre>
+ * 
+ * Values are trimmed; an empty value is not provided, and values after the
+ * fourth are ignored. Blank lines and lines starting with '#' are skipped.
+ * The version header is written once, then one result message per record as
+ * CommandLine prints it for the same values. Records are read and written one
+ * at a time, so memory use doesn't depend on the input size.
+ * 
+ * @author a.cook@veetechis.com
+ */
+public class BatchCommand
+{
+	/**
+	 * Converts the records of the given source to standard output. The source
+	 * is a file path, or '-' or null for standard input. Prints an error
+	 * message if the source can't be read.
+	 * 
+	 * @param source The file to read, or null for standard input.
+	 */
+	public static void run( String source )
+	{
+		boolean stdin = (source == null || source.equals(STDIN));
+		Writer output = new BufferedWriter( new OutputStreamWriter(System.out, CHARSET), BUFFER_SIZE );
+		boolean started = false;
+		
+		try {
+			try {
+				InputStream in = (stdin ? System.in : new FileInputStream(source));
+				try {
+					Reader input = new InputStreamReader( in, CHARSET );
+					started = true;
+					long records = new BatchCommand( input, output ).execute();
+					if (log.isDebugEnabled()) {
+						log.debug( String.format("Converted %d records from %s.", records, (stdin ? "standard input" : source)) );
+					}
+				}
+				finally {
+					if (!stdin) in.close();
+				}
+			}
+			catch (IOException exc) {
+				if (log.isErrorEnabled()) {
+					log.error( String.format("Error reading batch input '%s'.", source), exc );
+				}
+				// after the results of the records read before the error
+				output.write( getInputError(source, started) );
+			}
+			finally {
+				output.flush();
+			}
+		}
+		catch (IOException exc) {
+			if (log.isErrorEnabled()) {
+				log.error( "Error writing batch output.", exc );
+			}
+		}
+	}
+	
+	/**
+	 * Creates a batch command reading records from input and writing results
+	 * to output.
+	 * 
+	 * @param input The records to convert.
+	 * @param output The destination for result messages.
+	 */
+	public BatchCommand( Reader input, Writer output )
+	{
+		this.input = (input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input, BUFFER_SIZE));
+		this.output = output;
+	}
+
+	
+	/**
+	 * Converts all records of the input and writes the results to the output.
+	 * The output is flushed but not closed. Returns the number of records
+	 * converted.
+	 * 
+	 * Throws an exception if reading the input or writing the output fails.
+	 * 
+	 * @return The number of records.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public long execute()
+			throws IOException
+	{
+		long records = 0;
+		
+		output.write( Constants.VERSION );
+		output.write( LINE_SEP );
+		
+		String line;
+		while ((line = input.readLine()) != null) {
+			if (isRecord(line)) {
+				output.write( "  " );
+				output.write( convertRecord(line).getMessage() );
+				output.write( LINE_SEP );
+				records++;
+			}
+		}
+		output.flush();
+		
+		return records;
+	}
+
+	
+	/**
+	 * Returns the result of converting the given record line.
+	 * 
+	 * @param line The record to convert.
+	 * @return The conversion result.
+	 */
+	static ConversionResult convertRecord( String line )
+	{
+		String[] values = new String[4];
+		int start = 0;
+		for (int i = 0; i < values.length && start <= line.length(); i++) {
+			int end = line.indexOf( SEPARATOR, start );
+			if (end < 0) end = line.length();
+			values[i] = line.substring( start, end ).trim();
+			start = end + 1;
+		}
+		
+		return ConversionResult.evaluate( values[0], values[1], values[2], values[3] );
+	}
+	
+	/**
+	 * Returns true if the given line is a record, not blank or a comment.
+	 * 
+	 * @param line The input line.
+	 * @return True if the line is a conversion record.
+	 */
+	static boolean isRecord( String line )
+	{
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt( i );
+			if (!Character.isWhitespace(c)) return (c != COMMENT);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns the error message for a batch source that can't be read, after
+	 * the version line unless the results have already started with it.
+	 * 
+	 * @param source The source that can't be read.
+	 * @param started True if the results were started.
+	 * @return The error message lines.
+	 */
+	static String getInputError( String source, boolean started )
+	{
+		String message = "  " + String.format( ConversionUtil.getMessageText(ResultType.BAD_INPUT.toString()), source ) + LINE_SEP;
+		
+		return (started ? message : Constants.VERSION + LINE_SEP + message);
+	}
+	
+	
+	// instance members
+	private final BufferedReader input;
+	private final Writer output;
+	
+	private final static Log log = LogFactory.getLog( BatchCommand.class );
+	
+	private final static String STDIN = "-";
+	private final static char SEPARATOR = ',';
+	private final static char COMMENT = '#';
+	final static int BUFFER_SIZE = 1 << 16;
+	final static Charset CHARSET = Charset.forName( "UTF-8" );
+	final static String LINE_SEP = System.getProperty( "line.separator" );
+}
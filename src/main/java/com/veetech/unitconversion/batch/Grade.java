@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.batch;
+
+import com.veetech.unitconversion.CommandLine.ResultType;
+
+
+/**
+ * The grade of one answer. An answer is correct or incorrect as validated
+ * against its conversion; an answer that can't be validated, because the
+ * conversion itself is invalid or no answer is given, is invalid.
+ *
+ * @author a.cook@veetechis.com
+ */
+public enum Grade
+{
+	CORRECT( "Correct" ),
+	INCORRECT( "Incorrect" ),
+	INVALID( "Invalid" );
+
+	/**
+	 * Returns the grade of an answer with the given conversion result. An
+	 * answer that isn't a number is validated as INCORRECT, as is a wrong
+	 * answer, and graded incorrect.
+	 *
+	 * @param result The result of validating the answer.
+	 * @return The answer's grade.
+	 */
+	public static Grade of( ResultType result )
+	{
+		switch (result) {
+			case VALIDATED:
+				return CORRECT;
+			case INCORRECT:
+				return INCORRECT;
+			default:
+				return INVALID;
+		}
+	}
+
+	@Override
+	public String toString() { return label; }
+
+	private Grade( String label ) {
+		this.label = label;
+	}
+
+	private final String label;
+}
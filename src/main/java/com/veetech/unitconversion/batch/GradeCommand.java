@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.batch;
+
+import com.veetech.unitconversion.ConversionResult;
+import com.veetech.unitconversion.ConversionUtil;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Grades a file of answers in parallel. Each answer is a line of
+ * comma-separated values:
+ *
+ * <pre>
+ *     student,fromType,toType,units,answer
+ * </pre>
+ *
+ * The answer is validated as by the validate argument of CommandLine, and
+ * graded correct, incorrect, or invalid if the conversion is invalid or no
+ * answer is given. Values are trimmed, values after the fifth are ignored,
+ * and blank lines and lines starting with '#' are skipped.
+ *
+ * The version header is written once, then one grade per answer in file
+ * order, then the answer counts and pass rate in total and by student.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class GradeCommand extends ParallelBatchCommand
+{
+	/**
+	 * Grades the answers of the given file to standard output using the given
+	 * number of threads. Prints an error message if the file can't be read.
+	 *
+	 * @param source The file to read.
+	 * @param parallelism The number of grading threads.
+	 */
+	public static void run( String source, int parallelism )
+	{
+		OutputStream output = new BufferedOutputStream( System.out, BatchCommand.BUFFER_SIZE );
+		boolean started = false;
+
+		try {
+			try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+				started = true;
+				GradeCommand command = new GradeCommand( file.getChannel(), output, parallelism );
+				command.execute();
+				if (log.isDebugEnabled()) {
+					log.debug( String.format("Graded %d answers from %s with %d threads.",
+							command.getReport().getTotal(), source, parallelism) );
+				}
+			}
+			catch (IOException exc) {
+				if (log.isErrorEnabled()) {
+					log.error( String.format("Error reading grading input '%s'.", source), exc );
+				}
+				// after the results of the records read before the error
+				output.write( BatchCommand.getInputError(source, started).getBytes(BatchCommand.CHARSET) );
+			}
+			finally {
+				output.flush();
+			}
+		}
+		catch (IOException exc) {
+			if (log.isErrorEnabled()) {
+				log.error( "Error writing grading output.", exc );
+			}
+		}
+	}
+
+	/**
+	 * Creates a grade command reading answers from the input file and writing
+	 * grades to output.
+	 *
+	 * Throws an exception if parallelism is less than one.
+	 *
+	 * @param input The file of answers to grade.
+	 * @param output The destination for grades.
+	 * @param parallelism The number of grading threads.
+	 */
+	public GradeCommand( FileChannel input, OutputStream output, int parallelism )
+			throws IllegalArgumentException
+	{
+		super( input, output, parallelism );
+	}
+
+	/**
+	 * Creates a grade command with the given chunk size, the number of bytes
+	 * graded by one task.
+	 *
+	 * Throws an exception if parallelism or chunk size is less than one.
+	 *
+	 * @param input The file of answers to grade.
+	 * @param output The destination for grades.
+	 * @param parallelism The number of grading threads.
+	 * @param chunkSize The number of bytes per task.
+	 */
+	protected GradeCommand( FileChannel input, OutputStream output, int parallelism, int chunkSize )
+			throws IllegalArgumentException
+	{
+		super( input, output, parallelism, chunkSize );
+	}
+
+
+	/**
+	 * Returns the counts of the answers graded so far.
+	 *
+	 * @return The grade report.
+	 */
+	public GradeReport getReport()
+	{
+		return report;
+	}
+
+
+	/**
+	 * Returns the result of grading the given answer line, with the
+	 * student's name at index 0 of values.
+	 *
+	 * @param line The answer to grade.
+	 * @param values Receives the student's name.
+	 * @return The validation result.
+	 */
+	static ConversionResult gradeRecord( String line, String[] values )
+	{
+		int start = 0;
+		for (int i = 0; i < FIELDS; i++) {
+			values[i] = null;
+			if (start <= line.length()) {
+				int end = line.indexOf( SEPARATOR, start );
+				if (end < 0) end = line.length();
+				values[i] = line.substring( start, end ).trim();
+				start = end + 1;
+			}
+		}
+
+		return ConversionResult.evaluate( values[1], values[2], values[3], values[4] );
+	}
+
+	@Override
+	protected RecordConverter createConverter()
+	{
+		return new GradeConverter();
+	}
+
+	@Override
+	protected void chunkWritten( RecordConverter converter )
+	{
+		report.merge( ((GradeConverter) converter).report );
+	}
+
+	@Override
+	protected void writeSummary( OutputStream output )
+			throws IOException
+	{
+		StringBuilder summary = new StringBuilder();
+		summary.append( "  " ).append( String.format(ConversionUtil.getMessageText(SUMMARY_KEY),
+				report.getTotal(), report.getCount(Grade.CORRECT), report.getCount(Grade.INCORRECT),
+				report.getCount(Grade.INVALID), report.getPassRate().toPlainString()) );
+		summary.append( BatchCommand.LINE_SEP );
+
+		for (String student : report.getStudents()) {
+			summary.append( "  " ).append( String.format(ConversionUtil.getMessageText(STUDENT_KEY),
+					student, report.getCount(student, Grade.CORRECT), report.getCount(student, Grade.INCORRECT),
+					report.getCount(student, Grade.INVALID), report.getPassRate(student).toPlainString()) );
+			summary.append( BatchCommand.LINE_SEP );
+		}
+
+		output.write( summary.toString().getBytes(BatchCommand.CHARSET) );
+	}
+
+
+	/*
+	 * Grades the answers of one chunk and counts them in the chunk's report.
+	 */
+	private static class GradeConverter extends RecordConverter
+	{
+		@Override
+		protected boolean convert( String line, StringBuilder results )
+		{
+			if (!BatchCommand.isRecord(line)) return false;
+
+			ConversionResult result = gradeRecord( line, values );
+			Grade grade = Grade.of( result.getResultType() );
+			report.add( values[0], grade );
+			results.append( "  " ).append( String.format(ConversionUtil.getMessageText(GRADE_KEY),
+					values[0], grade, result.getMessage()) ).append( BatchCommand.LINE_SEP );
+
+			return true;
+		}
+
+		private final String[] values = new String[FIELDS];
+		private final GradeReport report = new GradeReport();
+	}
+
+
+	// instance members
+	private final GradeReport report = new GradeReport();
+
+	private final static Log log = LogFactory.getLog( GradeCommand.class );
+
+	private final static int FIELDS = 5;
+	private final static char SEPARATOR = ',';
+	private final static String GRADE_KEY = "gradedAnswer";
+	private final static String SUMMARY_KEY = "gradeSummary";
+	private final static String STUDENT_KEY = "studentSummary";
+}
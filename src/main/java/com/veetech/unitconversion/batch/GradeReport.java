@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.batch;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+
+/**
+ * Counts of graded answers, in total and by student. The pass rate is the
+ * percentage of correct answers among those correct or incorrect; invalid
+ * answers aren't counted against it.
+ *
+ * A report is not safe for use by concurrent threads. Parallel grading counts
+ * each chunk of answers in its own report and merges them.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class GradeReport
+{
+	/**
+	 * Counts an answer of the given student with the given grade.
+	 *
+	 * Throws an exception if student or grade is null.
+	 *
+	 * @param student The student's name.
+	 * @param grade The answer's grade.
+	 */
+	public void add( String student, Grade grade )
+			throws NullPointerException
+	{
+		long[] counts = students.get( student );
+		if (counts == null) {
+			if (student == null) throw new NullPointerException( "No student name." );
+			counts = new long[GRADES];
+			students.put( student, counts );
+		}
+		counts[grade.ordinal()]++;
+		totals[grade.ordinal()]++;
+	}
+
+	/**
+	 * Adds the counts of the given report to this report.
+	 *
+	 * @param report The report to merge.
+	 */
+	public void merge( GradeReport report )
+	{
+		for (Map.Entry<String,long[]> entry : report.students.entrySet()) {
+			long[] counts = students.get( entry.getKey() );
+			if (counts == null) {
+				students.put( entry.getKey(), entry.getValue().clone() );
+			}
+			else {
+				add( counts, entry.getValue() );
+			}
+		}
+		add( totals, report.totals );
+	}
+
+	/**
+	 * Returns the number of answers with the given grade.
+	 *
+	 * @param grade The grade to count.
+	 * @return The number of answers.
+	 */
+	public long getCount( Grade grade )
+	{
+		return totals[grade.ordinal()];
+	}
+
+	/**
+	 * Returns the number of answers of the given student with the given grade.
+	 *
+	 * @param student The student's name.
+	 * @param grade The grade to count.
+	 * @return The number of answers, or zero for an unknown student.
+	 */
+	public long getCount( String student, Grade grade )
+	{
+		long[] counts = students.get( student );
+		return (counts != null ? counts[grade.ordinal()] : 0);
+	}
+
+	/**
+	 * Returns the number of answers counted.
+	 *
+	 * @return The number of answers.
+	 */
+	public long getTotal()
+	{
+		return sum( totals );
+	}
+
+	/**
+	 * Returns the pass rate of all answers, a percentage with one decimal
+	 * place. Returns zero if no answer is correct or incorrect.
+	 *
+	 * @return The percentage of correct answers.
+	 */
+	public BigDecimal getPassRate()
+	{
+		return passRate( totals );
+	}
+
+	/**
+	 * Returns the pass rate of the given student's answers.
+	 *
+	 * @param student The student's name.
+	 * @return The percentage of correct answers.
+	 */
+	public BigDecimal getPassRate( String student )
+	{
+		long[] counts = students.get( student );
+		return passRate( counts != null ? counts : new long[GRADES] );
+	}
+
+	/**
+	 * Returns the names of the students counted, in sorted order.
+	 *
+	 * @return The student names.
+	 */
+	public SortedSet<String> getStudents()
+	{
+		return new TreeSet<>( students.keySet() );
+	}
+
+
+	/*
+	 * Adds the given counts to the target counts.
+	 */
+	private static void add( long[] target, long[] counts )
+	{
+		for (int i = 0; i < GRADES; i++) {
+			target[i] += counts[i];
+		}
+	}
+
+	/*
+	 * Returns the total of the given counts.
+	 */
+	private static long sum( long[] counts )
+	{
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+
+		return total;
+	}
+
+	/*
+	 * Returns the percentage of correct answers among correct and incorrect.
+	 */
+	private static BigDecimal passRate( long[] counts )
+	{
+		long correct = counts[Grade.CORRECT.ordinal()];
+		long graded = correct + counts[Grade.INCORRECT.ordinal()];
+		if (graded == 0) return BigDecimal.ZERO.setScale( 1 );
+
+		return BigDecimal.valueOf( correct * 100 ).divide( BigDecimal.valueOf(graded), 1, RoundingMode.HALF_UP );
+	}
+
+
+	// instance members
+	private final Map<String,long[]> students = new HashMap<>();
+	private final long[] totals = new long[GRADES];
+
+	private final static int GRADES = Grade.values().length;
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.batch;
+
+import com.veetech.unitconversion.domain.Constants;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Converts a file of conversion records in parallel. The records and results
+ * are those of BatchCommand, and the output is the same, in the same order.
+ * Lines end with '\n' or "\r\n".
+ *
+ * The file is split into chunks of whole records, each chunk is memory-mapped
+ * and converted by a task on a fork/join pool, and the chunk results are
+ * written in file order as they complete. At most a few chunks per thread are
+ * in flight at once, so memory use doesn't depend on the file size, and no
+ * mapping is larger than a chunk, so files of any size can be read.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class ParallelBatchCommand
+{
+	/**
+	 * Converts the records of the given file to standard output using the
+	 * given number of threads. Prints an error message if the file can't be
+	 * read.
+	 *
+	 * @param source The file to read.
+	 * @param parallelism The number of conversion threads.
+	 */
+	public static void run( String source, int parallelism )
+	{
+		OutputStream output = new BufferedOutputStream( System.out, BatchCommand.BUFFER_SIZE );
+		boolean started = false;
+
+		try {
+			try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+				started = true;
+				long records = new ParallelBatchCommand( file.getChannel(), output, parallelism ).execute();
+				if (log.isDebugEnabled()) {
+					log.debug( String.format("Converted %d records from %s with %d threads.", records, source, parallelism) );
+				}
+			}
+			catch (IOException exc) {
+				if (log.isErrorEnabled()) {
+					log.error( String.format("Error reading batch input '%s'.", source), exc );
+				}
+				// after the results of the records read before the error
+				output.write( BatchCommand.getInputError(source, started).getBytes(BatchCommand.CHARSET) );
+			}
+			finally {
+				output.flush();
+			}
+		}
+		catch (IOException exc) {
+			if (log.isErrorEnabled()) {
+				log.error( "Error writing batch output.", exc );
+			}
+		}
+	}
+
+	/**
+	 * Creates a parallel batch command reading records from the input file and
+	 * writing results to output.
+	 *
+	 * Throws an exception if parallelism is less than one.
+	 *
+	 * @param input The file of records to convert.
+	 * @param output The destination for result messages.
+	 * @param parallelism The number of conversion threads.
+	 */
+	public ParallelBatchCommand( FileChannel input, OutputStream output, int parallelism )
+			throws IllegalArgumentException
+	{
+		this( input, output, parallelism, CHUNK_SIZE );
+	}
+
+	/**
+	 * Creates a parallel batch command with the given chunk size, the number
+	 * of bytes converted by one task. A chunk is extended to the end of its
+	 * last record.
+	 *
+	 * Throws an exception if parallelism or chunk size is less than one.
+	 *
+	 * @param input The file of records to convert.
+	 * @param output The destination for result messages.
+	 * @param parallelism The number of conversion threads.
+	 * @param chunkSize The number of bytes per task.
+	 */
+	protected ParallelBatchCommand( FileChannel input, OutputStream output, int parallelism, int chunkSize )
+			throws IllegalArgumentException
+	{
+		if (parallelism < 1) {
+			throw new IllegalArgumentException( String.format("Invalid parallelism %d.", parallelism) );
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException( String.format("Invalid chunk size %d.", chunkSize) );
+		}
+
+		this.input = input;
+		this.output = output;
+		this.parallelism = parallelism;
+		this.chunkSize = chunkSize;
+	}
+
+
+	/**
+	 * Converts all records of the input and writes the results to the output.
+	 * The output is flushed but not closed. Returns the number of records
+	 * converted.
+	 *
+	 * Throws an exception if reading the input or writing the output fails.
+	 *
+	 * @return The number of records.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public long execute()
+			throws IOException
+	{
+		long records = 0;
+		output.write( (Constants.VERSION + BatchCommand.LINE_SEP).getBytes(BatchCommand.CHARSET) );
+
+		long size = input.size();
+
+		ForkJoinPool pool = new ForkJoinPool( parallelism );
+		try {
+			Deque<Future<Chunk>> pending = new ArrayDeque<>();
+			long start = 0;
+			while (start < size || !pending.isEmpty()) {
+				while (start < size && pending.size() < parallelism * WINDOW_PER_THREAD) {
+					long end = nextRecord( Math.min(start + chunkSize, size), size );
+					pending.add( pool.submit(new ChunkTask(start, end)) );
+					start = end;
+				}
+
+				Chunk chunk = getChunk( pending.removeFirst() );
+				output.write( chunk.output );
+				records += chunk.records;
+				chunkWritten( chunk.converter );
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		writeSummary( output );
+		output.flush();
+
+		return records;
+	}
+
+
+	/**
+	 * Returns a new converter for the records of one chunk. A converter is
+	 * used by one thread at a time. The default converts BatchCommand records.
+	 *
+	 * @return The chunk's record converter.
+	 */
+	protected RecordConverter createConverter()
+	{
+		return new RecordConverter();
+	}
+
+	/**
+	 * Called after the results of a chunk are written, in file order and on
+	 * the thread running execute. Does nothing by default.
+	 *
+	 * @param converter The converter of the written chunk.
+	 */
+	protected void chunkWritten( RecordConverter converter )
+	{
+		// no chunk state by default
+	}
+
+	/**
+	 * Writes text after the results of the last record. Writes nothing by
+	 * default.
+	 *
+	 * Throws an exception if writing the output fails.
+	 *
+	 * @param output The destination for result messages.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	protected void writeSummary( OutputStream output )
+			throws IOException
+	{
+		// no summary by default
+	}
+
+
+	/**
+	 * Converts record lines into result text for one chunk.
+	 */
+	protected static class RecordConverter
+	{
+		/**
+		 * Converts the given line and appends its result to results. Returns
+		 * false if the line is not a record.
+		 *
+		 * @param line The input line, without its line end.
+		 * @param results The chunk's result text.
+		 * @return True if the line is a record.
+		 */
+		protected boolean convert( String line, StringBuilder results )
+		{
+			if (!BatchCommand.isRecord(line)) return false;
+
+			results.append( "  " ).append( BatchCommand.convertRecord(line).getMessage() ).append( BatchCommand.LINE_SEP );
+
+			return true;
+		}
+	}
+
+
+	/*
+	 * Returns the position after the end of the record containing the given
+	 * position, or size if it is in the last record.
+	 */
+	private long nextRecord( long position, long size )
+			throws IOException
+	{
+		if (position == 0 || position >= size) return position;
+
+		// a chunk ending at a line start already ends on a record
+		ByteBuffer buffer = ByteBuffer.allocate( SCAN_SIZE );
+		long offset = position - 1;
+		while (offset < size) {
+			buffer.clear();
+			int count = input.read( buffer, offset );
+			if (count < 0) break;
+			for (int i = 0; i < count; i++) {
+				if (buffer.get(i) == '\n') return offset + i + 1;
+			}
+			offset += count;
+		}
+
+		return size;
+	}
+
+	/*
+	 * Returns the result of the given chunk task.
+	 */
+	private static Chunk getChunk( Future<Chunk> task )
+			throws IOException
+	{
+		try {
+			return task.get();
+		}
+		catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new IOException( "Batch conversion interrupted.", exc );
+		}
+		catch (ExecutionException exc) {
+			Throwable cause = exc.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+
+			throw new IOException( "Batch conversion failed.", cause );
+		}
+	}
+
+
+	/*
+	 * The converted output of one chunk.
+	 */
+	private static class Chunk
+	{
+		Chunk( byte[] output, long records, RecordConverter converter )
+		{
+			this.output = output;
+			this.records = records;
+			this.converter = converter;
+		}
+
+		final byte[] output;
+		final long records;
+		final RecordConverter converter;
+	}
+
+	/*
+	 * Converts the records between two positions of the input file, from the
+	 * start of a record up to the start of the next chunk.
+	 */
+	private class ChunkTask implements Callable<Chunk>
+	{
+		ChunkTask( long start, long end )
+		{
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Chunk call()
+				throws IOException
+		{
+			long length = end - start;
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException( String.format("Record at offset %d exceeds %d bytes.", start, Integer.MAX_VALUE) );
+			}
+
+			MappedByteBuffer chunk = input.map( FileChannel.MapMode.READ_ONLY, start, length );
+			StringBuilder results = new StringBuilder( (int) Math.min(length * 2, MAX_RESULT_HINT) );
+			byte[] line = new byte[LINE_SIZE];
+			int lineLength = 0;
+			long records = 0;
+			RecordConverter converter = createConverter();
+
+			int limit = (int) length;
+			for (int i = 0; i <= limit; i++) {
+				byte b = (i < limit ? chunk.get(i) : (byte) '\n');
+				if (b != '\n') {
+					if (lineLength == line.length) line = Arrays.copyOf( line, line.length * 2 );
+					line[lineLength++] = b;
+					continue;
+				}
+
+				// the file's last line may not be terminated
+				if (i == limit && lineLength == 0) break;
+				if (lineLength > 0 && line[lineLength - 1] == '\r') lineLength--;
+
+				if (converter.convert(new String(line, 0, lineLength, BatchCommand.CHARSET), results)) {
+					records++;
+				}
+				lineLength = 0;
+			}
+
+			return new Chunk( results.toString().getBytes(BatchCommand.CHARSET), records, converter );
+		}
+
+		private final long start;
+		private final long end;
+	}
+
+
+	// instance members
+	private final FileChannel input;
+	private final OutputStream output;
+	private final int parallelism;
+	private final int chunkSize;
+
+	private final static Log log = LogFactory.getLog( ParallelBatchCommand.class );
+
+	private final static int CHUNK_SIZE = 1 << 22;
+	private final static int WINDOW_PER_THREAD = 2;
+	private final static int SCAN_SIZE = 1 << 12;
+	private final static int LINE_SIZE = 256;
+	private final static int MAX_RESULT_HINT = 1 << 24;
+}
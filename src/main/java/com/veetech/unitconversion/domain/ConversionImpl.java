@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain;
 
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
 import com.veetech.unitconversion.domain.temperature.TemperatureType;
 import com.veetech.unitconversion.domain.volume.VolumeType;
 import java.math.BigDecimal;
@@ -52,6 +54,7 @@ public abstract class ConversionImpl
 	
 	/**
 	 * Converts the given source units value to the specified target type.
+	 * The conversion is traced with its unit pair.
 	 * 
 	 * Throws an exception if temperature conversion is not supported, if the
 	 * given units are non-numeric, or if either parameter value is null.
@@ -64,14 +67,25 @@ public abstract class ConversionImpl
 	public BigDecimal convertUnits( String units, ConversionType type )
 			throws NullPointerException, NumberFormatException, UnsupportedOperationException
 	{
-		if (type.isTemperatureType()) {
-			return convertTemperature( units, (TemperatureType)type );
+		Tracer.Span span = Tracing.begin( Tracer.Phase.CONVERSION );
+		String result = TRACE_FAILED;
+		try {
+			BigDecimal targetUnits;
+			if (type.isTemperatureType()) {
+				targetUnits = convertTemperature( units, (TemperatureType)type );
+			}
+			else if (type.isVolumeType()) {
+				targetUnits = convertVolume( units, (VolumeType)type );
+			}
+			else {
+				throw new UnsupportedOperationException( String.format("Unknown conversion type: %s.", type) );
+			}
+			result = TRACE_CONVERTED;
+			
+			return targetUnits;
 		}
-		else if (type.isVolumeType()) {
-			return convertVolume( units, (VolumeType)type );
-		}
-		else {
-			throw new UnsupportedOperationException( String.format("Unknown conversion type: %s.", type) );
+		finally {
+			span.end( getConversionType().getUnit().name(), (type != null ? type.getUnit().name() : null), result );
 		}
 	}
 
@@ -99,7 +113,7 @@ public abstract class ConversionImpl
 			throw new NullPointerException( "Null target conversion type." );
 
 		BigDecimal targetUnits;
-		BigDecimal sourceUnits = new BigDecimal( units );
+		BigDecimal sourceUnits = DecimalParser.parseDecimal( units );
 		if (type.isCelsiusType()) {
 			targetUnits = toCelsius( sourceUnits );
 		}
@@ -142,7 +156,7 @@ public abstract class ConversionImpl
 			throw new NullPointerException( "Null target conversion value." );
 		
 		BigDecimal targetUnits;
-		BigDecimal sourceUnits = new BigDecimal( units );
+		BigDecimal sourceUnits = DecimalParser.parseDecimal( units );
 		if (type.isCubicFeetType()) {
 			targetUnits = toCubicFeet( sourceUnits );
 		}
@@ -328,4 +342,7 @@ public abstract class ConversionImpl
 	// instance members
 	private TemperatureType sourceTemperatureType;
 	private VolumeType sourceVolumeType;
+	
+	private final static String TRACE_CONVERTED = "CONVERTED";
+	private final static String TRACE_FAILED = "FAILED";
 }
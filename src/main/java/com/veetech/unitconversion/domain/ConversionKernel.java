@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+
+/**
+ * An interface for classes performing bulk conversions of double values for
+ * ConversionPlan. Each method must return results identical to
+ * ConversionPlan.convert(double) for the same plan constants. Array bounds are
+ * checked by the caller.
+ * 
+ * @author a.cook@veetechis.com
+ */
+public interface ConversionKernel
+{
+	/**
+	 * Converts a slice of values by floor(units * scale + offset) / 10, where
+	 * scale and offset are the plan's constants pre-scaled to tenths.
+	 * 
+	 * @param in The values to convert.
+	 * @param inOffset The index of the first value to convert.
+	 * @param out The array to receive the converted values.
+	 * @param outOffset The index to store the first converted value.
+	 * @param length The number of values to convert.
+	 * @param scale The tenths scale factor.
+	 * @param offset The tenths offset, including one half for rounding.
+	 */
+	void affine( double[] in, int inOffset, double[] out, int outOffset, int length, double scale, double offset );
+	
+	/**
+	 * Converts a slice of values by units / divisor, rounded half-up to 4
+	 * digits and then to tenths.
+	 * 
+	 * @param in The values to convert.
+	 * @param inOffset The index of the first value to convert.
+	 * @param out The array to receive the converted values.
+	 * @param outOffset The index to store the first converted value.
+	 * @param length The number of values to convert.
+	 * @param divisor The divisor.
+	 */
+	void quotient( double[] in, int inOffset, double[] out, int outOffset, int length, double divisor );
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+import com.veetech.unitconversion.ConversionUtil;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.BufferOverflowException;
+import java.nio.DoubleBuffer;
+import java.nio.ReadOnlyBufferException;
+
+
+/**
+ * A resolved conversion from one unit type to another. Each plan holds the
+ * fused scale and offset (or divisor) of its unit pair so that a value is
+ * converted without converter lookup or type dispatch. Results are identical
+ * to those of the matching ConversionImpl subclass, rounded to tenths.
+ *
+ * Exact results are computed with integer arithmetic where the value allows
+ * (see convertTenths) and with BigDecimal otherwise; callers converting many
+ * values pass a Scratch to keep the integer arithmetic free of allocation.
+ * Values may also be converted as primitive doubles with convert(double),
+ * which allocates nothing, or in bulk with the convertAll methods. The
+ * BigDecimal methods remain the reference for exact results; the double
+ * method differs from them by at most one tenth for values below about 9e14,
+ * and only near rounding ties (see convert(double)).
+ *
+ * Plans are immutable and safe for use by concurrent threads. One plan exists
+ * for each supported unit pair; see getPlan.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ConversionPlan
+{
+	/**
+	 * Returns the conversion plan for the given source and target unit types.
+	 *
+	 * Throws an exception if either type is null or if conversion between the
+	 * types is not supported.
+	 *
+	 * @param fromType The source unit type.
+	 * @param toType The target unit type.
+	 * @return The matching conversion plan.
+	 */
+	public static ConversionPlan getPlan( ConversionType fromType, ConversionType toType )
+			throws NullPointerException, UnsupportedOperationException
+	{
+		if (fromType == null)
+			throw new NullPointerException( "Null source conversion type." );
+		if (toType == null)
+			throw new NullPointerException( "Null target conversion type." );
+
+		ConversionPlan plan = plans[ fromType.getUnit().ordinal() ][ toType.getUnit().ordinal() ];
+		if (plan == null) {
+			throw new UnsupportedOperationException(
+				String.format("Conversion from %s to %s not supported.", fromType, toType) );
+		}
+
+		return plan;
+	}
+
+
+	/**
+	 * Returns the source unit type of this plan.
+	 *
+	 * @return The source unit type.
+	 */
+	public ConversionType getFromType()
+	{
+		return fromType;
+	}
+
+	/**
+	 * Returns the target unit type of this plan.
+	 *
+	 * @return The target unit type.
+	 */
+	public ConversionType getToType()
+	{
+		return toType;
+	}
+
+	/**
+	 * Converts the given source units value to the target type, rounded to
+	 * tenths.
+	 *
+	 * Throws an exception if the parameter value is null.
+	 *
+	 * @param units The source unit type value to convert.
+	 * @return The converted value.
+	 */
+	public BigDecimal convert( BigDecimal units )
+			throws NullPointerException
+	{
+		return convert( units, null );
+	}
+
+	/**
+	 * Converts the given source units value to the target type, rounded to
+	 * tenths, using the given scratch space for its integer arithmetic.
+	 *
+	 * Throws an exception if the parameter value is null.
+	 *
+	 * @param units The source unit type value to convert.
+	 * @param scratch The scratch space, or null to use temporary space.
+	 * @return The converted value.
+	 */
+	public BigDecimal convert( BigDecimal units, Scratch scratch )
+			throws NullPointerException
+	{
+		if (units == null)
+			throw new NullPointerException( "Null source value." );
+
+		if (units.precision() <= MAX_COMPACT_PRECISION) {
+			long tenths = fixed.tenths( units.unscaledValue().longValue(), units.scale(), limbs(scratch) );
+			if (tenths != FixedTenths.NONE) return BigDecimal.valueOf( tenths, 1 );
+		}
+
+		return referenceConvert( units );
+	}
+
+	/**
+	 * Converts the value mantissa * 10^-scale to the target type and returns
+	 * the result in tenths, e.g. 2125 for 212.5. The result is exactly the
+	 * unscaled value of convert(BigDecimal.valueOf(mantissa, scale)), computed
+	 * with integer arithmetic; BigDecimal is used only if intermediate values
+	 * exceed about 60 digits.
+	 *
+	 * Throws an exception if the result doesn't fit a long.
+	 *
+	 * @param mantissa The unscaled source value, e.g. from DecimalParser.
+	 * @param scale The scale of the source value.
+	 * @return The converted value in tenths.
+	 */
+	public long convertTenths( long mantissa, int scale )
+			throws ArithmeticException
+	{
+		return convertTenths( mantissa, scale, null );
+	}
+
+	/**
+	 * Converts the value mantissa * 10^-scale to the target type and returns
+	 * the result in tenths, as by convertTenths(long, int), using the given
+	 * scratch space for its integer arithmetic.
+	 *
+	 * Throws an exception if the result doesn't fit a long.
+	 *
+	 * @param mantissa The unscaled source value, e.g. from DecimalParser.
+	 * @param scale The scale of the source value.
+	 * @param scratch The scratch space, or null to use temporary space.
+	 * @return The converted value in tenths.
+	 */
+	public long convertTenths( long mantissa, int scale, Scratch scratch )
+			throws ArithmeticException
+	{
+		long tenths = fixed.tenths( mantissa, scale, limbs(scratch) );
+		if (tenths != FixedTenths.NONE) return tenths;
+
+		BigInteger result = referenceConvert( BigDecimal.valueOf(mantissa, scale) ).unscaledValue();
+		if (result.bitLength() > 63)
+			throw new ArithmeticException( String.format("Converted value of %s out of range.", BigDecimal.valueOf(mantissa, scale)) );
+
+		return result.longValue();
+	}
+
+	/**
+	 * Converts the given source units value to the target type, rounded to
+	 * tenths.
+	 *
+	 * Throws an exception if the given units are non-numeric or null.
+	 *
+	 * @param units The source unit type value to convert.
+	 * @return The converted value.
+	 */
+	public BigDecimal convertUnits( String units )
+			throws NullPointerException, NumberFormatException
+	{
+		if (units == null)
+			throw new NullPointerException( "Null source value." );
+
+		return convert( DecimalParser.parseDecimal(units) );
+	}
+
+	/**
+	 * Converts the given source units value to the target type, rounded to
+	 * tenths, using double arithmetic. This method performs no allocation.
+	 * 
+	 * The result is the double nearest the value returned by convert(BigDecimal)
+	 * for the same decimal input, except when the exact unrounded result lies
+	 * on or within a few ulps (about 1e-15 of the magnitude of its terms) of a
+	 * rounding tie: n.n5, or n.nnnn5 for units / divisor conversions. Such
+	 * values may round the other way, so the result differs from the reference
+	 * by at most 0.1. Decimal inputs such as 0.15 that have no exact double
+	 * representation are converted at their binary value and are subject to
+	 * the same bound. The bound holds only while the magnitude of the result
+	 * and its terms is below 2^53 / 10, about 9e14; beyond that a double can't
+	 * hold every tenth, and the error grows with the magnitude. Non-finite
+	 * values are returned as-is.
+	 * 
+	 * @param units The source unit type value to convert.
+	 * @return The converted value.
+	 */
+	public double convert( double units )
+	{
+		if (divisor != null) {
+			double quotient = units / doubleDivisor;
+			double tenThousandths = Math.copySign( Math.floor(Math.abs(quotient) * 10000 + 0.5), quotient );
+			
+			return Math.floor( tenThousandths / 1000 + 0.5 ) / 10;
+		}
+		
+		return Math.floor( units * tenthsScale + tenthsOffset ) / 10;
+	}
+
+	/**
+	 * Converts all values of the given source array to the target type and
+	 * stores them in the output array, as by convert(double). The arrays may be
+	 * the same array.
+	 * 
+	 * Throws an exception if either array is null or if the output array is
+	 * shorter than the source array.
+	 * 
+	 * @param in The source unit type values to convert.
+	 * @param out The array to receive the converted values.
+	 */
+	public void convertAll( double[] in, double[] out )
+			throws IndexOutOfBoundsException, NullPointerException
+	{
+		convertAll( in, 0, out, 0, in.length );
+	}
+
+	/**
+	 * Converts a slice of the given source array to the target type and stores
+	 * the values in a slice of the output array, as by convert(double). The
+	 * slices may overlap only if they start at the same index of the same
+	 * array.
+	 * 
+	 * Throws an exception if either array is null or if either slice is out of
+	 * its array's bounds.
+	 * 
+	 * @param in The source unit type values to convert.
+	 * @param inOffset The index of the first value to convert.
+	 * @param out The array to receive the converted values.
+	 * @param outOffset The index to store the first converted value.
+	 * @param length The number of values to convert.
+	 */
+	public void convertAll( double[] in, int inOffset, double[] out, int outOffset, int length )
+			throws IndexOutOfBoundsException, NullPointerException
+	{
+		checkRange( in.length, inOffset, length );
+		checkRange( out.length, outOffset, length );
+
+		if (divisor != null) {
+			kernel.quotient( in, inOffset, out, outOffset, length, doubleDivisor );
+		}
+		else {
+			kernel.affine( in, inOffset, out, outOffset, length, tenthsScale, tenthsOffset );
+		}
+	}
+
+	/**
+	 * Converts the remaining values of the given source buffer to the target
+	 * type and puts them in the output buffer, as by convert(double). The
+	 * position of each buffer is advanced by the number of values converted.
+	 * 
+	 * Throws an exception if either buffer is null, if the output buffer has
+	 * fewer values remaining than the source buffer, or if the output buffer
+	 * is read-only.
+	 * 
+	 * @param in The source unit type values to convert.
+	 * @param out The buffer to receive the converted values.
+	 */
+	public void convertAll( DoubleBuffer in, DoubleBuffer out )
+			throws BufferOverflowException, NullPointerException, ReadOnlyBufferException
+	{
+		int length = in.remaining();
+		if (out.isReadOnly())
+			throw new ReadOnlyBufferException();
+		if (out.remaining() < length)
+			throw new BufferOverflowException();
+		
+		int inPosition = in.position();
+		int outPosition = out.position();
+		if (in.hasArray() && out.hasArray()) {
+			convertAll( in.array(), in.arrayOffset() + inPosition, out.array(), out.arrayOffset() + outPosition, length );
+		}
+		else {
+			for (int i = 0; i < length; i++) {
+				out.put( outPosition + i, convert(in.get(inPosition + i)) );
+			}
+		}
+		
+		in.position( inPosition + length );
+		out.position( outPosition + length );
+	}
+
+	/**
+	 * Returns a string representation of the plan.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format( "%s to %s", fromType, toType );
+	}
+
+
+	/**
+	 * Scratch space for the integer arithmetic of convert and convertTenths.
+	 * Without it each conversion allocates its own. A scratch space may be
+	 * reused for any number of conversions, by any plan, but is not safe for
+	 * use by concurrent threads; use one instance per thread.
+	 */
+	public static final class Scratch
+	{
+		/**
+		 * Creates scratch space for conversions.
+		 */
+		public Scratch()
+		{
+		}
+
+
+		private final long[] limbs = FixedTenths.newLimbs();
+	}
+
+
+	/*
+	 * Creates a plan converting by target = units * scale + offset.
+	 */
+	private ConversionPlan( ConversionType fromType, ConversionType toType, BigDecimal scale, BigDecimal offset )
+	{
+		this.fromType = fromType;
+		this.toType = toType;
+		this.scale = scale;
+		this.offset = offset;
+		this.divisor = null;
+		this.identity = (scale.compareTo(BigDecimal.ONE) == 0 && offset.signum() == 0);
+		
+		// tenths = floor(10 * (units * scale + offset) + 0.5), fused exactly
+		// before rounding each constant once to double
+		this.tenthsScale = scale.multiply( BigDecimal.TEN ).doubleValue();
+		this.tenthsOffset = offset.multiply( BigDecimal.TEN ).add( HALF ).doubleValue();
+		this.doubleDivisor = Double.NaN;
+		this.fixed = FixedTenths.affine( scale, offset );
+	}
+
+	/*
+	 * Creates a plan converting by target = units / divisor, calculated to
+	 * 4-digit precision.
+	 */
+	private ConversionPlan( ConversionType fromType, ConversionType toType, BigDecimal divisor )
+	{
+		this.fromType = fromType;
+		this.toType = toType;
+		this.scale = null;
+		this.offset = null;
+		this.divisor = divisor;
+		this.identity = false;
+		this.tenthsScale = Double.NaN;
+		this.tenthsOffset = Double.NaN;
+		this.doubleDivisor = divisor.doubleValue();
+		this.fixed = FixedTenths.quotient( divisor );
+	}
+
+
+	/*
+	 * Converts the given value using BigDecimal arithmetic, as ConversionImpl
+	 * does.
+	 */
+	private BigDecimal referenceConvert( BigDecimal units )
+	{
+		BigDecimal targetUnits;
+		if (divisor != null) {
+			targetUnits = units.divide( divisor, 4, RoundingMode.HALF_UP );
+		}
+		else if (identity) {
+			targetUnits = units;
+		}
+		else {
+			targetUnits = units.multiply( scale ).add( offset );
+		}
+
+		return ConversionUtil.toSingleScale( targetUnits );
+	}
+
+	/*
+	 * Returns the limbs of the given scratch space, or new limbs if null.
+	 */
+	private static long[] limbs( Scratch scratch )
+	{
+		return (scratch != null ? scratch.limbs : FixedTenths.newLimbs());
+	}
+
+	/*
+	 * Throws an exception if the given slice is out of its array's bounds.
+	 */
+	private static void checkRange( int arrayLength, int offset, int length )
+			throws IndexOutOfBoundsException
+	{
+		if (offset < 0 || length < 0 || offset > arrayLength - length) {
+			throw new IndexOutOfBoundsException(
+				String.format("Range [%d, %d + %d) out of bounds for length %d.", offset, offset, length, arrayLength) );
+		}
+	}
+
+	/*
+	 * Adds a units * scale + offset temperature plan to the plan table.
+	 */
+	private static void temperature( int from, int to, BigDecimal scale, BigDecimal offset )
+	{
+		plans[from][to] = new ConversionPlan( units[from].getType(), units[to].getType(), scale, offset );
+	}
+
+	/*
+	 * Adds a units * factor volume plan to the plan table.
+	 */
+	private static void volumeMultiply( int from, int to, BigDecimal factor )
+	{
+		plans[from][to] = new ConversionPlan( units[from].getType(), units[to].getType(), factor, BigDecimal.ZERO );
+	}
+
+	/*
+	 * Adds a units / divisor volume plan to the plan table.
+	 */
+	private static void volumeDivide( int from, int to, BigDecimal divisor )
+	{
+		plans[from][to] = new ConversionPlan( units[from].getType(), units[to].getType(), divisor );
+	}
+
+
+	// instance members
+	private final ConversionType fromType;
+	private final ConversionType toType;
+	private final BigDecimal scale;
+	private final BigDecimal offset;
+	private final BigDecimal divisor;
+	private final boolean identity;
+	private final double tenthsScale;
+	private final double tenthsOffset;
+	private final double doubleDivisor;
+	private final FixedTenths fixed;
+	
+	private final static BigDecimal HALF = BigDecimal.valueOf( 5, 1 );
+	private final static int MAX_COMPACT_PRECISION = 18;
+	private final static ConversionKernel kernel = ConversionUtil.getConversionKernel();
+
+	// plan table, indexed by unit ordinal; null where unsupported
+	private final static ConversionUnit[] units = ConversionUnit.values();
+	private final static ConversionPlan[][] plans = new ConversionPlan[units.length][units.length];
+
+	private final static int CELSIUS = ConversionUnit.CELSIUS.ordinal();
+	private final static int FAHRENHEIT = ConversionUnit.FAHRENHEIT.ordinal();
+	private final static int KELVIN = ConversionUnit.KELVIN.ordinal();
+	private final static int RANKINE = ConversionUnit.RANKINE.ordinal();
+
+	private final static int CUBIC_FEET = ConversionUnit.CUBIC_FEET.ordinal();
+	private final static int CUBIC_INCHES = ConversionUnit.CUBIC_INCHES.ordinal();
+	private final static int CUPS = ConversionUnit.CUPS.ordinal();
+	private final static int GALLONS = ConversionUnit.GALLONS.ordinal();
+	private final static int LITERS = ConversionUnit.LITERS.ordinal();
+	private final static int TABLESPOONS = ConversionUnit.TABLESPOONS.ordinal();
+
+	static {
+		// Same factors as ConversionUtil.fromCelsiusToFahrenheit and
+		// fromFahrenheitToCelsius, so fused results match exactly.
+		BigDecimal toF = BigDecimal.valueOf( 9/5f );
+		BigDecimal toC = BigDecimal.valueOf( 5/9f );
+		BigDecimal freezingF = BigDecimal.valueOf( 32 );
+		BigDecimal zeroC = BigDecimal.valueOf( 273.15 );
+		BigDecimal zeroF = BigDecimal.valueOf( 459.67 );
+		BigDecimal one = BigDecimal.ONE;
+		BigDecimal zero = BigDecimal.ZERO;
+
+		temperature( CELSIUS, CELSIUS, one, zero );
+		temperature( CELSIUS, FAHRENHEIT, toF, freezingF );
+		temperature( CELSIUS, KELVIN, one, zeroC );
+		temperature( CELSIUS, RANKINE, toF, freezingF.add(zeroF) );
+
+		temperature( FAHRENHEIT, CELSIUS, toC, freezingF.negate().multiply(toC) );
+		temperature( FAHRENHEIT, FAHRENHEIT, one, zero );
+		temperature( FAHRENHEIT, KELVIN, toC, freezingF.negate().multiply(toC).add(zeroC) );
+		temperature( FAHRENHEIT, RANKINE, one, zeroF );
+
+		temperature( KELVIN, CELSIUS, one, zeroC.negate() );
+		temperature( KELVIN, FAHRENHEIT, toF, zeroC.negate().multiply(toF).add(freezingF) );
+		temperature( KELVIN, KELVIN, one, zero );
+		temperature( KELVIN, RANKINE, toF, zero );
+
+		temperature( RANKINE, CELSIUS, toC, zeroF.add(freezingF).negate().multiply(toC) );
+		temperature( RANKINE, FAHRENHEIT, one, zeroF.negate() );
+		temperature( RANKINE, KELVIN, toC, zero );
+		temperature( RANKINE, RANKINE, one, zero );
+
+		volumeMultiply( CUBIC_FEET, CUBIC_FEET, one );
+		volumeMultiply( CUBIC_FEET, CUBIC_INCHES, BigDecimal.valueOf(1728) );
+		volumeMultiply( CUBIC_FEET, CUPS, BigDecimal.valueOf(119.6883) );
+		volumeMultiply( CUBIC_FEET, GALLONS, BigDecimal.valueOf(6.4285) );
+		volumeMultiply( CUBIC_FEET, LITERS, BigDecimal.valueOf(28.3169) );
+		volumeMultiply( CUBIC_FEET, TABLESPOONS, BigDecimal.valueOf(1915.013) );
+
+		volumeDivide( CUBIC_INCHES, CUBIC_FEET, BigDecimal.valueOf(1728) );
+		volumeMultiply( CUBIC_INCHES, CUBIC_INCHES, one );
+		volumeDivide( CUBIC_INCHES, CUPS, BigDecimal.valueOf(14.4375) );
+		volumeDivide( CUBIC_INCHES, GALLONS, BigDecimal.valueOf(268.8025) );
+		volumeDivide( CUBIC_INCHES, LITERS, BigDecimal.valueOf(61.0237) );
+		volumeMultiply( CUBIC_INCHES, TABLESPOONS, BigDecimal.valueOf(1.1082) );
+
+		volumeDivide( CUPS, CUBIC_FEET, BigDecimal.valueOf(119.6883) );
+		volumeMultiply( CUPS, CUBIC_INCHES, BigDecimal.valueOf(14.4375) );
+		volumeMultiply( CUPS, CUPS, one );
+		volumeMultiply( CUPS, GALLONS, BigDecimal.valueOf(0.0537) );
+		volumeDivide( CUPS, LITERS, BigDecimal.valueOf(4.2268) );
+		volumeMultiply( CUPS, TABLESPOONS, BigDecimal.valueOf(16) );
+
+		volumeDivide( GALLONS, CUBIC_FEET, BigDecimal.valueOf(6.4285) );
+		volumeMultiply( GALLONS, CUBIC_INCHES, BigDecimal.valueOf(268.8025) );
+		volumeMultiply( GALLONS, CUPS, BigDecimal.valueOf(18.6184) );
+		volumeMultiply( GALLONS, GALLONS, one );
+		volumeMultiply( GALLONS, LITERS, BigDecimal.valueOf(4.4049) );
+		volumeMultiply( GALLONS, TABLESPOONS, BigDecimal.valueOf(297.8937) );
+
+		volumeDivide( LITERS, CUBIC_FEET, BigDecimal.valueOf(28.3169) );
+		volumeMultiply( LITERS, CUBIC_INCHES, BigDecimal.valueOf(61.0237) );
+		volumeMultiply( LITERS, CUPS, BigDecimal.valueOf(4.2268) );
+		volumeDivide( LITERS, GALLONS, BigDecimal.valueOf(4.4049) );
+		volumeMultiply( LITERS, LITERS, one );
+		volumeMultiply( LITERS, TABLESPOONS, BigDecimal.valueOf(67.628) );
+
+		volumeDivide( TABLESPOONS, CUBIC_FEET, BigDecimal.valueOf(1915.013) );
+		volumeDivide( TABLESPOONS, CUBIC_INCHES, BigDecimal.valueOf(1.1082) );
+		volumeDivide( TABLESPOONS, CUPS, BigDecimal.valueOf(16) );
+		volumeDivide( TABLESPOONS, GALLONS, BigDecimal.valueOf(297.8937) );
+		volumeDivide( TABLESPOONS, LITERS, BigDecimal.valueOf(67.628) );
+		volumeMultiply( TABLESPOONS, TABLESPOONS, one );
+	}
+}
@@ -12,7 +12,9 @@ package com.veetech.unitconversion.domain;
 
 
 /**
- * Base class for temperature and volumetric conversion types.
+ * Base class for temperature and volumetric conversion types. Types are
+ * identified by their ConversionUnit; instances of the same unit are equal,
+ * and ConversionUnit.getType returns the canonical instance of each unit.
  * 
  * @author a.cook@veetechis.com
  */
@@ -28,19 +30,17 @@ public abstract class ConversionType
 	@Override
 	public boolean equals( Object obj )
 	{
-		return ((obj instanceof ConversionType) && (hashCode() == obj.hashCode()));
+		return ((obj instanceof ConversionType) && (getUnit() == ((ConversionType)obj).getUnit()));
 	}
 
 	/**
-	 * Returns a hash code for this instance.
+	 * Returns a hash code for this instance, the ordinal of its unit.
 	 * @return The hash code.
 	 */
 	@Override
 	public int hashCode()
 	{
-		return String.format( "%s-%s-%s",
-				new Object[] {getFactoryKey(), getPrintableName(), getSymbol()} ).
-				hashCode();
+		return getUnit().ordinal();
 	}
 	
 	/**
@@ -78,4 +78,12 @@ public abstract class ConversionType
 	 * @return The conversion type factory key.
 	 */
 	public abstract String getFactoryKey();
+	
+	/**
+	 * Returns the unit of this type. The unit's ordinal may be used to index
+	 * per-unit tables.
+	 * 
+	 * @return The conversion unit.
+	 */
+	public abstract ConversionUnit getUnit();
 }
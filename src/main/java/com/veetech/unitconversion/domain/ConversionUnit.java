@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+import com.veetech.unitconversion.domain.temperature.CelsiusType;
+import com.veetech.unitconversion.domain.temperature.FahrenheitType;
+import com.veetech.unitconversion.domain.temperature.KelvinType;
+import com.veetech.unitconversion.domain.temperature.RankineType;
+import com.veetech.unitconversion.domain.volume.CubicFeetType;
+import com.veetech.unitconversion.domain.volume.CubicInchesType;
+import com.veetech.unitconversion.domain.volume.CupsType;
+import com.veetech.unitconversion.domain.volume.GallonsType;
+import com.veetech.unitconversion.domain.volume.LitersType;
+import com.veetech.unitconversion.domain.volume.TablespoonsType;
+
+
+/**
+ * Registry of supported conversion units. Each unit holds the canonical
+ * instance of its conversion type, so types may be compared by unit and
+ * indexed by unit ordinal, e.g. in an EnumMap or array.
+ * 
+ * @author a.cook@veetechis.com
+ */
+public enum ConversionUnit
+{
+	CELSIUS( new CelsiusType(), "degc", "centigrade" ),
+	FAHRENHEIT( new FahrenheitType(), "degf" ),
+	KELVIN( new KelvinType(), "degk" ),
+	RANKINE( new RankineType(), "degr" ),
+	CUBIC_FEET( new CubicFeetType(), "cubicfoot", "cuft", "ft3" ),
+	CUBIC_INCHES( new CubicInchesType(), "cubicinch", "cuin", "in3" ),
+	CUPS( new CupsType(), "cup" ),
+	GALLONS( new GallonsType(), "gallon" ),
+	LITERS( new LitersType(), "liter", "litres", "litre" ),
+	TABLESPOONS( new TablespoonsType(), "tablespoon", "tbsp", "tbs" );
+
+	/**
+	 * Returns the canonical conversion type of this unit.
+	 * 
+	 * @return The unit's conversion type.
+	 */
+	public ConversionType getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * Returns the names this unit is known by, in addition to its type's
+	 * factory key, printable name and symbol. Aliases are lower case without
+	 * separators; see UnitResolver.
+	 * 
+	 * @return The unit's aliases.
+	 */
+	public String[] getAliases()
+	{
+		return aliases.clone();
+	}
+
+	
+	private ConversionUnit( ConversionType type, String... aliases )
+	{
+		this.type = type;
+		this.aliases = aliases;
+	}
+
+	
+	private final ConversionType type;
+	private final String[] aliases;
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Parses decimal values from characters or bytes in place. A value is read
+ * into a long mantissa and int scale, value = mantissa * 10^-scale, without
+ * creating intermediate objects.
+ *
+ * Accepted input is exactly that accepted by new BigDecimal(String): an
+ * optional sign, digits with an optional decimal point, and an optional
+ * exponent; no whitespace. Byte input is ASCII. Values with more digits than
+ * a long can hold are still accepted; they are not compact and are kept as a
+ * BigDecimal instead.
+ *
+ * A parser holds the last parsed value and is not safe for use by concurrent
+ * threads; use one instance per thread.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class DecimalParser
+{
+	/**
+	 * Returns the BigDecimal value of the given characters. The result equals
+	 * new BigDecimal(value.toString()), including its scale.
+	 *
+	 * Each call creates a parser, and an exception for a value that isn't a
+	 * number. Callers parsing many values should reuse a parser of their own,
+	 * one per thread, and test the result of parse instead.
+	 *
+	 * Throws an exception if the value is null or not a decimal number.
+	 *
+	 * @param value The characters to parse.
+	 * @return The decimal value.
+	 */
+	public static BigDecimal parseDecimal( CharSequence value )
+			throws NullPointerException, NumberFormatException
+	{
+		DecimalParser parser = new DecimalParser();
+		if (!parser.parse(value)) {
+			throw new NumberFormatException( String.format("Not a decimal value: '%s'.", value) );
+		}
+
+		return parser.toBigDecimal();
+	}
+
+	/**
+	 * Parses the given characters. Returns false if they are not a decimal
+	 * number, in which case the parser holds no value.
+	 *
+	 * Throws an exception if the value is null.
+	 *
+	 * @param value The characters to parse.
+	 * @return True if the value was parsed.
+	 */
+	public boolean parse( CharSequence value )
+			throws NullPointerException
+	{
+		return parse( value, 0, value.length() );
+	}
+
+	/**
+	 * Parses the given range of characters, from start up to but not including
+	 * end. Returns false if they are not a decimal number.
+	 *
+	 * Throws an exception if the value is null or the range is out of bounds.
+	 *
+	 * @param value The characters to parse.
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 * @return True if the value was parsed.
+	 */
+	public boolean parse( CharSequence value, int start, int end )
+			throws IndexOutOfBoundsException, NullPointerException
+	{
+		checkRange( value.length(), start, end );
+		chars = value;
+		try {
+			return parseRange( start, end );
+		}
+		finally {
+			chars = null;
+		}
+	}
+
+	/**
+	 * Parses the given range of ASCII bytes, from start up to but not
+	 * including end. Returns false if they are not a decimal number.
+	 *
+	 * Throws an exception if the buffer is null or the range is out of bounds.
+	 *
+	 * @param buffer The bytes to parse.
+	 * @param start The index of the first byte.
+	 * @param end The index after the last byte.
+	 * @return True if the value was parsed.
+	 */
+	public boolean parse( byte[] buffer, int start, int end )
+			throws IndexOutOfBoundsException, NullPointerException
+	{
+		checkRange( buffer.length, start, end );
+		bytes = buffer;
+		try {
+			return parseRange( start, end );
+		}
+		finally {
+			bytes = null;
+		}
+	}
+
+	/**
+	 * Parses the given range of ASCII bytes, from absolute index start up to
+	 * but not including end. The buffer's position is not changed. Returns
+	 * false if they are not a decimal number.
+	 *
+	 * Throws an exception if the buffer is null or the range is out of bounds.
+	 *
+	 * @param buffer The bytes to parse.
+	 * @param start The index of the first byte.
+	 * @param end The index after the last byte.
+	 * @return True if the value was parsed.
+	 */
+	public boolean parse( ByteBuffer buffer, int start, int end )
+			throws IndexOutOfBoundsException, NullPointerException
+	{
+		checkRange( buffer.limit(), start, end );
+		if (buffer.hasArray()) {
+			return parse( buffer.array(), buffer.arrayOffset() + start, buffer.arrayOffset() + end );
+		}
+
+		byteBuffer = buffer;
+		try {
+			return parseRange( start, end );
+		}
+		finally {
+			byteBuffer = null;
+		}
+	}
+
+	/**
+	 * Returns true if a value is parsed and its mantissa fits a long.
+	 *
+	 * @return True if getMantissa and getScale hold the parsed value.
+	 */
+	public boolean isCompact()
+	{
+		return (parsed && big == null);
+	}
+
+	/**
+	 * Returns the mantissa of the parsed value. Valid only if isCompact.
+	 *
+	 * @return The value's unscaled digits.
+	 */
+	public long getMantissa()
+	{
+		return mantissa;
+	}
+
+	/**
+	 * Returns the scale of the parsed value, the power of ten the mantissa is
+	 * divided by. Valid only if isCompact.
+	 *
+	 * @return The value's scale.
+	 */
+	public int getScale()
+	{
+		return scale;
+	}
+
+	/**
+	 * Returns the parsed value as a double, correctly rounded.
+	 *
+	 * Throws an exception if no value is parsed.
+	 *
+	 * @return The nearest double to the parsed value.
+	 */
+	public double doubleValue()
+			throws IllegalStateException
+	{
+		checkParsed();
+		if (big != null) return big.doubleValue();
+
+		// exact operands give a correctly rounded result
+		if (mantissa > -MAX_EXACT && mantissa < MAX_EXACT) {
+			if (scale == 0) {
+				return (double) mantissa;
+			}
+			else if (scale > 0 && scale < POWERS.length) {
+				return mantissa / POWERS[scale];
+			}
+			else if (scale < 0 && -scale < POWERS.length) {
+				return mantissa * POWERS[-scale];
+			}
+		}
+
+		return BigDecimal.valueOf( mantissa, scale ).doubleValue();
+	}
+
+	/**
+	 * Returns the parsed value as a BigDecimal, equal in value and scale to
+	 * new BigDecimal of the parsed text.
+	 *
+	 * Throws an exception if no value is parsed.
+	 *
+	 * @return The parsed value.
+	 */
+	public BigDecimal toBigDecimal()
+			throws IllegalStateException
+	{
+		checkParsed();
+		return (big != null ? big : BigDecimal.valueOf(mantissa, scale));
+	}
+
+
+	/*
+	 * Parses the range of the current source and sets the parsed value.
+	 * Follows the grammar of BigDecimal(String).
+	 */
+	private boolean parseRange( int start, int end )
+	{
+		parsed = false;
+		big = null;
+		mantissa = 0;
+		scale = 0;
+
+		int i = start;
+		if (i == end) return false;
+
+		int c = charAt( i );
+		boolean negative = (c == '-');
+		if (negative || c == '+') {
+			i++;
+		}
+
+		long digits = 0;
+		boolean compact = true;
+		boolean anyDigit = false;
+		boolean point = false;
+		long fraction = 0;
+		for (; i < end; i++) {
+			c = charAt( i );
+			int digit = digit( c );
+			if (digit >= 0) {
+				anyDigit = true;
+				if (point) fraction++;
+				if (compact) {
+					if (digits > (Long.MAX_VALUE - digit) / 10) {
+						compact = false;
+					}
+					else {
+						digits = digits * 10 + digit;
+					}
+				}
+			}
+			else if (c == '.' && !point) {
+				point = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (!anyDigit) return false;
+
+		long exponent = 0;
+		if (i < end) {
+			c = charAt( i++ );
+			if (c != 'e' && c != 'E') return false;
+			if (i == end) return false;
+
+			c = charAt( i );
+			boolean negativeExponent = (c == '-');
+			if (negativeExponent || c == '+') {
+				if (++i == end) return false;
+			}
+
+			int significant = 0;
+			for (; i < end; i++) {
+				int digit = digit( charAt(i) );
+				if (digit < 0) return false;
+				if (significant > 0 || digit > 0) {
+					// BigDecimal rejects more than ten significant exponent digits
+					if (++significant > 10) return false;
+					exponent = exponent * 10 + digit;
+				}
+			}
+			if (negativeExponent) exponent = -exponent;
+			if (exponent > Integer.MAX_VALUE || exponent < Integer.MIN_VALUE) return false;
+		}
+
+		long adjustedScale = fraction - exponent;
+		if (adjustedScale > Integer.MAX_VALUE || adjustedScale < Integer.MIN_VALUE) return false;
+
+		scale = (int) adjustedScale;
+		if (compact) {
+			mantissa = (negative ? -digits : digits);
+		}
+		else {
+			big = new BigDecimal( text(start, end) );
+		}
+		parsed = true;
+
+		return true;
+	}
+
+	/*
+	 * Returns the character at the given index of the current source.
+	 */
+	private int charAt( int index )
+	{
+		if (bytes != null) return (bytes[index] & 0xff);
+		if (byteBuffer != null) return (byteBuffer.get(index) & 0xff);
+
+		return chars.charAt( index );
+	}
+
+	/*
+	 * Returns the decimal digit value of the given character, or -1.
+	 */
+	private int digit( int c )
+	{
+		if (c >= '0' && c <= '9') return c - '0';
+		if (c < 128 || chars == null) return -1;
+
+		// BigDecimal accepts any Unicode digit in character input
+		return Character.digit( (char) c, 10 );
+	}
+
+	/*
+	 * Returns a copy of the given range of the current source.
+	 */
+	private char[] text( int start, int end )
+	{
+		char[] text = new char[end - start];
+		for (int i = start; i < end; i++) {
+			text[i - start] = (char) charAt( i );
+		}
+
+		return text;
+	}
+
+	/*
+	 * Throws an exception if no value is parsed.
+	 */
+	private void checkParsed()
+			throws IllegalStateException
+	{
+		if (!parsed) throw new IllegalStateException( "No decimal value parsed." );
+	}
+
+	/*
+	 * Throws an exception if the given range is out of bounds.
+	 */
+	private static void checkRange( int length, int start, int end )
+			throws IndexOutOfBoundsException
+	{
+		if (start < 0 || start > end || end > length) {
+			throw new IndexOutOfBoundsException(
+				String.format("Range [%d, %d) out of bounds for length %d.", start, end, length) );
+		}
+	}
+
+
+	// instance members
+	private CharSequence chars;
+	private byte[] bytes;
+	private ByteBuffer byteBuffer;
+
+	private boolean parsed;
+	private long mantissa;
+	private int scale;
+	private BigDecimal big;
+
+	private final static long MAX_EXACT = 1L << 53;
+	private final static double[] POWERS = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+
+/**
+ * Integer arithmetic for a conversion plan. Converts a decimal value given as
+ * mantissa * 10^-scale to its result in tenths, rounded exactly as by
+ * ConversionUtil.toSingleScale: ties round toward positive infinity, which is
+ * HALF_UP for positive and HALF_DOWN for negative values.
+ *
+ * Intermediate values are held exactly as magnitudes in base 10^9 limbs of a
+ * long array, least significant first, each limb in [0, 10^9). Values whose
+ * intermediates need more limbs than the array holds return NONE, and the
+ * caller uses its BigDecimal arithmetic instead. The array is scratch space
+ * supplied by the caller, see newLimbs, so that a conversion allocates
+ * nothing.
+ *
+ * @author a.cook@veetechis.com
+ */
+final class FixedTenths
+{
+	/**
+	 * Returned when a value can't be converted by integer arithmetic.
+	 */
+	final static long NONE = Long.MIN_VALUE;
+
+	/**
+	 * Returns arithmetic for target = units * scale + offset.
+	 *
+	 * @param scale The plan scale factor.
+	 * @param offset The plan offset.
+	 * @return The plan arithmetic.
+	 */
+	static FixedTenths affine( BigDecimal scale, BigDecimal offset )
+	{
+		return new FixedTenths( false, toLimbs(scale.unscaledValue(), 2), scale.signum(), scale.scale(),
+				toLimbs(offset.unscaledValue(), 3), offset.signum(), offset.scale(), 0, 0 );
+	}
+
+	/**
+	 * Returns arithmetic for target = units / divisor, rounded HALF_UP to four
+	 * places before rounding to tenths.
+	 *
+	 * @param divisor The plan divisor.
+	 * @return The plan arithmetic.
+	 */
+	static FixedTenths quotient( BigDecimal divisor )
+	{
+		BigInteger mantissa = divisor.unscaledValue();
+		boolean fits = (mantissa.signum() > 0 && mantissa.compareTo(BigInteger.valueOf(BASE)) < 0);
+
+		return new FixedTenths( true, null, 0, 0, null, 0, 0, (fits ? mantissa.longValue() : 0), divisor.scale() );
+	}
+
+	/**
+	 * Returns scratch space for the tenths method. The space may be reused for
+	 * any number of conversions by one thread at a time.
+	 *
+	 * @return The scratch limbs.
+	 */
+	static long[] newLimbs()
+	{
+		return new long[LIMBS];
+	}
+
+	/**
+	 * Returns the converted value of mantissa * 10^-scale in tenths, or NONE
+	 * if the value or its result is out of range.
+	 *
+	 * @param mantissa The unscaled source value.
+	 * @param scale The scale of the source value.
+	 * @param v Scratch space from newLimbs.
+	 * @return The converted value in tenths, or NONE.
+	 */
+	long tenths( long mantissa, int scale, long[] v )
+	{
+		if (mantissa == Long.MIN_VALUE) return NONE;
+
+		return (quotient ? quotientTenths(mantissa, scale, v) : affineTenths(mantissa, scale, v));
+	}
+
+
+	private FixedTenths( boolean quotient, long[] scaleLimbs, int scaleSign, int scaleScale,
+			long[] offsetLimbs, int offsetSign, int offsetScale, long divisorMantissa, int divisorScale )
+	{
+		this.quotient = quotient;
+		this.scaleLimbs = scaleLimbs;
+		this.scaleSign = scaleSign;
+		this.scaleScale = scaleScale;
+		this.offsetLimbs = offsetLimbs;
+		this.offsetSign = offsetSign;
+		this.offsetScale = offsetScale;
+		this.divisorMantissa = divisorMantissa;
+		this.divisorScale = divisorScale;
+		this.supported = (quotient ? divisorMantissa > 0 : scaleLimbs != null && offsetLimbs != null);
+	}
+
+
+	/*
+	 * Returns floor(10 * (units * scale + offset) + 1/2). The exact sum is
+	 * held as magnitude v = |sum| * 10^exact, negated if adding the offset
+	 * changes its sign. With d = 10^(exact-1) and h = d/2 the result is
+	 * floor((v + h) / d) for a positive sum and -floor((v + h - 1) / d) for a
+	 * negative sum.
+	 */
+	private long affineTenths( long mantissa, int scale, long[] v )
+	{
+		if (!supported) return NONE;
+
+		long productScale = (long) scale + scaleScale;
+		long exact = Math.max( productScale, offsetScale );
+		long productShift = exact - productScale;
+		long offsetShift = exact - offsetScale;
+		long digits = exact - 1;
+		if (productShift > MAX_SHIFT || offsetShift > MAX_SHIFT || digits < -MAX_SHIFT || digits > MAX_DIGITS) {
+			return NONE;
+		}
+
+		multiply( v, Math.abs(mantissa), scaleLimbs );
+		if (!shiftUp(v, (int) productShift)) return NONE;
+		boolean negative = (mantissa < 0) != (scaleSign < 0);
+
+		if (offsetSign != 0) {
+			boolean negativeOffset = (offsetSign < 0);
+			addShifted( v, offsetLimbs, (int) offsetShift, (negative == negativeOffset ? 1 : -1) );
+			if (v[LIMBS - 1] < 0) {
+				negate( v );
+				negative = !negative;
+			}
+			else if (v[LIMBS - 1] >= BASE) {
+				return NONE;
+			}
+		}
+
+		if (digits <= 0) {
+			if (!shiftUp(v, (int) -digits)) return NONE;
+		}
+		else {
+			int half = (int) digits - 1;
+			v[half / 9] += 5 * POWERS[half % 9];
+			if (negative) v[0]--;
+			normalize( v );
+			shiftDown( v, (int) digits );
+		}
+
+		long tenths = toLong( v );
+		return (negative && tenths != NONE ? -tenths : tenths);
+	}
+
+	/*
+	 * Returns floor(q / 1000 + 1/2) where q = units / divisor * 10^4, rounded
+	 * HALF_UP.
+	 */
+	private long quotientTenths( long mantissa, int scale, long[] v )
+	{
+		if (!supported) return NONE;
+
+		// |units| * 10^shift / divisorMantissa
+		long shift = (long) divisorScale - scale + 4;
+		long magnitude = Math.abs( mantissa );
+		long quotient;
+		if (shift < 0) {
+			if (shift < -18 || divisorMantissa > Long.MAX_VALUE / LONG_POWERS[(int) -shift]) return NONE;
+
+			long denominator = divisorMantissa * LONG_POWERS[(int) -shift];
+			long remainder = magnitude % denominator;
+			quotient = magnitude / denominator;
+			if (remainder >= denominator - remainder) quotient++;
+		}
+		else {
+			if (shift > MAX_SHIFT) return NONE;
+
+			multiply( v, magnitude, ONE );
+			if (!shiftUp(v, (int) shift)) return NONE;
+
+			long remainder = 0;
+			for (int i = LIMBS - 1; i >= 0; i--) {
+				long current = remainder * BASE + v[i];
+				if (current != 0) {
+					v[i] = current / divisorMantissa;
+					remainder = current - v[i] * divisorMantissa;
+				}
+			}
+			if (remainder >= divisorMantissa - remainder) {
+				v[0]++;
+				normalize( v );
+			}
+
+			quotient = toLong( v );
+			if (quotient == NONE) return NONE;
+		}
+
+		if (quotient > Long.MAX_VALUE - 500) return NONE;
+		if (mantissa < 0) quotient = -quotient;
+
+		return floorDiv( quotient + 500, 1000 );
+	}
+
+	/*
+	 * Sets v to the magnitude * factor, clearing any previous value.
+	 */
+	private static void multiply( long[] v, long magnitude, long[] factor )
+	{
+		long m0 = magnitude;
+		long m1 = 0;
+		long m2 = 0;
+		if (magnitude >= BASE) {
+			long high = magnitude / BASE;
+			m0 = magnitude - high * BASE;
+			m2 = high / BASE;
+			m1 = high - m2 * BASE;
+		}
+
+		v[0] = m0 * factor[0];
+		v[1] = m0 * factor[1] + m1 * factor[0];
+		v[2] = m1 * factor[1] + m2 * factor[0];
+		v[3] = m2 * factor[1];
+		for (int i = 4; i < LIMBS; i++) {
+			v[i] = 0;
+		}
+		normalize( v );
+	}
+
+	/*
+	 * Multiplies v by 10^digits. Returns false if the result doesn't fit.
+	 */
+	private static boolean shiftUp( long[] v, int digits )
+	{
+		int limbs = digits / 9;
+		if (limbs > 0) {
+			for (int i = LIMBS - limbs; i < LIMBS; i++) {
+				if (v[i] != 0) return false;
+			}
+			System.arraycopy( v, 0, v, limbs, LIMBS - limbs );
+			for (int i = 0; i < limbs; i++) {
+				v[i] = 0;
+			}
+		}
+
+		long power = POWERS[digits % 9];
+		if (power > 1) {
+			for (int i = 0; i < LIMBS; i++) {
+				v[i] *= power;
+			}
+			normalize( v );
+		}
+
+		return (v[LIMBS - 1] < BASE);
+	}
+
+	/*
+	 * Divides v by 10^digits, discarding the remainder.
+	 */
+	private static void shiftDown( long[] v, int digits )
+	{
+		int limbs = digits / 9;
+		if (limbs > 0) {
+			System.arraycopy( v, limbs, v, 0, LIMBS - limbs );
+			for (int i = LIMBS - limbs; i < LIMBS; i++) {
+				v[i] = 0;
+			}
+		}
+
+		long power = POWERS[digits % 9];
+		if (power > 1) {
+			long remainder = 0;
+			for (int i = LIMBS - 1; i >= 0; i--) {
+				long current = remainder * BASE + v[i];
+				if (current != 0) {
+					v[i] = current / power;
+					remainder = current - v[i] * power;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Adds sign * addend * 10^digits to v.
+	 */
+	private static void addShifted( long[] v, long[] addend, int digits, int sign )
+	{
+		int limbs = digits / 9;
+		long power = sign * POWERS[digits % 9];
+		for (int i = 0; i < addend.length; i++) {
+			v[i + limbs] += addend[i] * power;
+		}
+		normalize( v );
+	}
+
+	/*
+	 * Negates v, where v is negative.
+	 */
+	private static void negate( long[] v )
+	{
+		for (int i = 0; i < LIMBS; i++) {
+			v[i] = -v[i];
+		}
+		normalize( v );
+	}
+
+	/*
+	 * Carries each limb at or above 10^9, or borrows for each limb below 0,
+	 * from the next limb. The top limb keeps any excess.
+	 */
+	private static void normalize( long[] v )
+	{
+		for (int i = 0; i < LIMBS - 1; i++) {
+			long limb = v[i];
+			if (limb < 0 || limb >= BASE) {
+				long carry = limb / BASE;
+				limb -= carry * BASE;
+				if (limb < 0) {
+					carry--;
+					limb += BASE;
+				}
+				v[i] = limb;
+				v[i + 1] += carry;
+			}
+		}
+	}
+
+	/*
+	 * Returns the value of v, or NONE if it doesn't fit a long.
+	 */
+	private static long toLong( long[] v )
+	{
+		long value = 0;
+		for (int i = LIMBS - 1; i >= 0; i--) {
+			if (value > MAX_LONG_PREFIX) return NONE;
+			value = value * BASE + v[i];
+		}
+
+		return value;
+	}
+
+	/*
+	 * Returns the magnitude of the given value as count limbs, or null if it
+	 * needs more.
+	 */
+	private static long[] toLimbs( BigInteger value, int count )
+	{
+		BigInteger base = BigInteger.valueOf( BASE );
+		BigInteger magnitude = value.abs();
+		long[] limbs = new long[count];
+		for (int i = 0; i < count; i++) {
+			BigInteger[] division = magnitude.divideAndRemainder( base );
+			limbs[i] = division[1].longValue();
+			magnitude = division[0];
+		}
+
+		return (magnitude.signum() == 0 ? limbs : null);
+	}
+
+	/*
+	 * Returns the largest integer not greater than dividend / divisor, for a
+	 * positive divisor.
+	 */
+	private static long floorDiv( long dividend, long divisor )
+	{
+		long quotient = dividend / divisor;
+		if (dividend % divisor < 0) quotient--;
+
+		return quotient;
+	}
+
+
+	// instance members
+	private final boolean quotient;
+	private final long[] scaleLimbs;
+	private final int scaleSign;
+	private final int scaleScale;
+	private final long[] offsetLimbs;
+	private final int offsetSign;
+	private final int offsetScale;
+	private final long divisorMantissa;
+	private final int divisorScale;
+	private final boolean supported;
+
+	private final static long BASE = 1000000000L;
+	private final static int LIMBS = 8;
+	private final static int MAX_SHIFT = 27;
+	private final static int MAX_DIGITS = 9 * (LIMBS - 1);
+	private final static long MAX_LONG_PREFIX = Long.MAX_VALUE / BASE - 1;
+	private final static long[] ONE = {1, 0};
+	private final static long[] POWERS = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L
+	};
+	private final static long[] LONG_POWERS = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+		10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+		1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+	};
+}
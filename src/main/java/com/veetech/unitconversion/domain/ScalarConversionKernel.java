@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+
+/**
+ * The default bulk conversion kernel. Loops are kept as simple counted loops
+ * over a single expression so the JIT can unroll and auto-vectorize them.
+ * 
+ * @author a.cook@veetechis.com
+ */
+public class ScalarConversionKernel
+		implements ConversionKernel
+{
+	/**
+	 * Converts a slice of values by floor(units * scale + offset) / 10.
+	 */
+	@Override
+	public void affine( double[] in, int inOffset, double[] out, int outOffset, int length, double scale, double offset )
+	{
+		for (int i = 0; i < length; i++) {
+			out[outOffset + i] = Math.floor( in[inOffset + i] * scale + offset ) / 10;
+		}
+	}
+	
+	/**
+	 * Converts a slice of values by units / divisor, rounded half-up to 4
+	 * digits and then to tenths.
+	 */
+	@Override
+	public void quotient( double[] in, int inOffset, double[] out, int outOffset, int length, double divisor )
+	{
+		for (int i = 0; i < length; i++) {
+			double quotient = in[inOffset + i] / divisor;
+			double tenThousandths = Math.copySign( Math.floor(Math.abs(quotient) * 10000 + 0.5), quotient );
+			out[outOffset + i] = Math.floor( tenThousandths / 1000 + 0.5 ) / 10;
+		}
+	}
+}
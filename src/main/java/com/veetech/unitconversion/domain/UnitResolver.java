@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.domain;
+
+
+/**
+ * Resolves unit names to conversion units. Each unit is indexed by its type's
+ * factory key, printable name and symbol and by its aliases, so that e.g.
+ * "cubic_feet", "Cubic-Feet", "cuft", "ft3" and "cf" all resolve to
+ * CUBIC_FEET.
+ * 
+ * Names match regardless of ASCII letter case and of separators ('_', '-',
+ * '.' and space). Matching reads the given characters in place and creates
+ * no intermediate strings. The index is built once and is safe for use by
+ * concurrent threads.
+ * 
+ * @author a.cook@veetechis.com
+ */
+public final class UnitResolver
+{
+	/**
+	 * Returns the unit matching the given name, or null if no unit matches.
+	 * 
+	 * Throws an exception if the name is null.
+	 * 
+	 * @param name The unit name, symbol or alias.
+	 * @return The matching unit or null.
+	 */
+	public static ConversionUnit resolve( CharSequence name )
+			throws NullPointerException
+	{
+		int hash = hash( name );
+		for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == hash && matches(keys[i], name)) {
+				return units[i];
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the canonical conversion type matching the given name, or null if
+	 * no unit matches.
+	 * 
+	 * Throws an exception if the name is null.
+	 * 
+	 * @param name The unit name, symbol or alias.
+	 * @return The matching conversion type or null.
+	 */
+	public static ConversionType resolveType( CharSequence name )
+			throws NullPointerException
+	{
+		ConversionUnit unit = resolve( name );
+		return (unit == null ? null : unit.getType());
+	}
+
+	
+	/*
+	 * Not instantiable.
+	 */
+	private UnitResolver()
+	{
+	}
+
+	/*
+	 * Returns the hash of the given name's characters, skipping separators and
+	 * folding upper case ASCII letters.
+	 */
+	private static int hash( CharSequence name )
+	{
+		int hash = 0;
+		for (int i = 0, n = name.length(); i < n; i++) {
+			char c = name.charAt( i );
+			if (!isSeparator(c)) {
+				hash = 31 * hash + fold( c );
+			}
+		}
+		
+		// spread the high bits into the table index bits
+		return hash ^ (hash >>> 16);
+	}
+
+	/*
+	 * Returns true if the given name, without separators and folded, equals
+	 * the given normalized key.
+	 */
+	private static boolean matches( String key, CharSequence name )
+	{
+		int k = 0;
+		int keyLength = key.length();
+		for (int i = 0, n = name.length(); i < n; i++) {
+			char c = name.charAt( i );
+			if (!isSeparator(c)) {
+				if (k == keyLength || key.charAt(k++) != fold(c)) return false;
+			}
+		}
+		
+		return (k == keyLength);
+	}
+
+	/*
+	 * Returns true if the given character is ignored when matching names.
+	 */
+	private static boolean isSeparator( char c )
+	{
+		return (c == '_' || c == '-' || c == ' ' || c == '.');
+	}
+
+	/*
+	 * Returns the lower case of the given character if it is an upper case
+	 * ASCII letter, otherwise the character itself.
+	 */
+	private static char fold( char c )
+	{
+		return ((c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c);
+	}
+
+	/*
+	 * Adds the given name to the index, normalized. Throws an exception if it
+	 * is already indexed for another unit.
+	 */
+	private static void index( CharSequence name, ConversionUnit unit )
+			throws IllegalStateException
+	{
+		StringBuilder key = new StringBuilder( name.length() );
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt( i );
+			if (!isSeparator(c)) key.append( fold(c) );
+		}
+		
+		int hash = hash( key );
+		int i = hash & mask;
+		for (; keys[i] != null; i = (i + 1) & mask) {
+			if (keys[i].contentEquals(key)) {
+				if (units[i] == unit) return;
+				throw new IllegalStateException(
+					String.format("Unit name '%s' of %s already used by %s.", name, unit, units[i]) );
+			}
+		}
+		
+		keys[i] = key.toString();
+		hashes[i] = hash;
+		units[i] = unit;
+	}
+
+	
+	// open addressing index, at most one quarter full
+	private final static int mask = 255;
+	private final static String[] keys = new String[mask + 1];
+	private final static int[] hashes = new int[mask + 1];
+	private final static ConversionUnit[] units = new ConversionUnit[mask + 1];
+	static {
+		for (ConversionUnit unit : ConversionUnit.values()) {
+			ConversionType type = unit.getType();
+			index( type.getFactoryKey(), unit );
+			index( type.getPrintableName(), unit );
+			index( type.getSymbol(), unit );
+			for (String alias : unit.getAliases()) {
+				index( alias, unit );
+			}
+		}
+	}
+}
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.temperature;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Temperature conversion type for Celsius scale.
@@ -64,4 +66,13 @@ public class CelsiusType
 	{
 		return "celsius";
 	}
+	
+	/**
+	 * Returns ConversionUnit.CELSIUS.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.CELSIUS;
+	}
 }
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.temperature;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Temperature conversion type for Fahrenheit scale.
@@ -64,4 +66,13 @@ public class FahrenheitType
 	{
 		return "fahrenheit";
 	}
+	
+	/**
+	 * Returns ConversionUnit.FAHRENHEIT.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.FAHRENHEIT;
+	}
 }
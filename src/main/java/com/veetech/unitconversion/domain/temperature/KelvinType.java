@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.temperature;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Temperature conversion type for Kelvin scale.
@@ -64,4 +66,13 @@ public class KelvinType
 	{
 		return "kelvin";
 	}
+	
+	/**
+	 * Returns ConversionUnit.KELVIN.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.KELVIN;
+	}
 }
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.temperature;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Temperature conversion type for Rankine scale.
@@ -64,4 +66,13 @@ public class RankineType
 	{
 		return "rankine";
 	}
+	
+	/**
+	 * Returns ConversionUnit.RANKINE.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.RANKINE;
+	}
 }
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.volume;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Volumetric conversion type for cubic foot measurements.
@@ -63,4 +65,13 @@ public class CubicFeetType
 	{
 		return "cubicFeet";
 	}
+	
+	/**
+	 * Returns ConversionUnit.CUBIC_FEET.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.CUBIC_FEET;
+	}
 }
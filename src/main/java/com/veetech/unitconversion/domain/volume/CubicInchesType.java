@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.volume;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Volumetric conversion type for cubic inch measurements.
@@ -63,4 +65,13 @@ public class CubicInchesType
 	{
 		return "cubicInches";
 	}
+	
+	/**
+	 * Returns ConversionUnit.CUBIC_INCHES.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.CUBIC_INCHES;
+	}
 }
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.volume;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Volumetric conversion type for cups measurements.
@@ -63,4 +65,13 @@ public class CupsType
 	{
 		return "cups";
 	}
+	
+	/**
+	 * Returns ConversionUnit.CUPS.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.CUPS;
+	}
 }
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.volume;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Volumetric conversion type for gallon measurements.
@@ -63,4 +65,13 @@ public class GallonsType
 	{
 		return "gallons";
 	}
+	
+	/**
+	 * Returns ConversionUnit.GALLONS.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.GALLONS;
+	}
 }
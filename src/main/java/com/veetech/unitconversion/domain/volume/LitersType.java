@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.volume;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Volumetric conversion type for liter measurements.
@@ -63,4 +65,13 @@ public class LitersType
 	{
 		return "liters";
 	}
+	
+	/**
+	 * Returns ConversionUnit.LITERS.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.LITERS;
+	}
 }
@@ -10,6 +10,8 @@
  */
 package com.veetech.unitconversion.domain.volume;
 
+import com.veetech.unitconversion.domain.ConversionUnit;
+
 
 /**
  * Volumetric conversion type for tablespoon measurements.
@@ -63,4 +65,13 @@ public class TablespoonsType
 	{
 		return "tablespoons";
 	}
+	
+	/**
+	 * Returns ConversionUnit.TABLESPOONS.
+	 */
+	@Override
+	public ConversionUnit getUnit()
+	{
+		return ConversionUnit.TABLESPOONS;
+	}
 }
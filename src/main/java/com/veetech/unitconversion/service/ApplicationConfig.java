@@ -35,6 +35,7 @@ public class ApplicationConfig extends Application {
 	 */
 	private void addRestResourceClasses(Set<Class<?>> resources) {
 		resources.add(com.veetech.unitconversion.service.GenericResource.class);
+		resources.add(com.veetech.unitconversion.service.MetricsResource.class);
 	}
 	
 }
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import com.veetech.unitconversion.domain.Constants;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Serves the validate service asynchronously. A request is suspended with
+ * Servlet 3.1 async processing and its conversion is queued on a bounded
+ * executor, so the container's request thread returns at once. If the queue
+ * is full the request is answered immediately with status 503, and a request
+ * still queued when its async timeout expires is answered with 503 too.
+ * The servlet is optional: web.xml declares it, but its mapping to
+ * /service/validate, replacing GenericResource, must be enabled there.
+ *
+ * The query parameters and response body are those of GenericResource's
+ * getConversion, and requests are sampled for a Server-Timing header at the
+ * rate of context parameter serverTimingRate. Init parameters configure the
+ * executor:
+ *
+ * <pre>
+ *     threads       conversion threads, default one per processor
+ *     queueDepth    requests waiting for a thread, default 1000
+ *     asyncTimeout  milliseconds before a request times out, default 5000
+ * </pre>
+ *
+ * @author a.cook@veetechis.com
+ */
+public class AsyncConversionServlet
+		extends HttpServlet
+{
+	/**
+	 * Creates the conversion executor from the servlet's init parameters.
+	 *
+	 * @throws javax.servlet.ServletException If an init parameter is invalid.
+	 */
+	@Override
+	public void init()
+			throws ServletException
+	{
+		int threads = getIntParameter( THREADS_PARAM, Runtime.getRuntime().availableProcessors() );
+		int queueDepth = getIntParameter( QUEUE_DEPTH_PARAM, DEFAULT_QUEUE_DEPTH );
+		asyncTimeout = getIntParameter( ASYNC_TIMEOUT_PARAM, DEFAULT_ASYNC_TIMEOUT );
+		executor = createExecutor( threads, queueDepth );
+		String rate = getServletContext().getInitParameter( Constants.SERVER_TIMING_PARAM );
+		try {
+			timingRate = ServerTiming.getRate( rate );
+		}
+		catch (IllegalArgumentException exc) {
+			throw new ServletException( String.format("Invalid context parameter %s '%s'.",
+					Constants.SERVER_TIMING_PARAM, rate) );
+		}
+
+		if (log.isInfoEnabled()) {
+			log.info( String.format("Async conversions on %d threads, queue depth %d, timeout %d ms.",
+					threads, queueDepth, asyncTimeout) );
+		}
+	}
+
+	/**
+	 * Stops the conversion executor, waiting briefly for queued requests.
+	 */
+	@Override
+	public void destroy()
+	{
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_WAIT, TimeUnit.MILLISECONDS)) {
+				executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException exc) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Returns an executor with the given number of threads and a queue of the
+	 * given depth, which rejects tasks when the queue is full.
+	 *
+	 * @param threads The number of threads.
+	 * @param queueDepth The number of queued tasks.
+	 * @return The executor.
+	 */
+	protected static ExecutorService createExecutor( int threads, int queueDepth )
+	{
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = new ThreadFactory() {
+			@Override
+			public Thread newThread( Runnable task )
+			{
+				Thread thread = new Thread( task, "conversion-" + count.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		};
+
+		return new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueDepth), factory, new ThreadPoolExecutor.AbortPolicy() );
+	}
+
+	/**
+	 * Suspends the request and queues its conversion, or responds with status
+	 * 503 if the queue is full. A request whose If-None-Match header matches
+	 * the response's entity tag is answered at once with status 304. The
+	 * latency of a request answered with a conversion or 304 is recorded in
+	 * the metrics, and every request answered is traced.
+	 *
+	 * @param request The HTTP request.
+	 * @param response The HTTP response.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	@Override
+	protected void doGet( HttpServletRequest request, HttpServletResponse response )
+			throws IOException
+	{
+		final long started = System.nanoTime();
+		final Tracer.Span span = Tracing.begin( Tracer.Phase.REQUEST );
+		final String[] values = ConversionHandler.getRequestValues( request.getParameterMap() );
+		final String entityTag = handler.getEntityTag( values[0], values[1], values[2], values[3] );
+		if (ConversionHandler.matchesEntityTag(request.getHeader("If-None-Match"), entityTag)) {
+			// unchanged, answered without queueing
+			response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+			setCacheHeaders( response, entityTag );
+			handler.getMetrics().recordLatency( System.nanoTime() - started );
+			span.end( values[0], values[1], TRACE_NOT_MODIFIED );
+			return;
+		}
+
+		final ServerTiming timing = ServerTiming.sample( timingRate );
+		final AsyncContext async = request.startAsync();
+		final AtomicBoolean claimed = new AtomicBoolean();
+		async.setTimeout( asyncTimeout );
+		async.addListener( new AsyncListener() {
+			@Override
+			public void onTimeout( AsyncEvent event )
+					throws IOException
+			{
+				if (claimed.compareAndSet(false, true)) {
+					span.end( values[0], values[1], TRACE_UNAVAILABLE );
+					sendUnavailable( async );
+				}
+			}
+
+			@Override
+			public void onComplete( AsyncEvent event ) {}
+
+			@Override
+			public void onError( AsyncEvent event ) {}
+
+			@Override
+			public void onStartAsync( AsyncEvent event ) {}
+		} );
+
+		try {
+			executor.execute( new Runnable() {
+				@Override
+				public void run()
+				{
+					// a timed out request is already answered
+					if (claimed.compareAndSet(false, true)) {
+						convert( values, entityTag, async, started, span, timing );
+					}
+				}
+			} );
+		}
+		catch (RejectedExecutionException exc) {
+			if (claimed.compareAndSet(false, true)) {
+				if (log.isDebugEnabled()) {
+					log.debug( "Conversion queue full, request rejected." );
+				}
+				span.end( values[0], values[1], TRACE_UNAVAILABLE );
+				sendUnavailable( async );
+			}
+		}
+	}
+
+
+	/*
+	 * Converts the request values and completes the response, recording the
+	 * latency from the given start time and ending the request's span. A
+	 * sampled request is timed for its Server-Timing header. A failed
+	 * conversion is answered with status 500, if the response isn't already
+	 * committed.
+	 */
+	private static void convert( String[] values, String entityTag, AsyncContext async, long started, Tracer.Span span,
+			ServerTiming timing )
+	{
+		String traced = TRACE_FAILED;
+		HttpServletResponse response = null;
+		try {
+			response = (HttpServletResponse) async.getResponse();
+			response.setContentType( CONTENT_TYPE );
+			setCacheHeaders( response, entityTag );
+
+			ConversionHandler.RenderedResponse rendered = handler.getResponse( values[0], values[1], values[2], values[3],
+					timing );
+			byte[] body = rendered.getBody();
+			if (timing != null) {
+				response.setHeader( ServerTiming.HEADER, timing.getHeaderValue(System.nanoTime() - started) );
+			}
+			response.setContentLength( body.length );
+			response.getOutputStream().write( body );
+			handler.getMetrics().recordLatency( System.nanoTime() - started );
+			traced = rendered.getResultType().name();
+		}
+		catch (IOException | RuntimeException exc) {
+			if (log.isErrorEnabled()) {
+				log.error( "Async conversion error.", exc );
+			}
+			sendError( response );
+		}
+		finally {
+			span.end( values[0], values[1], traced );
+			complete( async );
+		}
+	}
+
+	/*
+	 * Responds with status 500, unless the response is already committed.
+	 */
+	private static void sendError( HttpServletResponse response )
+	{
+		if (response == null || response.isCommitted()) return;
+
+		try {
+			response.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+		}
+		catch (IOException | IllegalStateException exc) {
+			if (log.isDebugEnabled()) {
+				log.debug( "Error response not sent.", exc );
+			}
+		}
+	}
+
+	/*
+	 * Completes the async request, unless the container already completed it,
+	 * e.g. on timeout while the conversion held the request.
+	 */
+	private static void complete( AsyncContext async )
+	{
+		try {
+			async.complete();
+		}
+		catch (IllegalStateException exc) {
+			if (log.isDebugEnabled()) {
+				log.debug( "Async request already completed.", exc );
+			}
+		}
+	}
+
+	/*
+	 * Sets the entity tag and cache control headers of a conversion response.
+	 */
+	private static void setCacheHeaders( HttpServletResponse response, String entityTag )
+	{
+		response.setHeader( "ETag", entityTag );
+		response.setHeader( "Cache-Control", Constants.RESPONSE_CACHE_CONTROL );
+	}
+
+	/*
+	 * Responds with status 503 and completes the response.
+	 */
+	private static void sendUnavailable( AsyncContext async )
+			throws IOException
+	{
+		try {
+			HttpServletResponse response = (HttpServletResponse) async.getResponse();
+			response.setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+			response.setHeader( "Retry-After", RETRY_AFTER );
+			response.setContentType( CONTENT_TYPE );
+			response.getOutputStream().write( GenericResource.errorBody("serviceBusy", null).getBytes(CHARSET) );
+		}
+		finally {
+			complete( async );
+		}
+	}
+
+	/*
+	 * Returns the positive integer value of the given init parameter, or the
+	 * default value if it's not set.
+	 */
+	private int getIntParameter( String name, int defaultValue )
+			throws ServletException
+	{
+		String value = getInitParameter( name );
+		if (value == null || value.trim().isEmpty()) return defaultValue;
+
+		try {
+			int number = Integer.parseInt( value.trim() );
+			if (number > 0) return number;
+		}
+		catch (NumberFormatException exc) {
+			// reported below
+		}
+
+		throw new ServletException( String.format("Invalid init parameter %s '%s'.", name, value) );
+	}
+
+
+	// instance members
+	private transient ExecutorService executor;
+	private long asyncTimeout;
+	private double timingRate;
+
+	private final static long serialVersionUID = 1L;
+	private final static Log log = LogFactory.getLog( AsyncConversionServlet.class );
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
+
+	private final static String THREADS_PARAM = "threads";
+	private final static String QUEUE_DEPTH_PARAM = "queueDepth";
+	private final static String ASYNC_TIMEOUT_PARAM = "asyncTimeout";
+	private final static int DEFAULT_QUEUE_DEPTH = 1000;
+	private final static int DEFAULT_ASYNC_TIMEOUT = 5000;
+	private final static long SHUTDOWN_WAIT = 2000;
+	private final static String RETRY_AFTER = "1";
+	private final static String CONTENT_TYPE = "application/json;charset=UTF-8";
+	private final static String CHARSET = "UTF-8";
+	private final static String TRACE_NOT_MODIFIED = "NOT_MODIFIED";
+	private final static String TRACE_UNAVAILABLE = "UNAVAILABLE";
+	private final static String TRACE_FAILED = "FAILED";
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.core.StreamingOutput;
+
+
+/**
+ * A batch of conversion requests and the output of their results. The
+ * requests are read in full, up to a maximum count, before any result is
+ * written, so an invalid or oversized batch is rejected as a whole. Results
+ * are then converted and written one at a time, each in the shape of the
+ * validate service's response body: as a JSON array if the requests are an
+ * array, otherwise as newline-delimited JSON.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class BatchConversion
+		implements StreamingOutput
+{
+	/**
+	 * Media type of newline-delimited JSON.
+	 */
+	public final static String APPLICATION_NDJSON = "application/x-ndjson";
+
+	/**
+	 * Reads a batch of up to maxSize requests from the given JSON text. The
+	 * batch is incomplete if the input holds more requests.
+	 *
+	 * Throws an exception if reading the input fails or it is not a valid
+	 * batch of requests.
+	 *
+	 * @param input The request text.
+	 * @param maxSize The maximum number of requests.
+	 * @return The batch of requests.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public static BatchConversion read( Reader input, int maxSize )
+			throws IOException, IllegalArgumentException
+	{
+		BatchRequestReader reader = new BatchRequestReader( input );
+		List<String[]> requests = new ArrayList<>();
+		boolean complete = true;
+
+		String[] request;
+		while ((request = reader.next()) != null) {
+			if (requests.size() == maxSize) {
+				complete = false;
+				break;
+			}
+			requests.add( request );
+		}
+
+		return new BatchConversion( requests, reader.isArray(), complete );
+	}
+
+
+	/**
+	 * Returns the number of requests read.
+	 *
+	 * @return The number of requests.
+	 */
+	public int size()
+	{
+		return requests.size();
+	}
+
+	/**
+	 * Returns false if the input holds more than the maximum number of
+	 * requests.
+	 *
+	 * @return True if all requests are read.
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 * Returns the media type of the results: JSON for an array of requests,
+	 * otherwise newline-delimited JSON.
+	 *
+	 * @return The result media type.
+	 */
+	public String getMediaType()
+	{
+		return (array ? "application/json" : APPLICATION_NDJSON);
+	}
+
+	/**
+	 * Converts the requests and writes their results to the given output as
+	 * UTF-8 text. The output is flushed but not closed.
+	 *
+	 * Throws an exception if writing the output fails.
+	 *
+	 * @param output The destination for results.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	@Override
+	public void write( OutputStream output )
+			throws IOException
+	{
+		OutputStream buffered = new BufferedOutputStream( output, BUFFER_SIZE );
+
+		if (array) buffered.write( '[' );
+		for (int i = 0; i < requests.size(); i++) {
+			if (array && i > 0) buffered.write( ',' );
+			String[] request = requests.get( i );
+			buffered.write( handler.getResponseBytes(request[0], request[1], request[2], request[3]) );
+			if (!array) buffered.write( '\n' );
+		}
+		if (array) buffered.write( ']' );
+		buffered.flush();
+	}
+
+
+	private BatchConversion( List<String[]> requests, boolean array, boolean complete )
+	{
+		this.requests = requests;
+		this.array = array;
+		this.complete = complete;
+	}
+
+
+	// instance members
+	private final List<String[]> requests;
+	private final boolean array;
+	private final boolean complete;
+
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
+	private final static int BUFFER_SIZE = 1 << 13;
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import com.veetech.unitconversion.domain.Constants;
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Reads conversion requests from JSON text, one at a time. The text is
+ * either a JSON array of request objects, or a sequence of request objects
+ * separated by whitespace, as in newline-delimited JSON. A request object
+ * has the query parameters of the validate service as members:
+ *
+ * <pre>
+ *     {"convertFrom": "celsius", "convertTo": "fahrenheit", "unitValue": 100, "validateValue": "212"}
+ * </pre>
+ *
+ * Member names are matched ignoring case and other members are ignored.
+ * Values are strings, numbers, literals or null; a number is read as its
+ * text, and a missing or null value is Constants.NO_VALUE.
+ *
+ * @author a.cook@veetechis.com
+ */
+final class BatchRequestReader
+{
+	/**
+	 * Creates a reader of the requests in the given input.
+	 *
+	 * @param input The request text.
+	 */
+	BatchRequestReader( Reader input )
+	{
+		this.input = input;
+	}
+
+
+	/**
+	 * Returns true if the requests are a JSON array, false if they are a
+	 * sequence of objects.
+	 *
+	 * Throws an exception if reading the input fails or the input is neither.
+	 *
+	 * @return True for an array of requests.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	boolean isArray()
+			throws IOException, IllegalArgumentException
+	{
+		start();
+		return array;
+	}
+
+	/**
+	 * Returns the values of the next request, in the order from type, to
+	 * type, units and validation value, or null after the last request.
+	 *
+	 * Throws an exception if reading the input fails or the input is not a
+	 * valid request.
+	 *
+	 * @return The request values, or null.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	String[] next()
+			throws IOException, IllegalArgumentException
+	{
+		start();
+		if (ended) return null;
+
+		int c = skipWhitespace();
+		if (array) {
+			if (c == ']') {
+				read();
+				if (skipWhitespace() >= 0) throw error( "Unexpected text after array" );
+				ended = true;
+				return null;
+			}
+			if (count > 0) {
+				expect( ',' );
+				c = skipWhitespace();
+			}
+		}
+		else if (c < 0) {
+			ended = true;
+			return null;
+		}
+		if (c != '{') throw error( "Expected request object" );
+
+		String[] values = readObject();
+		count++;
+
+		return values;
+	}
+
+
+	/*
+	 * Reads the start of the input, once.
+	 */
+	private void start()
+			throws IOException, IllegalArgumentException
+	{
+		if (started) return;
+		started = true;
+
+		int c = skipWhitespace();
+		if (c == '[') {
+			read();
+			array = true;
+		}
+		else if (c == '{') {
+			array = false;
+		}
+		else if (c < 0) {
+			ended = true;
+		}
+		else {
+			throw error( "Expected request array or object" );
+		}
+	}
+
+	/*
+	 * Reads a request object and returns its values.
+	 */
+	private String[] readObject()
+			throws IOException, IllegalArgumentException
+	{
+		String[] values = {Constants.NO_VALUE, Constants.NO_VALUE, Constants.NO_VALUE, Constants.NO_VALUE};
+
+		expect( '{' );
+		if (skipWhitespace() == '}') {
+			read();
+			return values;
+		}
+
+		while (true) {
+			if (skipWhitespace() != '"') throw error( "Expected member name" );
+			int index = memberIndex( readString() );
+			if (skipWhitespace() != ':') throw error( "Expected ':'" );
+			read();
+
+			String value = readValue();
+			if (index >= 0 && value != null) values[index] = value;
+
+			int c = skipWhitespace();
+			read();
+			if (c == '}') break;
+			if (c != ',') throw error( "Expected ',' or '}'" );
+		}
+
+		return values;
+	}
+
+	/*
+	 * Reads a member value and returns its text, or null for a null value.
+	 */
+	private String readValue()
+			throws IOException, IllegalArgumentException
+	{
+		int c = skipWhitespace();
+		if (c == '"') return readString();
+		if (c == '{' || c == '[') throw error( "Nested values are not supported" );
+
+		// number or literal, as its text
+		StringBuilder text = new StringBuilder();
+		while (c >= 0 && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+			if (text.length() == MAX_VALUE_LENGTH) throw error( "Value too long" );
+			text.append( (char) read() );
+			c = peek();
+		}
+
+		String value = text.toString();
+		if (value.isEmpty()) throw error( "Expected value" );
+		if (value.equals("null")) return null;
+		if (!value.equals("true") && !value.equals("false") && !isNumber(value)) {
+			throw error( String.format("Invalid value '%s'", value) );
+		}
+
+		return value;
+	}
+
+	/*
+	 * Reads a string and returns its unescaped text.
+	 */
+	private String readString()
+			throws IOException, IllegalArgumentException
+	{
+		expect( '"' );
+
+		StringBuilder text = new StringBuilder();
+		while (true) {
+			int c = read();
+			if (c < 0) throw error( "Unterminated string" );
+			if (c == '"') break;
+			if (c < 0x20) throw error( "Control character in string" );
+			if (text.length() == MAX_VALUE_LENGTH) throw error( "Value too long" );
+
+			if (c == '\\') {
+				c = read();
+				switch (c) {
+					case '"':
+					case '\\':
+					case '/':
+						break;
+					case 'b':
+						c = '\b';
+						break;
+					case 'f':
+						c = '\f';
+						break;
+					case 'n':
+						c = '\n';
+						break;
+					case 'r':
+						c = '\r';
+						break;
+					case 't':
+						c = '\t';
+						break;
+					case 'u':
+						c = 0;
+						for (int i = 0; i < 4; i++) {
+							int digit = Character.digit( read(), 16 );
+							if (digit < 0) throw error( "Invalid unicode escape" );
+							c = (c << 4) | digit;
+						}
+						break;
+					default:
+						throw error( "Invalid escape" );
+				}
+			}
+			text.append( (char) c );
+		}
+
+		return text.toString();
+	}
+
+	/*
+	 * Returns the request value index of the given member name, or -1.
+	 */
+	private static int memberIndex( String name )
+	{
+		for (int i = 0; i < MEMBERS.length; i++) {
+			if (MEMBERS[i].equalsIgnoreCase(name)) return i;
+		}
+
+		return -1;
+	}
+
+	/*
+	 * Returns true if the given text is a JSON number.
+	 */
+	private static boolean isNumber( String text )
+	{
+		int i = 0;
+		int length = text.length();
+		if (i < length && text.charAt(i) == '-') i++;
+		int digits = i;
+		while (i < length && isDigit(text.charAt(i))) i++;
+		if (i == digits) return false;
+		if (i < length && text.charAt(i) == '.') {
+			digits = ++i;
+			while (i < length && isDigit(text.charAt(i))) i++;
+			if (i == digits) return false;
+		}
+		if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			i++;
+			if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+			digits = i;
+			while (i < length && isDigit(text.charAt(i))) i++;
+			if (i == digits) return false;
+		}
+
+		return (i == length);
+	}
+
+	/*
+	 * Returns true if the given character is an ASCII digit.
+	 */
+	private static boolean isDigit( char c )
+	{
+		return (c >= '0' && c <= '9');
+	}
+
+	/*
+	 * Reads the given character or throws an exception.
+	 */
+	private void expect( char expected )
+			throws IOException, IllegalArgumentException
+	{
+		if (skipWhitespace() != expected) throw error( String.format("Expected '%c'", expected) );
+		read();
+	}
+
+	/*
+	 * Skips whitespace and returns the next character without reading it, or
+	 * -1 at the end of the input.
+	 */
+	private int skipWhitespace()
+			throws IOException
+	{
+		int c = peek();
+		while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+			read();
+			c = peek();
+		}
+
+		return c;
+	}
+
+	/*
+	 * Returns the next character without reading it, or -1.
+	 */
+	private int peek()
+			throws IOException
+	{
+		if (position == limit) {
+			if (limit < 0) return -1;
+			offset += limit;
+			limit = input.read( buffer );
+			position = 0;
+			if (limit <= 0) {
+				limit = -1;
+				position = -1;
+				return -1;
+			}
+		}
+
+		return buffer[position];
+	}
+
+	/*
+	 * Reads the next character, or returns -1.
+	 */
+	private int read()
+			throws IOException
+	{
+		int c = peek();
+		if (c >= 0) position++;
+
+		return c;
+	}
+
+	/*
+	 * Returns an exception for invalid input at the current position.
+	 */
+	private IllegalArgumentException error( String message )
+	{
+		long at = offset + Math.max( position, 0 );
+		return new IllegalArgumentException( String.format("%s at offset %d.", message, at) );
+	}
+
+
+	// instance members
+	private final Reader input;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private long offset;
+
+	private boolean started;
+	private boolean ended;
+	private boolean array;
+	private long count;
+
+	private final static int BUFFER_SIZE = 1 << 13;
+	private final static int MAX_VALUE_LENGTH = 256;
+	private final static String[] MEMBERS = {
+		Constants.FROM_TYPE_PARAM, Constants.TO_TYPE_PARAM, Constants.UNIT_VALUE_PARAM, Constants.VALIDATE_VALUE_PARAM
+	};
+}
@@ -0,0 +1,576 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import com.veetech.unitconversion.CommandLine.ResultType;
+import com.veetech.unitconversion.ConversionResult;
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Constants;
+import com.veetech.unitconversion.domain.ConversionType;
+import com.veetech.unitconversion.domain.ConversionUnit;
+import com.veetech.unitconversion.domain.UnitResolver;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Handles validate service requests. The handler holds no request state: a
+ * request is evaluated once as a ConversionResult and its values rendered
+ * straight into the response template, as UTF-8 bytes. Bodies of frequent
+ * requests are served from a response cache, and concurrent misses for the
+ * same request share one conversion. Each response served is counted in the
+ * handler's metrics by unit pair and result, and the phases of a request
+ * sampled for Server-Timing are timed.
+ *
+ * Request values are as for CommandLine, but a null or empty value, or
+ * Constants.NO_VALUE, is not provided, as in batch mode. The handler is a
+ * singleton and safe for use by concurrent threads.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ConversionHandler
+{
+	/**
+	 * Returns the shared handler.
+	 *
+	 * @return The handler.
+	 */
+	public static ConversionHandler getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Returns the conversion values of the given query parameters, in the
+	 * order from type, to type, units and validation value. Parameter names
+	 * are matched ignoring case, and a missing value is Constants.NO_VALUE.
+	 *
+	 * @param parameters The query parameters and their values.
+	 * @return The conversion values.
+	 */
+	public static String[] getRequestValues( Map<String,String[]> parameters )
+	{
+		String[] values = {Constants.NO_VALUE, Constants.NO_VALUE, Constants.NO_VALUE, Constants.NO_VALUE};
+		for (Map.Entry<String,String[]> parameter : parameters.entrySet()) {
+			for (int i = 0; i < PARAMETERS.length; i++) {
+				if (parameter.getKey().equalsIgnoreCase(PARAMETERS[i]) && parameter.getValue().length > 0) {
+					values[i] = parameter.getValue()[0];
+				}
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Returns true if the given If-None-Match header value matches the given
+	 * entity tag, by weak comparison as for a GET request.
+	 *
+	 * @param ifNoneMatch The header value, or null.
+	 * @param entityTag The quoted entity tag.
+	 * @return True if the tag matches.
+	 */
+	public static boolean matchesEntityTag( String ifNoneMatch, String entityTag )
+	{
+		if (ifNoneMatch == null) return false;
+
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) tag = tag.substring( 2 );
+			if (tag.equals("*") || tag.equals(entityTag)) return true;
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Returns the response body for the given request values as UTF-8 bytes.
+	 * Bodies of frequent requests are served from the response cache, so the
+	 * returned array is shared and must not be modified.
+	 *
+	 * @param fromType The type to convert.
+	 * @param toType The type to output.
+	 * @param units The value to convert.
+	 * @param validation The value to validate.
+	 * @return The response body.
+	 */
+	public byte[] getResponseBytes( String fromType, String toType, String units, String validation )
+	{
+		return getResponse( fromType, toType, units, validation ).getBody();
+	}
+
+	/**
+	 * Returns the response for the given request values: its body, as for
+	 * getResponseBytes, and its result.
+	 *
+	 * @param fromType The type to convert.
+	 * @param toType The type to output.
+	 * @param units The value to convert.
+	 * @param validation The value to validate.
+	 * @return The response.
+	 */
+	public RenderedResponse getResponse( String fromType, String toType, String units, String validation )
+	{
+		return getResponse( fromType, toType, units, validation, null );
+	}
+
+	/**
+	 * Returns the response for the given request values, as for getResponse,
+	 * timing its phases on the current thread for the given Server-Timing.
+	 *
+	 * @param fromType The type to convert.
+	 * @param toType The type to output.
+	 * @param units The value to convert.
+	 * @param validation The value to validate.
+	 * @param timing The request's timing, or null if it isn't timed.
+	 * @return The response.
+	 */
+	public RenderedResponse getResponse( String fromType, String toType, String units, String validation,
+			ServerTiming timing )
+	{
+		if (timing == null) return respond( fromType, toType, units, validation );
+
+		timing.start();
+		try {
+			return respond( fromType, toType, units, validation );
+		}
+		finally {
+			timing.stop();
+		}
+	}
+
+	/**
+	 * Converts the given request values and writes the response body to the
+	 * given output as UTF-8 bytes, without the response cache. The output is
+	 * not flushed.
+	 *
+	 * Throws an exception if writing the output fails.
+	 *
+	 * @param fromType The type to convert.
+	 * @param toType The type to output.
+	 * @param units The value to convert.
+	 * @param validation The value to validate.
+	 * @param output The destination for the response body.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public void writeResponseBody( String fromType, String toType, String units, String validation, OutputStream output )
+			throws IOException
+	{
+		writeResponseBody( ConversionResult.evaluate(fromType, toType, units, validation), fromType, toType, units,
+				validation, output );
+	}
+
+	/**
+	 * Returns the quoted, strong entity tag of the response body for the given
+	 * request values. The tag is derived from the request and application
+	 * version alone, without converting, and is shared by requests with the
+	 * same response cache entry. The tag of a cached response is kept with
+	 * the response.
+	 *
+	 * @param fromType The type to convert.
+	 * @param toType The type to output.
+	 * @param units The value to convert.
+	 * @param validation The value to validate.
+	 * @return The entity tag.
+	 */
+	public String getEntityTag( String fromType, String toType, String units, String validation )
+	{
+		RequestKey key = new RequestKey( fromType, toType, units, validation );
+		RenderedResponse response = responseCache.peek( key );
+
+		return (response != null ? response.entityTag : getEntityTag( key ));
+	}
+
+	/**
+	 * Returns the metrics of the requests served.
+	 *
+	 * @return The handler's metrics.
+	 */
+	public ConversionMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Returns the cache of responses, for its counters.
+	 *
+	 * @return The response cache.
+	 */
+	public ResponseCache<?,?> getResponseCache()
+	{
+		return responseCache;
+	}
+
+	/**
+	 * Returns the coalescer of concurrent conversions, for its counters.
+	 *
+	 * @return The request coalescer.
+	 */
+	public RequestCoalescer<?,?> getRequestCoalescer()
+	{
+		return requestCoalescer;
+	}
+
+
+	private ConversionHandler()
+	{
+	}
+
+
+	/*
+	 * Returns the response for the given request values, from the response
+	 * cache or converted.
+	 */
+	private RenderedResponse respond( final String fromType, final String toType, final String units,
+			final String validation )
+	{
+		final RequestKey key = new RequestKey( fromType, toType, units, validation );
+		RenderedResponse response = responseCache.get( key );
+		if (response == null) {
+			// concurrent misses for the key share one conversion, cached
+			// before it's released
+			response = requestCoalescer.execute( key, new Callable<RenderedResponse>() {
+				@Override
+				public RenderedResponse call()
+				{
+					ConversionResult result = ConversionResult.evaluate( fromType, toType, units, validation );
+					ByteArrayOutputStream output = new ByteArrayOutputStream( RESPONSE_SIZE );
+					try {
+						writeResponseBody( result, fromType, toType, units, validation, output );
+					}
+					catch (IOException exc) {
+						// not thrown by a byte array stream
+						throw new IllegalStateException( exc );
+					}
+					RenderedResponse rendered = new RenderedResponse( output.toByteArray(), result, getEntityTag(key) );
+					responseCache.put( key, rendered, rendered.body.length + (key.length + rendered.entityTag.length()) * 2L );
+
+					return rendered;
+				}
+			} );
+		}
+		metrics.recordResult( response.fromUnit, response.toUnit, response.result );
+
+		return response;
+	}
+
+	/*
+	 * Writes the response body of the given result of the given request
+	 * values, traced as rendering.
+	 */
+	private static void writeResponseBody( ConversionResult result, String fromType, String toType, String units,
+			String validation, OutputStream output )
+			throws IOException
+	{
+		Tracer.Span span = Tracing.begin( Tracer.Phase.RENDERING );
+		ConversionType from = result.getFromType();
+		ConversionType to = result.getToType();
+		String unitText = result.getUnitText();
+		String outputText = result.getOutputText();
+		String validationText = result.getValidationText();
+
+		String inputType = (from != null ? from.getPrintableName() : valueOf( fromType ));
+		String outputType = (to != null ? to.getPrintableName() : valueOf( toType ));
+		String inputValue = (unitText != null ? unitText : valueOf( units ));
+
+		// values in the order of the template's tags
+		String[] values = {
+			result.getMessage(), inputType, inputValue, outputType,
+			(outputText != null ? outputText : Constants.NO_VALUE),
+			(validationText != null ? validationText : valueOf( validation )),
+			getValidationResult( result.getResultType(), inputType, outputType, inputValue )
+		};
+
+		if (log.isDebugEnabled()) {
+			log.debug( String.format("Rendering response '%s' for: %s, %s, %s, %s", result.getResultType(),
+					fromType, toType, units, validation) );
+		}
+		responseTemplate.writeTo( output, values );
+		span.end( inputType, outputType, result.getResultType().name() );
+	}
+
+	/*
+	 * Returns the entity tag of the given request key: the leading bytes of
+	 * the digest of the application version and the key's canonical text.
+	 */
+	private static String getEntityTag( RequestKey key )
+	{
+		String text = key.appendTo( new StringBuilder(Constants.VERSION).append('\n') ).toString();
+		byte[] digest = getDigest().digest( text.getBytes(CHARSET) );
+
+		StringBuilder tag = new StringBuilder( TAG_BYTES * 2 + 2 ).append( '"' );
+		for (int i = 0; i < TAG_BYTES; i++) {
+			tag.append( HEX[(digest[i] >> 4) & 0xf] ).append( HEX[digest[i] & 0xf] );
+		}
+
+		return tag.append( '"' ).toString();
+	}
+
+	/*
+	 * Returns the current thread's entity tag digest.
+	 */
+	private static MessageDigest getDigest()
+	{
+		MessageDigest digest = digests.get();
+		if (digest == null) {
+			try {
+				digest = MessageDigest.getInstance( TAG_DIGEST );
+			}
+			catch (NoSuchAlgorithmException exc) {
+				// required of every Java platform
+				throw new IllegalStateException( exc );
+			}
+			digests.set( digest );
+		}
+
+		return digest;
+	}
+
+	/*
+	 * Returns the validation text of a response: 'Correct', 'Incorrect',
+	 * 'Invalid', or Constants.NO_VALUE for a conversion without validation.
+	 */
+	private static String getValidationResult( ResultType result, String inputType, String outputType, String inputValue )
+	{
+		switch (result) {
+			case CONVERTED:
+				return Constants.NO_VALUE;
+			case VALIDATED:
+				return "Correct";
+			case BAD_UNITS:
+			case MISMATCH:
+				return "Invalid";
+			default:
+				if (inputType.equals(Constants.NO_VALUE) || outputType.equals(Constants.NO_VALUE) ||
+					inputValue.equals(Constants.NO_VALUE))
+				{
+					return "Invalid";
+				}
+				return "Incorrect";
+		}
+	}
+
+	/*
+	 * Returns the given request value, or Constants.NO_VALUE if it's not
+	 * provided.
+	 */
+	private static String valueOf( String value )
+	{
+		return (RequestKey.isValue(value) ? value : Constants.NO_VALUE);
+	}
+
+
+	/**
+	 * A rendered response: its body, its entity tag, and the result it was
+	 * rendered from. Responses are immutable, and cached.
+	 */
+	public static final class RenderedResponse
+	{
+		private RenderedResponse( byte[] body, ConversionResult result, String entityTag )
+		{
+			this.body = body;
+			this.entityTag = entityTag;
+			this.result = result.getResultType();
+			this.fromUnit = (result.getFromType() != null ? result.getFromType().getUnit() : null);
+			this.toUnit = (result.getToType() != null ? result.getToType().getUnit() : null);
+		}
+
+		/**
+		 * Returns the response body as UTF-8 bytes. The array is shared and
+		 * must not be modified.
+		 *
+		 * @return The response body.
+		 */
+		public byte[] getBody()
+		{
+			return body;
+		}
+
+		/**
+		 * Returns the quoted entity tag of the response, as getEntityTag
+		 * returns for its request values.
+		 *
+		 * @return The entity tag.
+		 */
+		public String getEntityTag()
+		{
+			return entityTag;
+		}
+
+		/**
+		 * Returns the result type of the response.
+		 *
+		 * @return The result type.
+		 */
+		public ResultType getResultType()
+		{
+			return result;
+		}
+
+		/**
+		 * Returns the unit converted, if resolved.
+		 *
+		 * @return The source unit, or null.
+		 */
+		public ConversionUnit getFromUnit()
+		{
+			return fromUnit;
+		}
+
+		/**
+		 * Returns the unit output, if resolved.
+		 *
+		 * @return The target unit, or null.
+		 */
+		public ConversionUnit getToUnit()
+		{
+			return toUnit;
+		}
+
+
+		private final byte[] body;
+		private final String entityTag;
+		private final ResultType result;
+		private final ConversionUnit fromUnit;
+		private final ConversionUnit toUnit;
+	}
+
+	/*
+	 * The response cache key of a request. Values not provided are keyed
+	 * alike. Unit names resolved by the unit resolver are keyed by their
+	 * unit, so e.g. 'C' and 'celsius' share an entry, unless a required value
+	 * is missing and the response echoes the names as given.
+	 */
+	private static final class RequestKey
+	{
+		RequestKey( String fromType, String toType, String units, String validation )
+		{
+			Object from = (isValue(fromType) ? fromType : null);
+			Object to = (isValue(toType) ? toType : null);
+			if (from != null && to != null && isValue(units)) {
+				ConversionUnit fromUnit = UnitResolver.resolve( fromType );
+				ConversionUnit toUnit = (fromUnit != null ? UnitResolver.resolve(toType) : null);
+				if (toUnit != null) {
+					from = fromUnit;
+					to = toUnit;
+				}
+			}
+
+			this.fromType = from;
+			this.toType = to;
+			this.units = (isValue(units) ? units : null);
+			this.validation = (isValue(validation) ? validation : null);
+			this.hash = 31 * (31 * (31 * Objects.hashCode(this.fromType) + Objects.hashCode(this.toType)) +
+					Objects.hashCode(this.units)) + Objects.hashCode( this.validation );
+			this.length = length( fromType ) + length( toType ) + length( units ) + length( validation );
+		}
+
+		@Override
+		public boolean equals( Object obj )
+		{
+			if (!(obj instanceof RequestKey)) return false;
+
+			RequestKey key = (RequestKey) obj;
+			return (hash == key.hash && Objects.equals(fromType, key.fromType) && Objects.equals(toType, key.toType) &&
+					Objects.equals(units, key.units) && Objects.equals(validation, key.validation));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/*
+		 * Appends the key's canonical text, each value as its unit, as its
+		 * length and text, or as not provided.
+		 */
+		StringBuilder appendTo( StringBuilder text )
+		{
+			for (Object value : new Object[] {fromType, toType, units, validation}) {
+				if (value instanceof ConversionUnit) {
+					text.append( 'u' ).append( ((ConversionUnit) value).name() );
+				}
+				else if (value != null) {
+					text.append( 's' ).append( ((String) value).length() ).append( ':' ).append( (String) value );
+				}
+				else {
+					text.append( 'n' );
+				}
+				text.append( '\n' );
+			}
+
+			return text;
+		}
+
+		static boolean isValue( String value )
+		{
+			return (value != null && !value.isEmpty() && !value.equals(Constants.NO_VALUE));
+		}
+
+		private static int length( String value )
+		{
+			return (value != null ? value.length() : 0);
+		}
+
+
+		private final Object fromType;
+		private final Object toType;
+		private final String units;
+		private final String validation;
+		private final int hash;
+		final int length;
+	}
+
+
+	// instance members
+	private final ResponseCache<RequestKey,RenderedResponse> responseCache = new ResponseCache<>( CACHE_ENTRIES, CACHE_WEIGHT );
+	private final RequestCoalescer<RequestKey,RenderedResponse> requestCoalescer = new RequestCoalescer<>();
+	private final ConversionMetrics metrics = new ConversionMetrics( responseCache, requestCoalescer );
+
+	private final static Log log = LogFactory.getLog( ConversionHandler.class );
+
+	// the hot set of a few hundred requests fits many times over
+	private final static int CACHE_ENTRIES = 4096;
+	private final static long CACHE_WEIGHT = 4L << 20;
+	private final static int RESPONSE_SIZE = 512;
+
+	private final static String TAG_DIGEST = "SHA-1";
+	private final static int TAG_BYTES = 16;
+	private final static Charset CHARSET = Charset.forName( "UTF-8" );
+	private final static char[] HEX = "0123456789abcdef".toCharArray();
+	private final static ThreadLocal<MessageDigest> digests = new ThreadLocal<>();
+
+	private final static String[] PARAMETERS = {
+		Constants.FROM_TYPE_PARAM, Constants.TO_TYPE_PARAM, Constants.UNIT_VALUE_PARAM, Constants.VALIDATE_VALUE_PARAM
+	};
+
+	// compiled once, with values in the order rendered by writeResponseBody
+	private final static ResponseTemplate responseTemplate = ResponseTemplate.compile(
+			ConversionUtil.getMessageText("responseBodyTemplate"),
+			Constants.APP_RESULT_TAG, Constants.INPUT_TYPE_TAG, Constants.INPUT_VALUE_TAG, Constants.OUTPUT_TYPE_TAG,
+			Constants.OUTPUT_VALUE_TAG, Constants.VALIDATION_VALUE_TAG, Constants.VALIDATION_RESULT_TAG );
+
+	// last, after the constants its fields use
+	private final static ConversionHandler instance = new ConversionHandler();
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import com.veetech.unitconversion.CommandLine.ResultType;
+import com.veetech.unitconversion.domain.ConversionUnit;
+import java.math.BigDecimal;
+import java.util.Locale;
+
+
+/**
+ * Metrics of the validate service: conversions by unit pair and by result,
+ * request latencies, and the counters of the response cache and request
+ * coalescer. Recording costs a few striped counter updates and takes no
+ * locks. The metrics are read as Prometheus text, version 0.0.4:
+ *
+ * <pre>
+ *     unitconversion_conversions_total{from,to}    by unit pair, 'unknown' if unresolved
+ *     unitconversion_results_total{result}         by result type
+ *     unitconversion_request_duration_seconds      histogram of request latencies
+ *     unitconversion_request_duration_estimate_seconds{quantile}
+ *                                                  latency percentiles from the histogram
+ *     unitconversion_response_cache_*              response cache counters and size
+ *     unitconversion_coalesced_requests_total      requests sharing another's conversion
+ *     unitconversion_conversions_in_flight         conversions running
+ * </pre>
+ *
+ * Metrics are safe for use by concurrent threads.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ConversionMetrics
+{
+	/**
+	 * The media type of Prometheus text.
+	 */
+	public final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+
+	/**
+	 * Creates metrics reporting the counters of the given cache and
+	 * coalescer.
+	 *
+	 * @param cache The response cache.
+	 * @param coalescer The request coalescer.
+	 */
+	public ConversionMetrics( ResponseCache<?,?> cache, RequestCoalescer<?,?> coalescer )
+	{
+		this.cache = cache;
+		this.coalescer = coalescer;
+	}
+
+
+	/**
+	 * Records a conversion of the given unit pair with the given result.
+	 *
+	 * @param from The unit to convert, or null if not resolved.
+	 * @param to The unit to output, or null if not resolved.
+	 * @param result The result type.
+	 */
+	public void recordResult( ConversionUnit from, ConversionUnit to, ResultType result )
+	{
+		pairs.increment( index(from) * UNITS.length + index(to) );
+		results.increment( result.ordinal() );
+	}
+
+	/**
+	 * Records the latency of a request, from its arrival to its response.
+	 *
+	 * @param nanos The latency in nanoseconds.
+	 */
+	public void recordLatency( long nanos )
+	{
+		latencies.record( nanos );
+	}
+
+
+	/**
+	 * Returns the metrics as Prometheus text.
+	 *
+	 * @return The metrics text.
+	 */
+	public String getText()
+	{
+		StringBuilder text = new StringBuilder( TEXT_SIZE );
+
+		appendHeader( text, "unitconversion_conversions_total", "counter", "Conversions by unit pair." );
+		for (int i = 0; i < pairs.size(); i++) {
+			long count = pairs.get( i );
+			if (count == 0L) continue;
+
+			text.append( "unitconversion_conversions_total{from=\"" ).append( UNITS[i / UNITS.length] ).
+					append( "\",to=\"" ).append( UNITS[i % UNITS.length] ).append( "\"} " ).append( count ).append( '\n' );
+		}
+
+		appendHeader( text, "unitconversion_results_total", "counter", "Conversions by result type." );
+		for (ResultType result : RESULTS) {
+			text.append( "unitconversion_results_total{result=\"" ).append( result.name() ).append( "\"} " ).
+					append( results.get(result.ordinal()) ).append( '\n' );
+		}
+
+		long[] counts = latencies.getCounts();
+		long total = 0L;
+		appendHeader( text, "unitconversion_request_duration_seconds", "histogram", "Validate request latencies." );
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			text.append( "unitconversion_request_duration_seconds_bucket{le=\"" ).
+					append( i < BOUND_LABELS.length ? BOUND_LABELS[i] : "+Inf" ).append( "\"} " ).append( total ).append( '\n' );
+		}
+		text.append( "unitconversion_request_duration_seconds_sum " ).append( seconds(latencies.getSum()) ).append( '\n' );
+		text.append( "unitconversion_request_duration_seconds_count " ).append( total ).append( '\n' );
+
+		appendHeader( text, "unitconversion_request_duration_estimate_seconds", "gauge",
+				"Validate request latency percentiles, estimated from the histogram." );
+		for (int i = 0; i < QUANTILES.length; i++) {
+			text.append( "unitconversion_request_duration_estimate_seconds{quantile=\"" ).append( QUANTILE_LABELS[i] ).
+					append( "\"} " ).append( seconds(LatencyHistogram.getQuantile(counts, QUANTILES[i])) ).append( '\n' );
+		}
+
+		appendValue( text, "unitconversion_response_cache_hits_total", "counter", "Response cache hits.", cache.getHitCount() );
+		appendValue( text, "unitconversion_response_cache_misses_total", "counter", "Response cache misses.", cache.getMissCount() );
+		appendValue( text, "unitconversion_response_cache_evictions_total", "counter", "Responses evicted for more frequent ones.",
+				cache.getEvictionCount() );
+		appendValue( text, "unitconversion_response_cache_rejections_total", "counter", "Responses not admitted to the cache.",
+				cache.getRejectionCount() );
+		appendValue( text, "unitconversion_response_cache_entries", "gauge", "Responses cached.", cache.size() );
+		appendValue( text, "unitconversion_response_cache_bytes", "gauge", "Approximate size of the responses cached.",
+				cache.getWeight() );
+		appendValue( text, "unitconversion_coalesced_requests_total", "counter", "Requests sharing a running conversion.",
+				coalescer.getCoalescedCount() );
+		appendValue( text, "unitconversion_conversions_in_flight", "gauge", "Conversions running.", coalescer.getInFlightCount() );
+
+		return text.toString();
+	}
+
+
+	/*
+	 * Returns the label index of the given unit, the last for none.
+	 */
+	private static int index( ConversionUnit unit )
+	{
+		return (unit != null ? unit.ordinal() : UNITS.length - 1);
+	}
+
+	/*
+	 * Returns the given nanoseconds as plain decimal seconds.
+	 */
+	private static String seconds( long nanos )
+	{
+		return BigDecimal.valueOf( nanos, 9 ).stripTrailingZeros().toPlainString();
+	}
+
+	/*
+	 * Appends the help and type lines of a metric.
+	 */
+	private static void appendHeader( StringBuilder text, String name, String type, String help )
+	{
+		text.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+		text.append( "# TYPE " ).append( name ).append( ' ' ).append( type ).append( '\n' );
+	}
+
+	/*
+	 * Appends a metric with a single value.
+	 */
+	private static void appendValue( StringBuilder text, String name, String type, String help, long value )
+	{
+		appendHeader( text, name, type, help );
+		text.append( name ).append( ' ' ).append( value ).append( '\n' );
+	}
+
+	/*
+	 * Returns the unit label values, by unit ordinal, then 'unknown'.
+	 */
+	private static String[] unitLabels()
+	{
+		ConversionUnit[] units = ConversionUnit.values();
+		String[] labels = new String[units.length + 1];
+		for (int i = 0; i < units.length; i++) {
+			labels[i] = units[i].name().toLowerCase( Locale.ROOT );
+		}
+		labels[units.length] = "unknown";
+
+		return labels;
+	}
+
+	/*
+	 * Returns the latency bucket bounds as plain decimal seconds.
+	 */
+	private static String[] boundLabels()
+	{
+		long[] bounds = LatencyHistogram.getBounds();
+		String[] labels = new String[bounds.length];
+		for (int i = 0; i < bounds.length; i++) {
+			labels[i] = seconds( bounds[i] );
+		}
+
+		return labels;
+	}
+
+
+	// instance members
+	private final ResponseCache<?,?> cache;
+	private final RequestCoalescer<?,?> coalescer;
+	private final StripedCounters pairs = new StripedCounters( UNITS.length * UNITS.length );
+	private final StripedCounters results = new StripedCounters( RESULTS.length );
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	private final static String[] UNITS = unitLabels();
+	private final static ResultType[] RESULTS = ResultType.values();
+	private final static String[] BOUND_LABELS = boundLabels();
+	private final static double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+	private final static String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+	private final static int TEXT_SIZE = 1 << 13;
+}
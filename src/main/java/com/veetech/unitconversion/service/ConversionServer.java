@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Constants;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A standalone web server for Unit Conversion, on the JDK's built-in HTTP
+ * server. It serves the validate service, with the query parameters and
+ * response body of GenericResource's getConversion, and the web page and its
+ * scripts and images, all under the web application's context path:
+ *
+ * <pre>
+ *     /UnitConversion/                    the web page
+ *     /UnitConversion/service/validate    the validate service
+ *     /UnitConversion/service/metrics     its metrics, as Prometheus text
+ * </pre>
+ *
+ * Each request is handled on a virtual thread if the JVM supports them,
+ * otherwise on a fixed pool of threads. Validate requests may be sampled for
+ * a Server-Timing header.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ConversionServer
+{
+	/**
+	 * Starts a server on the given port and prints its address to the
+	 * console. The server runs until the JVM exits.
+	 *
+	 * @param port The port to listen on.
+	 * @param timingRate The fraction of validate requests to time, from 0 to 1.
+	 */
+	public static void run( int port, double timingRate )
+	{
+		long started = System.nanoTime();
+		try {
+			final ConversionServer server = start( port, timingRate );
+			Runtime.getRuntime().addShutdownHook( new Thread("server-shutdown") {
+				@Override
+				public void run()
+				{
+					server.stop();
+				}
+			} );
+
+			long elapsed = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - started );
+			System.out.println( String.format("%s\n  %s", Constants.VERSION,
+					String.format(ConversionUtil.getMessageText("serverStarted"), server.getPort(), Constants.CONTEXT_PATH, elapsed)) );
+		}
+		catch (IOException exc) {
+			if (log.isErrorEnabled()) {
+				log.error( String.format("Error starting server on port %d.", port), exc );
+			}
+			System.out.println( String.format("%s\n  %s", Constants.VERSION,
+					String.format(ConversionUtil.getMessageText("serverFailed"), port, exc.getMessage())) );
+		}
+	}
+
+	/**
+	 * Starts a server on the given port, or on any free port if the port is
+	 * zero.
+	 *
+	 * Throws an exception if the server can't listen on the port.
+	 *
+	 * @param port The port to listen on.
+	 * @return The running server.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public static ConversionServer start( int port )
+			throws IOException
+	{
+		return start( port, 0.0 );
+	}
+
+	/**
+	 * Starts a server on the given port, or on any free port if the port is
+	 * zero, timing validate requests sampled at the given rate for a
+	 * Server-Timing header.
+	 *
+	 * Throws an exception if the server can't listen on the port.
+	 *
+	 * @param port The port to listen on.
+	 * @param timingRate The fraction of validate requests to time, from 0 to 1.
+	 * @return The running server.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public static ConversionServer start( int port, double timingRate )
+			throws IOException
+	{
+		HttpServer server = HttpServer.create( new InetSocketAddress(port), BACKLOG );
+		server.createContext( Constants.CONTEXT_PATH + VALIDATE_PATH, new ValidateHandler(timingRate) );
+		server.createContext( Constants.CONTEXT_PATH + METRICS_PATH, new MetricsHandler() );
+		server.createContext( Constants.CONTEXT_PATH + "/", new ResourceHandler() );
+		server.createContext( "/", new RootHandler() );
+
+		ExecutorService executor = createExecutor();
+		server.setExecutor( executor );
+		server.start();
+
+		if (log.isInfoEnabled()) {
+			log.info( String.format("Server listening on port %d.", server.getAddress().getPort()) );
+		}
+
+		return new ConversionServer( server, executor );
+	}
+
+
+	/**
+	 * Returns the port the server listens on.
+	 *
+	 * @return The server port.
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server, waiting briefly for requests in progress.
+	 */
+	public void stop()
+	{
+		server.stop( STOP_DELAY );
+		executor.shutdown();
+	}
+
+
+	/**
+	 * Returns an executor running each task on a new virtual thread if the
+	 * JVM supports them, otherwise an executor with a fixed pool of threads.
+	 *
+	 * @return The request executor.
+	 */
+	static ExecutorService createExecutor()
+	{
+		try {
+			// JDK 21 and later, found reflectively to keep the Java 7 target
+			Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+			return (ExecutorService) factory.invoke( null );
+		}
+		catch (NoSuchMethodException exc) {
+			// no virtual threads
+		}
+		catch (ReflectiveOperationException | RuntimeException exc) {
+			// e.g. a preview release without preview features enabled
+			if (log.isDebugEnabled()) {
+				log.debug( "Virtual threads unavailable.", exc );
+			}
+		}
+
+		return Executors.newFixedThreadPool( Math.max(MIN_THREADS, Runtime.getRuntime().availableProcessors() * 2) );
+	}
+
+
+	private ConversionServer( HttpServer server, ExecutorService executor )
+	{
+		this.server = server;
+		this.executor = executor;
+	}
+
+
+	/*
+	 * Returns the parameters of the given raw query text, decoded as UTF-8.
+	 */
+	private static Map<String,String[]> parseQuery( String query )
+			throws IllegalArgumentException
+	{
+		Map<String,String[]> parameters = new HashMap<>();
+		if (query == null) return parameters;
+
+		try {
+			for (String pair : query.split("&")) {
+				if (pair.isEmpty()) continue;
+
+				int split = pair.indexOf( '=' );
+				String name = URLDecoder.decode( (split < 0 ? pair : pair.substring(0, split)), CHARSET );
+				String value = (split < 0 ? "" : URLDecoder.decode(pair.substring(split + 1), CHARSET));
+
+				// the first value of a repeated parameter, as by the servlet API
+				if (!parameters.containsKey(name)) parameters.put( name, new String[] {value} );
+			}
+		}
+		catch (UnsupportedEncodingException exc) {
+			throw new IllegalStateException( exc );
+		}
+
+		return parameters;
+	}
+
+	/*
+	 * Sends the given status and body, then closes the exchange.
+	 */
+	private static void send( HttpExchange exchange, int status, String contentType, byte[] body, int length )
+			throws IOException
+	{
+		boolean head = exchange.getRequestMethod().equals( "HEAD" );
+		if (contentType != null) exchange.getResponseHeaders().set( "Content-Type", contentType );
+		exchange.sendResponseHeaders( status, (head || length == 0 ? -1 : length) );
+		if (!head && length > 0) {
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write( body, 0, length );
+			}
+		}
+		exchange.close();
+	}
+
+	/*
+	 * Sends an empty response with the given status.
+	 */
+	private static void sendStatus( HttpExchange exchange, int status )
+			throws IOException
+	{
+		send( exchange, status, null, null, 0 );
+	}
+
+	/*
+	 * Returns true if the request method is GET, or HEAD if allowed. Otherwise
+	 * responds with status 405.
+	 */
+	private static boolean isGet( HttpExchange exchange, boolean allowHead )
+			throws IOException
+	{
+		String method = exchange.getRequestMethod();
+		if (method.equals("GET") || (allowHead && method.equals("HEAD"))) return true;
+
+		exchange.getResponseHeaders().set( "Allow", (allowHead ? "GET, HEAD" : "GET") );
+		sendStatus( exchange, STATUS_BAD_METHOD );
+		return false;
+	}
+
+
+	/*
+	 * Handles the validate service.
+	 */
+	private static class ValidateHandler
+			implements HttpHandler
+	{
+		ValidateHandler( double timingRate )
+		{
+			this.timingRate = timingRate;
+		}
+
+		@Override
+		public void handle( HttpExchange exchange )
+				throws IOException
+		{
+			long started = System.nanoTime();
+			Tracer.Span span = Tracing.begin( Tracer.Phase.REQUEST );
+			try {
+				if (!exchange.getRequestURI().getPath().equals(Constants.CONTEXT_PATH + VALIDATE_PATH)) {
+					sendStatus( exchange, STATUS_NOT_FOUND );
+					return;
+				}
+				if (!isGet(exchange, false)) return;
+
+				String[] values;
+				try {
+					values = ConversionHandler.getRequestValues( parseQuery(exchange.getRequestURI().getRawQuery()) );
+				}
+				catch (IllegalArgumentException exc) {
+					// malformed escapes
+					sendStatus( exchange, STATUS_BAD_REQUEST );
+					return;
+				}
+
+				String entityTag = handler.getEntityTag( values[0], values[1], values[2], values[3] );
+				exchange.getResponseHeaders().set( "ETag", entityTag );
+				exchange.getResponseHeaders().set( "Cache-Control", Constants.RESPONSE_CACHE_CONTROL );
+				if (ConversionHandler.matchesEntityTag(exchange.getRequestHeaders().getFirst("If-None-Match"), entityTag)) {
+					sendStatus( exchange, STATUS_NOT_MODIFIED );
+					handler.getMetrics().recordLatency( System.nanoTime() - started );
+					span.end( values[0], values[1], TRACE_NOT_MODIFIED );
+					return;
+				}
+
+				ServerTiming timing = ServerTiming.sample( timingRate );
+				ConversionHandler.RenderedResponse response = handler.getResponse( values[0], values[1], values[2], values[3],
+						timing );
+				if (timing != null) {
+					exchange.getResponseHeaders().set( ServerTiming.HEADER, timing.getHeaderValue(System.nanoTime() - started) );
+				}
+				send( exchange, STATUS_OK, JSON_TYPE, response.getBody(), response.getBody().length );
+				handler.getMetrics().recordLatency( System.nanoTime() - started );
+				span.end( values[0], values[1], response.getResultType().name() );
+			}
+			catch (IOException | RuntimeException exc) {
+				if (log.isErrorEnabled()) {
+					log.error( "Conversion request error.", exc );
+				}
+				exchange.close();
+			}
+		}
+
+
+		private final double timingRate;
+	}
+
+	/*
+	 * Handles the metrics of the validate service.
+	 */
+	private static class MetricsHandler
+			implements HttpHandler
+	{
+		@Override
+		public void handle( HttpExchange exchange )
+				throws IOException
+		{
+			try {
+				if (!exchange.getRequestURI().getPath().equals(Constants.CONTEXT_PATH + METRICS_PATH)) {
+					sendStatus( exchange, STATUS_NOT_FOUND );
+					return;
+				}
+				if (!isGet(exchange, false)) return;
+
+				byte[] body = handler.getMetrics().getText().getBytes( CHARSET );
+				send( exchange, STATUS_OK, ConversionMetrics.CONTENT_TYPE, body, body.length );
+			}
+			catch (IOException | RuntimeException exc) {
+				if (log.isErrorEnabled()) {
+					log.error( "Metrics request error.", exc );
+				}
+				exchange.close();
+			}
+		}
+	}
+
+	/*
+	 * Handles the web page and its resources, read from the class path once.
+	 */
+	private static class ResourceHandler
+			implements HttpHandler
+	{
+		@Override
+		public void handle( HttpExchange exchange )
+				throws IOException
+		{
+			try {
+				if (!isGet(exchange, true)) return;
+
+				String name = exchange.getRequestURI().getPath().substring( Constants.CONTEXT_PATH.length() + 1 );
+				if (name.isEmpty()) name = INDEX_PAGE;
+
+				String contentType = getContentType( name );
+				byte[] content = (contentType != null ? getResource(name) : null);
+				if (content == null) {
+					sendStatus( exchange, STATUS_NOT_FOUND );
+					return;
+				}
+				send( exchange, STATUS_OK, contentType, content, content.length );
+			}
+			catch (IOException | RuntimeException exc) {
+				if (log.isErrorEnabled()) {
+					log.error( "Resource request error.", exc );
+				}
+				exchange.close();
+			}
+		}
+
+		/*
+		 * Returns the content of the named resource, or null if not found.
+		 */
+		private byte[] getResource( String name )
+				throws IOException
+		{
+			byte[] content = resources.get( name );
+			if (content != null) return content;
+
+			// nothing outside the resource root
+			if (name.contains("..") || name.contains("//") || name.contains("\\")) return null;
+
+			try (InputStream input = ConversionServer.class.getClassLoader().getResourceAsStream(RESOURCE_ROOT + name)) {
+				if (input == null) return null;
+
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int count;
+				while ((count = input.read(buffer)) >= 0) {
+					bytes.write( buffer, 0, count );
+				}
+				content = bytes.toByteArray();
+			}
+			resources.putIfAbsent( name, content );
+
+			return content;
+		}
+
+		/*
+		 * Returns the content type of the named resource, or null if it's not
+		 * a web resource type.
+		 */
+		private static String getContentType( String name )
+		{
+			int dot = name.lastIndexOf( '.' );
+			return (dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1)));
+		}
+
+
+		private final ConcurrentMap<String,byte[]> resources = new ConcurrentHashMap<>();
+	}
+
+	/*
+	 * Redirects the root path to the web page, and answers anything else
+	 * outside the context path as not found.
+	 */
+	private static class RootHandler
+			implements HttpHandler
+	{
+		@Override
+		public void handle( HttpExchange exchange )
+				throws IOException
+		{
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/") || path.equals(Constants.CONTEXT_PATH)) {
+				exchange.getResponseHeaders().set( "Location", Constants.CONTEXT_PATH + "/" );
+				sendStatus( exchange, STATUS_FOUND );
+			}
+			else {
+				sendStatus( exchange, STATUS_NOT_FOUND );
+			}
+		}
+	}
+
+
+	// instance members
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final static Log log = LogFactory.getLog( ConversionServer.class );
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
+
+	private final static String VALIDATE_PATH = "/service/validate";
+	private final static String METRICS_PATH = "/service/metrics";
+	private final static String RESOURCE_ROOT = "webapp/";
+	private final static String INDEX_PAGE = "index.html";
+	private final static String JSON_TYPE = "application/json;charset=UTF-8";
+	private final static String CHARSET = "UTF-8";
+	private final static String TRACE_NOT_MODIFIED = "NOT_MODIFIED";
+	private final static Map<String,String> CONTENT_TYPES = new HashMap<>();
+	static {
+		CONTENT_TYPES.put( "html", "text/html;charset=UTF-8" );
+		CONTENT_TYPES.put( "css", "text/css;charset=UTF-8" );
+		CONTENT_TYPES.put( "js", "application/javascript;charset=UTF-8" );
+		CONTENT_TYPES.put( "png", "image/png" );
+	}
+
+	private final static int STATUS_OK = 200;
+	private final static int STATUS_FOUND = 302;
+	private final static int STATUS_NOT_MODIFIED = 304;
+	private final static int STATUS_BAD_REQUEST = 400;
+	private final static int STATUS_NOT_FOUND = 404;
+	private final static int STATUS_BAD_METHOD = 405;
+
+	private final static int BACKLOG = 128;
+	private final static int STOP_DELAY = 1;
+	private final static int MIN_THREADS = 4;
+	private final static int BUFFER_SIZE = 1 << 13;
+}
@@ -10,14 +10,29 @@
  */
 package com.veetech.unitconversion.service;
 
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import com.veetech.unitconversion.ConversionUtil;
 import com.veetech.unitconversion.domain.Constants;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import javax.servlet.ServletContext;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -33,6 +48,8 @@ public class GenericResource
 {
 	@Context
 	private UriInfo context;
+	@Context
+	private ServletContext servletContext;
 
 	/**
 	 * Creates a new instance of GenericResource
@@ -43,13 +60,22 @@ public class GenericResource
 
 	/**
 	 * Retrieves representation of an instance of
-	 * com.veetech.unitconversion.service.GenericResource.
+	 * com.veetech.unitconversion.service.GenericResource. The response
+	 * carries an entity tag and may be cached; a request whose
+	 * If-None-Match header matches the tag is answered with status 304,
+	 * without converting. The request's latency is recorded in the metrics,
+	 * and the request traced, up to its response being built. A request
+	 * sampled at the configured Server-Timing rate has its phase durations
+	 * in a Server-Timing header.
 	 * 
-	 * @return an instance of java.lang.String
+	 * @param ifNoneMatch The If-None-Match header value, or null.
+	 * @return The response, its body written as UTF-8 bytes.
 	 */
 	@GET
-	public String getConversion()
+	public Response getConversion( @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch )
 	{
+		long started = System.nanoTime();
+		Tracer.Span span = Tracing.begin( Tracer.Phase.REQUEST );
 		MultivaluedMap<String,String> query = context.getQueryParameters();
 		String fromType = Constants.NO_VALUE;
 		String toType = Constants.NO_VALUE;
@@ -76,15 +102,152 @@ public class GenericResource
 					new Object[] {fromType, toType, units, validate} ));
 		}
 		
-		WebCommand command = new WebCommand( fromType, toType, units, validate );
-		command.execute();
+		String entityTag = handler.getEntityTag( fromType, toType, units, validate );
+		if (ConversionHandler.matchesEntityTag(ifNoneMatch, entityTag)) {
+			handler.getMetrics().recordLatency( System.nanoTime() - started );
+			span.end( fromType, toType, TRACE_NOT_MODIFIED );
+			return Response.status( Response.Status.NOT_MODIFIED ).header( HttpHeaders.ETAG, entityTag ).
+					header( HttpHeaders.CACHE_CONTROL, Constants.RESPONSE_CACHE_CONTROL ).build();
+		}
 		
-		String response = command.getResponseBody();
-		command.cleanup();  // good citizen :)
+		ServerTiming timing = ServerTiming.sample( getTimingRate() );
+		ConversionHandler.RenderedResponse response = handler.getResponse( fromType, toType, units, validate, timing );
+		final byte[] body = response.getBody();
+		StreamingOutput output = new StreamingOutput() {
+			@Override
+			public void write( OutputStream output )
+					throws IOException
+			{
+				output.write( body );
+			}
+		};
+		long elapsed = System.nanoTime() - started;
+		handler.getMetrics().recordLatency( elapsed );
+		span.end( fromType, toType, response.getResultType().name() );
 		
-		return response;
+		Response.ResponseBuilder builder = Response.ok( output ).header( HttpHeaders.ETAG, entityTag ).
+				header( HttpHeaders.CACHE_CONTROL, Constants.RESPONSE_CACHE_CONTROL );
+		if (timing != null) {
+			builder.header( ServerTiming.HEADER, timing.getHeaderValue(elapsed) );
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Converts a batch of requests posted as a JSON array of request objects,
+	 * or as newline-delimited request objects. Each request object has the
+	 * query parameters of getConversion as members. The results are streamed
+	 * in the same shape as getConversion's response, as a JSON array or as
+	 * newline-delimited JSON like the request.
+	 *
+	 * Responds with status 400 if the request body is invalid, or 413 if it
+	 * holds more requests than the configured batch maximum.
+	 *
+	 * @param body The request body.
+	 * @return The batch response.
+	 */
+	@POST
+	@Path("/batch")
+	@Consumes({MediaType.APPLICATION_JSON, BatchConversion.APPLICATION_NDJSON, MediaType.TEXT_PLAIN})
+	@Produces({MediaType.APPLICATION_JSON, BatchConversion.APPLICATION_NDJSON})
+	public Response postConversions( InputStream body )
+	{
+		int maxSize = getBatchMaxSize();
+		BatchConversion batch;
+		try {
+			batch = BatchConversion.read( new InputStreamReader(body, CHARSET), maxSize );
+		}
+		catch (IllegalArgumentException | IOException exc) {
+			if (log.isDebugEnabled()) {
+				log.debug( "Invalid batch request.", exc );
+			}
+			return errorResponse( Response.Status.BAD_REQUEST.getStatusCode(), "badBatch", exc.getMessage() );
+		}
+
+		if (!batch.isComplete()) {
+			return errorResponse( STATUS_TOO_LARGE, "batchTooLarge", maxSize );
+		}
+		if (log.isDebugEnabled()) {
+			log.debug( String.format("Executing batch of %d web commands.", batch.size()) );
+		}
+
+		return Response.ok( batch, batch.getMediaType() ).build();
+	}
+
+
+	/*
+	 * Returns the configured maximum number of requests in a batch.
+	 */
+	private int getBatchMaxSize()
+	{
+		String value = (servletContext != null ? servletContext.getInitParameter(Constants.BATCH_MAX_SIZE_PARAM) : null);
+		if (value != null) {
+			try {
+				return Integer.parseInt( value.trim() );
+			}
+			catch (NumberFormatException exc) {
+				if (log.isWarnEnabled()) {
+					log.warn( String.format("Invalid %s '%s', using %d.", Constants.BATCH_MAX_SIZE_PARAM, value,
+							Constants.DEFAULT_BATCH_MAX_SIZE) );
+				}
+			}
+		}
+
+		return Constants.DEFAULT_BATCH_MAX_SIZE;
+	}
+
+	/*
+	 * Returns the configured Server-Timing sampling rate, or zero if it's
+	 * not configured or invalid.
+	 */
+	private double getTimingRate()
+	{
+		String value = (servletContext != null ? servletContext.getInitParameter(Constants.SERVER_TIMING_PARAM) : null);
+		try {
+			return ServerTiming.getRate( value );
+		}
+		catch (IllegalArgumentException exc) {
+			if (log.isWarnEnabled()) {
+				log.warn( String.format("Invalid %s '%s', not timing.", Constants.SERVER_TIMING_PARAM, value) );
+			}
+		}
+
+		return 0.0;
+	}
+
+	/*
+	 * Returns a JSON error response with the given status and message.
+	 */
+	private static Response errorResponse( int status, String messageKey, Object parm )
+	{
+		return Response.status( status ).entity( errorBody(messageKey, parm) ).type( MediaType.APPLICATION_JSON ).build();
+	}
+
+	/**
+	 * Returns a JSON error body with the application version and the given
+	 * message.
+	 *
+	 * @param messageKey The message text key.
+	 * @param parm The message substitution parameter, or null.
+	 * @return The error body.
+	 */
+	static String errorBody( String messageKey, Object parm )
+	{
+		String message = String.format( ConversionUtil.getMessageText(messageKey), parm );
+		StringBuilder body = new StringBuilder( "{\"appVersion\": \"" );
+		ResponseTemplate.escape( Constants.VERSION, body ).append( "\", \"appResult\": \"" );
+		ResponseTemplate.escape( message, body ).append( "\"}" );
+
+		return body.toString();
 	}
 	
 	
 	private final static Log log = LogFactory.getLog( GenericResource.class );
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
+
+	// JAX-RS 1.1 has no status constant for 413
+	private final static int STATUS_TOO_LARGE = 413;
+	private final static Charset CHARSET = Charset.forName( "UTF-8" );
+	private final static String TRACE_NOT_MODIFIED = "NOT_MODIFIED";
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import java.util.Arrays;
+
+
+/**
+ * A histogram of latencies in fixed buckets, from 250 nanoseconds to 10
+ * seconds in steps of 1, 2.5 and 5, with a last bucket for anything slower.
+ * Recording is lock-free, on striped counters, and costs a bucket search of
+ * a few comparisons. Percentiles are estimated from the buckets.
+ *
+ * Counts are cumulative from creation. Reads aren't a snapshot, as for
+ * StripedCounters. A histogram is safe for use by concurrent threads.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class LatencyHistogram
+{
+	/**
+	 * Creates an empty histogram.
+	 */
+	public LatencyHistogram()
+	{
+		// a count per bucket, then the total time
+		this.counters = new StripedCounters( BOUNDS.length + 2 );
+	}
+
+
+	/**
+	 * Records the given latency. A negative latency is recorded as zero.
+	 *
+	 * @param nanos The latency in nanoseconds.
+	 */
+	public void record( long nanos )
+	{
+		if (nanos < 0L) nanos = 0L;
+
+		int bucket = Arrays.binarySearch( BOUNDS, nanos );
+		counters.increment( bucket >= 0 ? bucket : -bucket - 1 );
+		counters.add( SUM, nanos );
+	}
+
+
+	/**
+	 * Returns the upper bounds of the buckets in nanoseconds, excluding the
+	 * last bucket, which is unbounded.
+	 *
+	 * @return The bucket bounds.
+	 */
+	public static long[] getBounds()
+	{
+		return BOUNDS.clone();
+	}
+
+	/**
+	 * Returns the count of latencies in each bucket, the last bucket holding
+	 * those above every bound.
+	 *
+	 * @return The bucket counts.
+	 */
+	public long[] getCounts()
+	{
+		long[] counts = new long[BOUNDS.length + 1];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = counters.get( i );
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Returns the total of all latencies recorded, in nanoseconds.
+	 *
+	 * @return The latency sum.
+	 */
+	public long getSum()
+	{
+		return counters.get( SUM );
+	}
+
+	/**
+	 * Returns the estimated latency at the given quantile of the given bucket
+	 * counts, interpolated linearly within its bucket. The last bucket is
+	 * estimated as its lower bound.
+	 *
+	 * Throws an exception if the quantile isn't between zero and one.
+	 *
+	 * @param counts The bucket counts, from getCounts.
+	 * @param quantile The quantile, e.g. 0.99.
+	 * @return The latency in nanoseconds, or zero if nothing is recorded.
+	 */
+	public static long getQuantile( long[] counts, double quantile )
+			throws IllegalArgumentException
+	{
+		if (!(quantile >= 0.0 && quantile <= 1.0)) throw new IllegalArgumentException( "Quantile must be from 0 to 1." );
+
+		long total = 0L;
+		for (long count : counts) total += count;
+		if (total == 0L) return 0L;
+
+		double rank = quantile * total;
+		long below = 0L;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (counts[i] > 0 && below + counts[i] >= rank) {
+				long lower = (i > 0 ? BOUNDS[i - 1] : 0L);
+				return lower + Math.round( (BOUNDS[i] - lower) * Math.max(0.0, rank - below) / counts[i] );
+			}
+			below += counts[i];
+		}
+
+		return BOUNDS[BOUNDS.length - 1];
+	}
+
+
+	// instance members
+	private final StripedCounters counters;
+
+	private final static long[] BOUNDS = {
+		250L, 500L, 1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L, 500000L,
+		1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L, 100000000L, 250000000L, 500000000L,
+		1000000000L, 2500000000L, 5000000000L, 10000000000L
+	};
+	private final static int SUM = BOUNDS.length + 1;
+}
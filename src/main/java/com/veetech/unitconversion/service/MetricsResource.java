@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+
+/**
+ * REST Web Service serving the validate service's metrics as Prometheus
+ * text, for scraping.
+ *
+ * @author a.cook@veetechis.com
+ */
+@Path("/metrics")
+public class MetricsResource
+{
+	/**
+	 * Creates a new instance of MetricsResource
+	 */
+	public MetricsResource()
+	{
+	}
+
+	/**
+	 * Retrieves the metrics of the validate service.
+	 *
+	 * @return The metrics as Prometheus text.
+	 */
+	@GET
+	@Produces(ConversionMetrics.CONTENT_TYPE)
+	public String getMetrics()
+	{
+		return ConversionHandler.getInstance().getMetrics().getText();
+	}
+}
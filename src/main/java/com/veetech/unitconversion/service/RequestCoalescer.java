@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Coalesces concurrent computations of equal keys: the first caller for a
+ * key runs the computation on its own thread, and callers arriving while it
+ * runs wait for and share its result, or its exception. Nothing is kept
+ * once the computation ends, so a later call computes again.
+ *
+ * Keys must be immutable with consistent equals and hashCode. A coalescer
+ * is safe for use by concurrent threads.
+ *
+ * @param <K> The key type.
+ * @param <V> The result type.
+ * @author a.cook@veetechis.com
+ */
+public final class RequestCoalescer<K,V>
+{
+	/**
+	 * Returns the result of the given computation for the given key, or of
+	 * the computation already running for an equal key.
+	 *
+	 * Throws an exception if the key or computation is null, or the
+	 * computation throws an exception; a checked exception is thrown as the
+	 * cause of an IllegalStateException.
+	 *
+	 * @param key The computation key.
+	 * @param computation The computation.
+	 * @return The computation result.
+	 */
+	public V execute( K key, Callable<V> computation )
+			throws IllegalStateException, NullPointerException
+	{
+		FutureTask<V> task = new FutureTask<>( computation );
+		FutureTask<V> running = inFlight.putIfAbsent( key, task );
+		if (running != null) {
+			coalesced.incrementAndGet();
+			return getResult( running );
+		}
+
+		try {
+			task.run();
+		}
+		finally {
+			inFlight.remove( key, task );
+		}
+
+		return getResult( task );
+	}
+
+
+	/**
+	 * Returns the number of calls that shared a running computation.
+	 *
+	 * @return The coalesced call count.
+	 */
+	public long getCoalescedCount()
+	{
+		return coalesced.get();
+	}
+
+	/**
+	 * Returns the number of computations running.
+	 *
+	 * @return The running computation count.
+	 */
+	public int getInFlightCount()
+	{
+		return inFlight.size();
+	}
+
+
+	/*
+	 * Waits for and returns the result of the given computation. Waiting isn't
+	 * interruptible, as computations are short; an interrupt is kept for the
+	 * caller.
+	 */
+	private static <V> V getResult( Future<V> future )
+	{
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				}
+				catch (InterruptedException exc) {
+					interrupted = true;
+				}
+			}
+		}
+		catch (ExecutionException exc) {
+			Throwable cause = exc.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException( cause );
+		}
+		finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+
+	// instance members
+	private final ConcurrentMap<K,FutureTask<V>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong coalesced = new AtomicLong();
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * A bounded cache of responses, limited both by entry count and by weight,
+ * the approximate size in bytes of an entry's key and value.
+ *
+ * Reads are lock-free. Each read, hit or miss, counts toward the key's
+ * frequency in a small count-min sketch whose counts are halved
+ * periodically, so frequencies follow recent traffic. When the cache is
+ * full a new entry is admitted only if its key is more frequent than the
+ * eviction victim, the least frequent of a random sample of entries, the
+ * heaviest on a tie. Rarely requested keys therefore can't displace the hot
+ * set, however many of them are requested.
+ *
+ * Keys must be immutable with consistent equals and hashCode. Cached values
+ * are shared and must not be modified. A cache is safe for use by
+ * concurrent threads.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ * @author a.cook@veetechis.com
+ */
+public final class ResponseCache<K,V>
+{
+	/**
+	 * Creates a cache of up to maxEntries entries weighing up to maxWeight
+	 * bytes in total.
+	 *
+	 * Throws an exception if either maximum is less than one.
+	 *
+	 * @param maxEntries The maximum number of entries.
+	 * @param maxWeight The maximum total weight in bytes.
+	 */
+	public ResponseCache( int maxEntries, long maxWeight )
+			throws IllegalArgumentException
+	{
+		if (maxEntries < 1) throw new IllegalArgumentException( "Cache entries must be at least 1." );
+		if (maxWeight < 1) throw new IllegalArgumentException( "Cache weight must be at least 1." );
+
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.entries = new ConcurrentHashMap<>( maxEntries );
+		this.slots = new Entry<?,?>[maxEntries];
+		this.sketch = new FrequencySketch( maxEntries );
+	}
+
+
+	/**
+	 * Returns the cached value for the given key, or null if it's not cached.
+	 *
+	 * Throws an exception if the key is null.
+	 *
+	 * @param key The key.
+	 * @return The value, or null.
+	 */
+	public V get( K key )
+			throws NullPointerException
+	{
+		sketch.increment( key.hashCode() );
+
+		Entry<K,V> entry = entries.get( key );
+		if (entry == null) {
+			counters.increment( MISSES );
+			return null;
+		}
+		counters.increment( HITS );
+
+		return entry.value;
+	}
+
+	/**
+	 * Returns the cached value for the given key, or null if it's not cached,
+	 * without counting the read as a hit, a miss, or toward the key's
+	 * frequency.
+	 *
+	 * Throws an exception if the key is null.
+	 *
+	 * @param key The key.
+	 * @return The value, or null.
+	 */
+	public V peek( K key )
+			throws NullPointerException
+	{
+		Entry<K,V> entry = entries.get( key );
+
+		return (entry != null ? entry.value : null);
+	}
+
+	/**
+	 * Caches the given value for the given key, unless the key is cached, the
+	 * entry is too heavy for the cache, or the key is too infrequent to evict
+	 * another entry. Returns true if the value is cached.
+	 *
+	 * Throws an exception if the key or value is null.
+	 *
+	 * @param key The key.
+	 * @param value The value.
+	 * @param size The approximate size in bytes of the key and value, to
+	 *        which a fixed overhead is added for the entry's weight.
+	 * @return True if cached.
+	 */
+	public boolean put( K key, V value, long size )
+			throws NullPointerException
+	{
+		if (value == null) throw new NullPointerException( "Cached value is null." );
+
+		Entry<K,V> candidate = new Entry<>( key, value, size + ENTRY_OVERHEAD );
+
+		synchronized (slots) {
+			if (entries.containsKey(key)) return false;
+			if (candidate.weight > maxWeight) {
+				counters.increment( REJECTIONS );
+				return false;
+			}
+
+			int frequency = sketch.frequency( key.hashCode() );
+			while (count == maxEntries || weight + candidate.weight > maxWeight) {
+				Entry<K,V> victim = sampleVictim();
+				if (sketch.frequency(victim.key.hashCode()) >= frequency) {
+					counters.increment( REJECTIONS );
+					return false;
+				}
+				remove( victim );
+				counters.increment( EVICTIONS );
+			}
+
+			candidate.slot = count;
+			slots[count++] = candidate;
+			weight += candidate.weight;
+			entries.put( key, candidate );
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Returns the number of entries cached.
+	 *
+	 * @return The entry count.
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Returns the total weight of the entries cached, in bytes.
+	 *
+	 * @return The cache weight.
+	 */
+	public long getWeight()
+	{
+		synchronized (slots) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Returns the number of reads that found a cached value.
+	 *
+	 * @return The hit count.
+	 */
+	public long getHitCount()
+	{
+		return counters.get( HITS );
+	}
+
+	/**
+	 * Returns the number of reads that found no cached value.
+	 *
+	 * @return The miss count.
+	 */
+	public long getMissCount()
+	{
+		return counters.get( MISSES );
+	}
+
+	/**
+	 * Returns the number of entries evicted for more frequent ones.
+	 *
+	 * @return The eviction count.
+	 */
+	public long getEvictionCount()
+	{
+		return counters.get( EVICTIONS );
+	}
+
+	/**
+	 * Returns the number of values not cached because the key was less
+	 * frequent than the eviction victim, or the entry too heavy.
+	 *
+	 * @return The rejection count.
+	 */
+	public long getRejectionCount()
+	{
+		return counters.get( REJECTIONS );
+	}
+
+
+	/*
+	 * Returns the least frequent of a random sample of entries, the heaviest
+	 * on a tie. Called with the lock held and the cache not empty.
+	 */
+	private Entry<K,V> sampleVictim()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Entry<K,V> victim = null;
+		int victimFrequency = 0;
+		for (int i = Math.min( SAMPLE_SIZE, count ); i > 0; i--) {
+			Entry<K,V> entry = slot( random.nextInt(count) );
+			int frequency = sketch.frequency( entry.key.hashCode() );
+			if (victim == null || frequency < victimFrequency || (frequency == victimFrequency && entry.weight > victim.weight)) {
+				victim = entry;
+				victimFrequency = frequency;
+			}
+		}
+
+		return victim;
+	}
+
+	/*
+	 * Returns the entry in the given slot. Called with the lock held.
+	 */
+	@SuppressWarnings("unchecked")
+	private Entry<K,V> slot( int index )
+	{
+		// slots only hold entries of this cache
+		return (Entry<K,V>) slots[index];
+	}
+
+	/*
+	 * Removes the given entry, moving the last slot into its place. Called
+	 * with the lock held.
+	 */
+	private void remove( Entry<K,V> entry )
+	{
+		entries.remove( entry.key );
+		Entry<?,?> last = slots[--count];
+		last.slot = entry.slot;
+		slots[entry.slot] = last;
+		slots[count] = null;
+		weight -= entry.weight;
+	}
+
+
+	/*
+	 * A cached value and its weight and slot.
+	 */
+	private static class Entry<K,V>
+	{
+		Entry( K key, V value, long weight )
+		{
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+
+		final K key;
+		final V value;
+		final long weight;
+		int slot;
+	}
+
+	/*
+	 * A count-min sketch of key frequencies: four counters per key, each
+	 * capped at 15, with the minimum as the estimate. All counters are halved
+	 * after ten increments per table cell. Updates aren't atomic, as lost
+	 * increments only make an estimate lower.
+	 */
+	private static class FrequencySketch
+	{
+		FrequencySketch( int entries )
+		{
+			int length = Integer.highestOneBit( Math.max(entries, MIN_TABLE) - 1 ) << 1;
+			table = new int[length];
+			mask = length - 1;
+			resetSize = length * RESET_FACTOR;
+		}
+
+		void increment( int hash )
+		{
+			boolean added = false;
+			for (int i = 0; i < SEEDS.length; i++) {
+				int index = index( hash, i );
+				if (table[index] < MAX_COUNT) {
+					table[index]++;
+					added = true;
+				}
+			}
+			if (added && ++additions >= resetSize) reset();
+		}
+
+		int frequency( int hash )
+		{
+			int frequency = MAX_COUNT;
+			for (int i = 0; i < SEEDS.length; i++) {
+				frequency = Math.min( frequency, table[index(hash, i)] );
+			}
+
+			return frequency;
+		}
+
+		private int index( int hash, int row )
+		{
+			int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+			return (h ^ (h >>> 15)) & mask;
+		}
+
+		private void reset()
+		{
+			additions = 0;
+			for (int i = 0; i < table.length; i++) {
+				table[i] >>>= 1;
+			}
+		}
+
+
+		private final int[] table;
+		private final int mask;
+		private final int resetSize;
+		private int additions;
+
+		private final static int MIN_TABLE = 64;
+		private final static int MAX_COUNT = 15;
+		private final static int RESET_FACTOR = 10;
+		private final static int[] SEEDS = {0x9e3779b1, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f};
+	}
+
+
+	// instance members
+	private final int maxEntries;
+	private final long maxWeight;
+	private final ConcurrentMap<K,Entry<K,V>> entries;
+	private final FrequencySketch sketch;
+
+	// guarded by slots
+	private final Entry<?,?>[] slots;
+	private int count;
+	private long weight;
+
+	// striped, as every read counts a hit or miss
+	private final StripedCounters counters = new StripedCounters( COUNTERS );
+
+	private final static int HITS = 0;
+	private final static int MISSES = 1;
+	private final static int EVICTIONS = 2;
+	private final static int REJECTIONS = 3;
+	private final static int COUNTERS = 4;
+	private final static int SAMPLE_SIZE = 8;
+	// object headers, references and map node, roughly
+	private final static int ENTRY_OVERHEAD = 96;
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A JSON response template compiled into literal text and value slots. The
+ * template holds tags, e.g. '@inputType@', inside JSON strings; compiling
+ * finds each tag once, and rendering appends the literals and the values in
+ * their slots, escaped as JSON string content. Templates also render as
+ * UTF-8 bytes, from literals encoded once at compile time, into a buffer
+ * pooled per thread and written to the output in one call.
+ *
+ * A template is immutable and safe for use by concurrent threads.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ResponseTemplate
+{
+	/**
+	 * Compiles the given template text with the given tags. A value rendered
+	 * in the template is given at the index of its tag. Tags may occur any
+	 * number of times, or not at all.
+	 *
+	 * Throws an exception if the template or a tag is null, or a tag is empty.
+	 *
+	 * @param template The template text.
+	 * @param tags The value tags.
+	 * @return The compiled template.
+	 */
+	public static ResponseTemplate compile( String template, String... tags )
+			throws IllegalArgumentException, NullPointerException
+	{
+		for (String tag : tags) {
+			if (tag.isEmpty()) throw new IllegalArgumentException( "Empty template tag." );
+		}
+
+		List<String> literals = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+		int start = 0;
+		while (true) {
+			// earliest tag from start, the longest if tags overlap
+			int found = -1;
+			int slot = -1;
+			for (int i = 0; i < tags.length; i++) {
+				int index = template.indexOf( tags[i], start );
+				if (index >= 0 && (found < 0 || index < found || (index == found && tags[i].length() > tags[slot].length()))) {
+					found = index;
+					slot = i;
+				}
+			}
+			if (found < 0) break;
+
+			literals.add( template.substring(start, found) );
+			slots.add( slot );
+			start = found + tags[slot].length();
+		}
+		literals.add( template.substring(start) );
+
+		int[] slotIndexes = new int[slots.size()];
+		for (int i = 0; i < slotIndexes.length; i++) {
+			slotIndexes[i] = slots.get( i );
+		}
+
+		return new ResponseTemplate( literals.toArray(new String[literals.size()]), slotIndexes, tags.length );
+	}
+
+	/**
+	 * Appends the given text to output as JSON string content, without
+	 * quotes. Quotes, backslashes and control characters are escaped, as are
+	 * the line and paragraph separators for script embedding.
+	 *
+	 * @param text The text to escape.
+	 * @param output The destination.
+	 * @return The output.
+	 */
+	public static StringBuilder escape( CharSequence text, StringBuilder output )
+	{
+		int length = text.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt( i );
+			if (c >= 0x20 && c != '"' && c != '\\' && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR) continue;
+
+			output.append( text, start, i );
+			switch (c) {
+				case '"':
+					output.append( "\\\"" );
+					break;
+				case '\\':
+					output.append( "\\\\" );
+					break;
+				case '\n':
+					output.append( "\\n" );
+					break;
+				case '\r':
+					output.append( "\\r" );
+					break;
+				case '\t':
+					output.append( "\\t" );
+					break;
+				default:
+					output.append( "\\u" );
+					for (int shift = 12; shift >= 0; shift -= 4) {
+						output.append( HEX[(c >> shift) & 0xf] );
+					}
+			}
+			start = i + 1;
+		}
+
+		return output.append( text, start, length );
+	}
+
+
+	/**
+	 * Renders the template with the given values. A null value is rendered
+	 * as empty text.
+	 *
+	 * Throws an exception if the number of values doesn't match the tags.
+	 *
+	 * @param values The values, in the order of the template's tags.
+	 * @return The rendered text.
+	 */
+	public String render( String... values )
+			throws IllegalArgumentException
+	{
+		return appendTo( new StringBuilder(literalLength + VALUE_SIZE_HINT * slots.length), values ).toString();
+	}
+
+	/**
+	 * Appends the template rendered with the given values to output.
+	 *
+	 * Throws an exception if the number of values doesn't match the tags.
+	 *
+	 * @param output The destination.
+	 * @param values The values, in the order of the template's tags.
+	 * @return The output.
+	 */
+	public StringBuilder appendTo( StringBuilder output, String... values )
+			throws IllegalArgumentException
+	{
+		if (values.length != tagCount) {
+			throw new IllegalArgumentException(
+				String.format("Expected %d template values, found %d.", tagCount, values.length) );
+		}
+
+		for (int i = 0; i < slots.length; i++) {
+			output.append( literals[i] );
+			String value = values[slots[i]];
+			if (value != null) escape( value, output );
+		}
+
+		return output.append( literals[slots.length] );
+	}
+
+
+	/**
+	 * Writes the template rendered with the given values to output as UTF-8
+	 * bytes. The output is not flushed.
+	 *
+	 * Throws an exception if the number of values doesn't match the tags, or
+	 * writing the output fails.
+	 *
+	 * @param output The destination.
+	 * @param values The values, in the order of the template's tags.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public void writeTo( OutputStream output, String... values )
+			throws IllegalArgumentException, IOException
+	{
+		if (values.length != tagCount) {
+			throw new IllegalArgumentException(
+				String.format("Expected %d template values, found %d.", tagCount, values.length) );
+		}
+
+		byte[] buffer = buffers.get();
+		if (buffer == null) buffer = new byte[BUFFER_SIZE];
+
+		int length = 0;
+		for (int i = 0; i <= slots.length; i++) {
+			byte[] literal = encodedLiterals[i];
+			if (length + literal.length > buffer.length) buffer = grow( buffer, length + literal.length );
+			System.arraycopy( literal, 0, buffer, length, literal.length );
+			length += literal.length;
+
+			String value = (i < slots.length ? values[slots[i]] : null);
+			if (value == null) continue;
+
+			// at most six bytes per character, as an escape
+			int required = length + value.length() * 6;
+			if (required > buffer.length) buffer = grow( buffer, required );
+			length = encode( value, buffer, length );
+		}
+		output.write( buffer, 0, length );
+
+		if (buffer.length <= MAX_POOLED_SIZE) buffers.set( buffer );
+	}
+
+
+	private ResponseTemplate( String[] literals, int[] slots, int tagCount )
+	{
+		this.literals = literals;
+		this.slots = slots;
+		this.tagCount = tagCount;
+
+		int length = 0;
+		encodedLiterals = new byte[literals.length][];
+		for (int i = 0; i < literals.length; i++) {
+			length += literals[i].length();
+			encodedLiterals[i] = literals[i].getBytes( CHARSET );
+		}
+		this.literalLength = length;
+	}
+
+
+	/*
+	 * Encodes the given text as escaped JSON string content in UTF-8 into
+	 * buffer at the given position, which has room for six bytes per
+	 * character. Returns the position after the encoded text.
+	 */
+	private static int encode( String text, byte[] buffer, int position )
+	{
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt( i );
+			if (c < 0x80) {
+				if (c >= 0x20 && c != '"' && c != '\\') {
+					buffer[position++] = (byte) c;
+				}
+				else {
+					position = encodeEscape( c, buffer, position );
+				}
+			}
+			else if (c < 0x800) {
+				buffer[position++] = (byte) (0xc0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint( c, text.charAt(++i) );
+				buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else if (Character.isSurrogate(c)) {
+				// unpaired, replaced as by String.getBytes
+				buffer[position++] = (byte) '?';
+			}
+			else if (c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+				position = encodeEscape( c, buffer, position );
+			}
+			else {
+				buffer[position++] = (byte) (0xe0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+
+		return position;
+	}
+
+	/*
+	 * Encodes the JSON escape of the given character into buffer at the
+	 * given position. Returns the position after the escape.
+	 */
+	private static int encodeEscape( char c, byte[] buffer, int position )
+	{
+		buffer[position++] = (byte) '\\';
+		switch (c) {
+			case '"':
+			case '\\':
+				buffer[position++] = (byte) c;
+				break;
+			case '\n':
+				buffer[position++] = (byte) 'n';
+				break;
+			case '\r':
+				buffer[position++] = (byte) 'r';
+				break;
+			case '\t':
+				buffer[position++] = (byte) 't';
+				break;
+			default:
+				buffer[position++] = (byte) 'u';
+				for (int shift = 12; shift >= 0; shift -= 4) {
+					buffer[position++] = (byte) HEX[(c >> shift) & 0xf];
+				}
+		}
+
+		return position;
+	}
+
+	/*
+	 * Returns a copy of the given buffer with at least the required length.
+	 */
+	private static byte[] grow( byte[] buffer, int required )
+	{
+		return Arrays.copyOf( buffer, Math.max(required, buffer.length * 2) );
+	}
+
+
+	// instance members
+	private final String[] literals;
+	private final int[] slots;
+	private final int tagCount;
+	private final int literalLength;
+	private final byte[][] encodedLiterals;
+
+	// a plain ThreadLocal holding only a byte array keeps no reference to
+	// the web application's class loader from container threads
+	private final static ThreadLocal<byte[]> buffers = new ThreadLocal<>();
+	private final static int BUFFER_SIZE = 1 << 10;
+	private final static int MAX_POOLED_SIZE = 1 << 16;
+	private final static Charset CHARSET = Charset.forName( "UTF-8" );
+
+	private final static int VALUE_SIZE_HINT = 16;
+	private final static char[] HEX = "0123456789abcdef".toCharArray();
+	private final static char LINE_SEPARATOR = 0x2028;
+	private final static char PARAGRAPH_SEPARATOR = 0x2029;
+}
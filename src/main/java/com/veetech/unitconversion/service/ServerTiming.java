@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import com.veetech.trace.PhaseTimes;
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * The Server-Timing of a sampled validate service request: the durations of
+ * its phases, in milliseconds, as timed by ConversionHandler.getResponse,
+ * and the total duration of the request:
+ *
+ * <pre>
+ *     Server-Timing: resolve;dur=0.041, parse;dur=0.003, convert;dur=0.012, render;dur=0.006, total;dur=0.087
+ * </pre>
+ *
+ * Only the phases the request went through are listed, so a response served
+ * from the response cache lists the total alone. Object creation, when a
+ * unit type is first resolved, is listed as 'create' and is part of
+ * 'resolve'.
+ *
+ * Requests are sampled at a configured rate between 0 (none, the default)
+ * and 1 (all); unsampled requests aren't timed.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class ServerTiming
+{
+	/**
+	 * The name of the response header.
+	 */
+	public final static String HEADER = "Server-Timing";
+
+	/**
+	 * Returns a timing for a request sampled at the given rate, or null if
+	 * the request isn't sampled.
+	 *
+	 * @param rate The fraction of requests to time, from 0 to 1.
+	 * @return The request's timing, or null.
+	 */
+	public static ServerTiming sample( double rate )
+	{
+		if (rate <= 0.0) return null;
+		if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) return null;
+
+		return new ServerTiming();
+	}
+
+	/**
+	 * Returns the sampling rate given by a configured value, or zero if no
+	 * value is given.
+	 *
+	 * Throws an exception if the value isn't a number from 0 to 1.
+	 *
+	 * @param value The rate text, or null.
+	 * @return The sampling rate.
+	 * @throws IllegalArgumentException If the rate is invalid.
+	 */
+	public static double getRate( String value )
+	{
+		if (value == null || value.trim().isEmpty()) return 0.0;
+
+		try {
+			double rate = Double.parseDouble( value.trim() );
+			if (rate >= 0.0 && rate <= 1.0) return rate;
+		}
+		catch (NumberFormatException exc) {
+			// reported below
+		}
+
+		throw new IllegalArgumentException( String.format("Invalid Server-Timing rate '%s'.", value) );
+	}
+
+
+	/**
+	 * Returns the header value of the timed phases and the given total.
+	 *
+	 * @param total The total duration of the request in nanoseconds.
+	 * @return The Server-Timing header value.
+	 */
+	public String getHeaderValue( long total )
+	{
+		StringBuilder header = new StringBuilder( HEADER_SIZE );
+		if (times != null) {
+			for (int i = 0; i < PHASES.length; i++) {
+				if (times.isTimed(PHASES[i])) {
+					appendMetric( header, NAMES[i], times.getNanos(PHASES[i]) ).append( ", " );
+				}
+			}
+		}
+
+		return appendMetric( header, TOTAL, total ).toString();
+	}
+
+
+	private ServerTiming()
+	{
+	}
+
+
+	/*
+	 * Starts timing the phases traced on the current thread.
+	 */
+	void start()
+	{
+		times = Tracing.startTiming();
+	}
+
+	/*
+	 * Stops timing the current thread.
+	 */
+	void stop()
+	{
+		Tracing.stopTiming();
+	}
+
+	/*
+	 * Appends a metric with the given duration, in milliseconds to the
+	 * microsecond.
+	 */
+	private static StringBuilder appendMetric( StringBuilder header, String name, long nanos )
+	{
+		return header.append( name ).append( ";dur=" ).append( String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI) );
+	}
+
+
+	// instance members
+	private PhaseTimes times;
+
+	private final static Tracer.Phase[] PHASES = {
+		Tracer.Phase.TYPE_RESOLUTION, Tracer.Phase.FACTORY, Tracer.Phase.PARSING, Tracer.Phase.CONVERSION,
+		Tracer.Phase.RENDERING
+	};
+	private final static String[] NAMES = {"resolve", "create", "parse", "convert", "render"};
+	private final static String TOTAL = "total";
+	private final static double NANOS_PER_MILLI = 1000000.0;
+	private final static int HEADER_SIZE = 128;
+}
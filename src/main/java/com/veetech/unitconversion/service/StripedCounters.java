@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021 a.cook@veetechis.com.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    a.cook - initial API and implementation and/or initial documentation
+ */
+package com.veetech.unitconversion.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A fixed number of indexed counters, striped to keep concurrent updates
+ * cheap. Each thread adds to the counters of one of several stripes, chosen
+ * by its thread id, so threads on different stripes never contend for a
+ * cache line; a counter's value is the sum over all stripes. This is the
+ * technique of Java 8's LongAdder, kept to a single array for a whole set of
+ * counters and to the Java 7 API.
+ *
+ * Updates are atomic. Reads aren't a snapshot: a counter read while it's
+ * updated may miss updates in progress. Counters are safe for use by
+ * concurrent threads.
+ *
+ * @author a.cook@veetechis.com
+ */
+public final class StripedCounters
+{
+	/**
+	 * Creates the given number of counters, each zero.
+	 *
+	 * Throws an exception if the size is less than one.
+	 *
+	 * @param size The number of counters.
+	 */
+	public StripedCounters( int size )
+			throws IllegalArgumentException
+	{
+		if (size < 1) throw new IllegalArgumentException( "Counters must be at least 1." );
+
+		this.size = size;
+		// whole cache lines per stripe, and a line between stripes
+		this.stride = ((size + LINE_LONGS - 1) / LINE_LONGS + 1) * LINE_LONGS;
+		this.counters = new AtomicLongArray( stride * STRIPES );
+	}
+
+
+	/**
+	 * Adds one to the counter at the given index.
+	 *
+	 * Throws an exception if the index is out of range.
+	 *
+	 * @param index The counter index.
+	 */
+	public void increment( int index )
+			throws IndexOutOfBoundsException
+	{
+		add( index, 1L );
+	}
+
+	/**
+	 * Adds the given amount to the counter at the given index.
+	 *
+	 * Throws an exception if the index is out of range.
+	 *
+	 * @param index The counter index.
+	 * @param delta The amount to add.
+	 */
+	public void add( int index, long delta )
+			throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException( "Counter index " + index + "." );
+
+		counters.getAndAdd( stripe() * stride + index, delta );
+	}
+
+	/**
+	 * Returns the value of the counter at the given index, the sum over all
+	 * stripes.
+	 *
+	 * Throws an exception if the index is out of range.
+	 *
+	 * @param index The counter index.
+	 * @return The counter value.
+	 */
+	public long get( int index )
+			throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException( "Counter index " + index + "." );
+
+		long sum = 0L;
+		for (int offset = index; offset < counters.length(); offset += stride) {
+			sum += counters.get( offset );
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Returns the number of counters.
+	 *
+	 * @return The counter count.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/*
+	 * Returns the calling thread's stripe, from its mixed thread id.
+	 */
+	private static int stripe()
+	{
+		long id = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+		return (int) (id >>> 32) & (STRIPES - 1);
+	}
+
+	/*
+	 * Returns the stripe count, a power of two of at least twice the
+	 * processors, up to a limit.
+	 */
+	private static int stripes()
+	{
+		int processors = Math.min( Runtime.getRuntime().availableProcessors(), MAX_STRIPES / 2 );
+		return Integer.highestOneBit( processors * 2 - 1 ) * 2;
+	}
+
+
+	// instance members
+	private final int size;
+	private final int stride;
+	private final AtomicLongArray counters;
+
+	private final static int LINE_LONGS = 8;
+	private final static int MAX_STRIPES = 64;
+	private final static int STRIPES = stripes();
+}
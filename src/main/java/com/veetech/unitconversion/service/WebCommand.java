@@ -10,16 +10,23 @@
  */
 package com.veetech.unitconversion.service;
 
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
 import com.veetech.unitconversion.CommandLine;
+import com.veetech.unitconversion.ConversionResult;
 import com.veetech.unitconversion.ConversionUtil;
 import com.veetech.unitconversion.domain.Constants;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 
 /**
- * Command processor for Unit Conversion web service.
+ * Command processor for Unit Conversion web service. The service itself
+ * answers requests with ConversionHandler, which renders the same response
+ * bodies without a command per request.
  * 
  * @author a.cook@veetechis.com
  */
@@ -39,7 +46,7 @@ public class WebCommand
 		super( fromType, toType, units, validation );		
 	}
 
-	
+
 	/**
 	 * Returns the conversion result in JSON formation.
 	 * 
@@ -47,7 +54,21 @@ public class WebCommand
 	 */
 	public String getResponseBody()
 	{
-		return responseBody;
+		return (responseValues != null ? responseTemplate.render(responseValues) : null);
+	}
+	
+	/**
+	 * Writes the conversion result in JSON format to the given output as
+	 * UTF-8 bytes. Writes nothing if there is no result. The output is not
+	 * flushed.
+	 * 
+	 * @param output The destination for the result.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	public void writeResponseBody( OutputStream output )
+			throws IOException
+	{
+		if (responseValues != null) responseTemplate.writeTo( output, responseValues );
 	}
 	
 	/**
@@ -62,7 +83,7 @@ public class WebCommand
 		queryToType = null;
 		queryUnits = null;
 		queryValidation = null;
-		responseBody = null;
+		responseValues = null;
 	}
 
 	
@@ -78,7 +99,7 @@ public class WebCommand
 			type = getFromType().getPrintableName();
 		}
 
-		return (type != null ? type : Constants.NO_VALUE);
+		return (ConversionResult.isProvided(type) ? type : Constants.NO_VALUE);
 	}
 	
 	/**
@@ -93,7 +114,7 @@ public class WebCommand
 			type = getToType().getPrintableName();
 		}
 
-		return (type != null ? type : Constants.NO_VALUE);
+		return (ConversionResult.isProvided(type) ? type : Constants.NO_VALUE);
 	}
 	
 	/**
@@ -108,7 +129,7 @@ public class WebCommand
 			value = ConversionUtil.toSingleScale(getUnitValue()).toPlainString();
 		}
 
-		return (value != null ? value : Constants.NO_VALUE);
+		return (ConversionResult.isProvided(value) ? value : Constants.NO_VALUE);
 	}
 	
 	/**
@@ -123,7 +144,7 @@ public class WebCommand
 			value = getOutputValue().toPlainString();
 		}
 
-		return (value != null ? value : Constants.NO_VALUE);
+		return (ConversionResult.isProvided(value) ? value : Constants.NO_VALUE);
 	}
 	
 	/**
@@ -138,7 +159,7 @@ public class WebCommand
 			value = ConversionUtil.toSingleScale(getValidationValue()).toPlainString();
 		}
 
-		return (value != null ? value : Constants.NO_VALUE);
+		return (ConversionResult.isProvided(value) ? value : Constants.NO_VALUE);
 	}
 	
 	/**
@@ -163,6 +184,7 @@ public class WebCommand
 
 	/**
 	 * Creates a result message in JSON format for returning to the web client.
+	 * Creating the message is traced as rendering.
 	 * 
 	 * @param result The result to create.
 	 * @param parms The substitution parameters.
@@ -170,6 +192,7 @@ public class WebCommand
 	@Override
 	protected String printResult( ResultType result, Object[] parms )
 	{
+		Tracer.Span span = Tracing.begin( Tracer.Phase.RENDERING );
 		// We're creating just a simple result message with the following
 		// scheme, so we'll just build it manually for now, e.g.:
 		// {
@@ -206,31 +229,21 @@ public class WebCommand
 					validationResult = "Incorrect";
 				}
 		}
-		HashMap<String,String> templateValues = new HashMap();
-		templateValues.put( Constants.INPUT_TYPE_TAG, getResponseFromType() );
-		templateValues.put( Constants.INPUT_VALUE_TAG, getResponseUnitValue() );
-		templateValues.put( Constants.OUTPUT_TYPE_TAG, getResponseToType() );
-		templateValues.put( Constants.OUTPUT_VALUE_TAG, getResponseOutputValue() );
-		templateValues.put( Constants.VALIDATION_VALUE_TAG, getResponseValidationValue() );
-		templateValues.put( Constants.VALIDATION_RESULT_TAG, validationResult );
-		
-		String printResult = super.printResult( result, parms, false );
-		String[] lines = printResult.split( System.getProperty("line.separator") );
-		if (lines.length == 2) {
-			templateValues.put( Constants.APP_RESULT_TAG, lines[1].trim() );
-		}
-		else {
-			templateValues.put( Constants.APP_RESULT_TAG, lines[0].trim() );
-		}
+		String message = formatResult( result, parms );
+		String[] values = {
+			message, getResponseFromType(), getResponseUnitValue(), getResponseToType(),
+			getResponseOutputValue(), getResponseValidationValue(), validationResult
+		};
 		
+		// per-response logging is debug only, off the request path by default
 		if (log.isDebugEnabled()) {
-			log.debug( String.format("Generating response '%s' from template with values: %s", result.toString(), templateValues) );
+			log.debug( String.format("Generating response '%s' from template with values: %s", result.toString(), Arrays.asList(values)) );
 		}
 		
-		responseBody = ConversionUtil.textFormat(
-				ConversionUtil.getMessageText("responseBodyTemplate"), templateValues );
+		responseValues = values;
+		span.end( values[1], values[3], result.name() );
 		
-		return printResult;
+		return String.format( "%s\n  %s", Constants.VERSION, message );
 	}
 
 	/**
@@ -254,12 +267,18 @@ public class WebCommand
 		return super.validateParameters( fromType, toType, units, validation );
 	}
 
-	
+
 	private String queryFromType;
 	private String queryToType;
 	private String queryUnits;
 	private String queryValidation;
-	private String responseBody;
+	private String[] responseValues;
 	
 	private final static Log log = LogFactory.getLog( WebCommand.class );
+	
+	// compiled once, with values in the order rendered by printResult
+	private final static ResponseTemplate responseTemplate = ResponseTemplate.compile(
+			ConversionUtil.getMessageText("responseBodyTemplate"),
+			Constants.APP_RESULT_TAG, Constants.INPUT_TYPE_TAG, Constants.INPUT_VALUE_TAG, Constants.OUTPUT_TYPE_TAG,
+			Constants.OUTPUT_VALUE_TAG, Constants.VALIDATION_VALUE_TAG, Constants.VALIDATION_RESULT_TAG );
 }
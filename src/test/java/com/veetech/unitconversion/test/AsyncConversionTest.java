@@ -0,0 +1,383 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Constants;
+import com.veetech.unitconversion.service.AsyncConversionServlet;
+import com.veetech.unitconversion.service.ConversionHandler;
+import com.veetech.unitconversion.service.WebCommand;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the async conversion servlet.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class AsyncConversionTest
+{
+	@Test
+	public void asyncConversion()
+			throws Exception
+	{
+		AsyncConversionServlet servlet = createServlet( "2", "10" );
+		try {
+			Exchange exchange = new Exchange( "celsius", "fahrenheit", "100", "212", null );
+			servlet.service( exchange.request, exchange.response );
+			Assert.assertTrue( exchange.completed.await(5, TimeUnit.SECONDS) );
+
+			Assert.assertEquals( 0, exchange.status );
+			Assert.assertEquals( ConversionHandler.getInstance().getEntityTag("celsius", "fahrenheit", "100", "212"), exchange.headers.get("ETag") );
+			Assert.assertEquals( getResponseBody("celsius", "fahrenheit", "100", "212"), exchange.body() );
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+
+	@Test
+	public void notModified()
+			throws Exception
+	{
+		AsyncConversionServlet servlet = createServlet( "1", "1" );
+		try {
+			String entityTag = ConversionHandler.getInstance().getEntityTag( "cups", "tbsp", "2", Constants.NO_VALUE );
+			Exchange exchange = new Exchange( "cups", "tbsp", "2", null, null );
+			exchange.requestHeaders.put( "If-None-Match", "W/" + entityTag );
+			servlet.service( exchange.request, exchange.response );
+
+			Assert.assertEquals( HttpServletResponse.SC_NOT_MODIFIED, exchange.status );
+			Assert.assertEquals( entityTag, exchange.headers.get("ETag") );
+			Assert.assertNull( exchange.listener );
+			Assert.assertEquals( "", exchange.body() );
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+
+	@Test
+	public void serverTiming()
+			throws Exception
+	{
+		AsyncConversionServlet servlet = createServlet( "1", "1", "1" );
+		try {
+			Exchange exchange = new Exchange( "gallons", "cups", "0.375", null, null );
+			servlet.service( exchange.request, exchange.response );
+			Assert.assertTrue( exchange.completed.await(5, TimeUnit.SECONDS) );
+
+			String timing = exchange.headers.get( "Server-Timing" );
+			Assert.assertTrue( timing, timing.contains("convert;dur=") && timing.contains("render;dur=") );
+			Assert.assertTrue( timing, timing.matches(".*, total;dur=[0-9]+\\.[0-9]{3}") );
+			Assert.assertEquals( getResponseBody("gallons", "cups", "0.375", null), exchange.body() );
+		}
+		finally {
+			servlet.destroy();
+		}
+
+		servlet = createServlet( "1", "1" );
+		try {
+			Exchange exchange = new Exchange( "gallons", "cups", "0.375", null, null );
+			servlet.service( exchange.request, exchange.response );
+			Assert.assertTrue( exchange.completed.await(5, TimeUnit.SECONDS) );
+			Assert.assertNull( exchange.headers.get("Server-Timing") );
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+
+	@Test
+	public void conversionError()
+			throws Exception
+	{
+		AsyncConversionServlet servlet = createServlet( "1", "1" );
+		try {
+			Exchange exchange = new Exchange( "celsius", "kelvin", "5", null, null );
+			exchange.failWrite = true;
+			servlet.service( exchange.request, exchange.response );
+			Assert.assertTrue( exchange.completed.await(5, TimeUnit.SECONDS) );
+
+			Assert.assertEquals( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, exchange.status );
+			Assert.assertEquals( 1, exchange.completions );
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+
+	@Test
+	public void queueFull()
+			throws Exception
+	{
+		AsyncConversionServlet servlet = createServlet( "1", "2" );
+		CountDownLatch release = new CountDownLatch( 1 );
+		Exchange running = new Exchange( "liters", "gallons", "22.5", null, release );
+		Exchange queued = new Exchange( "kelvin", "rankine", "-12.25", null, null );
+		Exchange timedOut = new Exchange( "cups", "tbsp", "2", null, null );
+		Exchange rejected = new Exchange( "cups", "tbsp", "1", null, null );
+		try {
+			// the first request holds the only thread, the next two are queued
+			servlet.service( running.request, running.response );
+			Assert.assertTrue( running.started.await(5, TimeUnit.SECONDS) );
+			servlet.service( queued.request, queued.response );
+			servlet.service( timedOut.request, timedOut.response );
+			servlet.service( rejected.request, rejected.response );
+			verifyUnavailable( rejected );
+
+			timedOut.listener.onTimeout( new AsyncEvent(timedOut.async) );
+			verifyUnavailable( timedOut );
+		}
+		finally {
+			release.countDown();
+			servlet.destroy();
+		}
+
+		// a request answered on timeout isn't converted later
+		Assert.assertEquals( getResponseBody("liters", "gallons", "22.5", null), running.body() );
+		Assert.assertEquals( getResponseBody("kelvin", "rankine", "-12.25", null), queued.body() );
+		verifyUnavailable( timedOut );
+	}
+
+
+	/*
+	 * Verifies the exchange was answered with status 503 once.
+	 */
+	void verifyUnavailable( Exchange exchange )
+			throws IOException
+	{
+		Assert.assertEquals( HttpServletResponse.SC_SERVICE_UNAVAILABLE, exchange.status );
+		Assert.assertEquals( "1", exchange.headers.get("Retry-After") );
+		Assert.assertEquals( 1, exchange.completions );
+		Assert.assertTrue( exchange.body().contains(ConversionUtil.getMessageText("serviceBusy")) );
+	}
+
+	/*
+	 * Returns the synchronous response body for the given values.
+	 */
+	String getResponseBody( String fromType, String toType, String units, String validation )
+	{
+		WebCommand web = new WebCommand( fromType, toType, units, validation );
+		web.execute();
+		String response = web.getResponseBody();
+		web.cleanup();
+
+		return response;
+	}
+
+	/*
+	 * Returns an initialized servlet with the given thread count and queue
+	 * depth.
+	 */
+	AsyncConversionServlet createServlet( String threads, String queueDepth )
+			throws Exception
+	{
+		return createServlet( threads, queueDepth, null );
+	}
+
+	/*
+	 * Returns an initialized servlet with the given thread count, queue depth
+	 * and Server-Timing rate.
+	 */
+	AsyncConversionServlet createServlet( String threads, String queueDepth, final String timingRate )
+			throws Exception
+	{
+		final Map<String,String> parameters = new HashMap<>();
+		parameters.put( "threads", threads );
+		parameters.put( "queueDepth", queueDepth );
+
+		final ServletContext context = proxy( ServletContext.class, new InvocationHandler() {
+			@Override
+			public Object invoke( Object proxy, Method method, Object[] args )
+			{
+				return (method.getName().equals("getInitParameter") && args[0].equals(Constants.SERVER_TIMING_PARAM) ?
+						timingRate : null);
+			}
+		} );
+		ServletConfig config = proxy( ServletConfig.class, new InvocationHandler() {
+			@Override
+			public Object invoke( Object proxy, Method method, Object[] args )
+			{
+				switch (method.getName()) {
+					case "getInitParameter":
+						return parameters.get( args[0] );
+					case "getServletContext":
+						return context;
+					default:
+						return null;
+				}
+			}
+		} );
+		AsyncConversionServlet servlet = new AsyncConversionServlet();
+		servlet.init( config );
+
+		return servlet;
+	}
+
+	/*
+	 * Returns a proxy of the given interface. Unhandled methods return null,
+	 * or zero or false for primitive results.
+	 */
+	static <T> T proxy( Class<T> type, final InvocationHandler handler )
+	{
+		InvocationHandler defaults = new InvocationHandler() {
+			@Override
+			public Object invoke( Object proxy, Method method, Object[] args )
+					throws Throwable
+			{
+				Object result = handler.invoke( proxy, method, args );
+				Class<?> resultType = method.getReturnType();
+				if (result != null || !resultType.isPrimitive() || resultType == void.class) return result;
+				if (resultType == boolean.class) return false;
+
+				return (resultType == long.class ? (Object) 0L : (Object) 0);
+			}
+		};
+
+		return type.cast( Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, defaults) );
+	}
+
+
+	/*
+	 * A fake request and response. Writing the response waits for the given
+	 * latch, if any.
+	 */
+	static class Exchange
+	{
+		Exchange( String fromType, String toType, String units, String validation, final CountDownLatch hold )
+		{
+			final Map<String,String[]> parameters = new HashMap<>();
+			parameters.put( "convertFrom", new String[] {fromType} );
+			parameters.put( "CONVERTTO", new String[] {toType} );
+			parameters.put( "unitValue", new String[] {units} );
+			if (validation != null) parameters.put( "validateValue", new String[] {validation} );
+
+			final ServletOutputStream stream = new ServletOutputStream() {
+				@Override
+				public void write( int b )
+						throws IOException
+				{
+					output.write( b );
+				}
+
+				@Override
+				public void write( byte[] b, int off, int len )
+						throws IOException
+				{
+					started.countDown();
+					if (failWrite) throw new IOException( "Connection reset." );
+					try {
+						if (hold != null) hold.await();
+					}
+					catch (InterruptedException exc) {
+						throw new IOException( exc );
+					}
+					output.write( b, off, len );
+				}
+
+				@Override
+				public boolean isReady()
+				{
+					return true;
+				}
+
+				@Override
+				public void setWriteListener( WriteListener listener ) {}
+			};
+
+			response = proxy( HttpServletResponse.class, new InvocationHandler() {
+				@Override
+				public Object invoke( Object proxy, Method method, Object[] args )
+				{
+					switch (method.getName()) {
+						case "getOutputStream":
+							return stream;
+						case "setStatus":
+						case "sendError":
+							status = (Integer) args[0];
+							return null;
+						case "setHeader":
+							headers.put( (String) args[0], (String) args[1] );
+							return null;
+						default:
+							return null;
+					}
+				}
+			} );
+			async = proxy( AsyncContext.class, new InvocationHandler() {
+				@Override
+				public Object invoke( Object proxy, Method method, Object[] args )
+				{
+					switch (method.getName()) {
+						case "getResponse":
+							return response;
+						case "addListener":
+							listener = (AsyncListener) args[0];
+							return null;
+						case "complete":
+							completions++;
+							completed.countDown();
+							return null;
+						default:
+							return null;
+					}
+				}
+			} );
+			request = proxy( HttpServletRequest.class, new InvocationHandler() {
+				@Override
+				public Object invoke( Object proxy, Method method, Object[] args )
+				{
+					switch (method.getName()) {
+						case "getMethod":
+							return "GET";
+						case "getParameterMap":
+							return parameters;
+						case "startAsync":
+							return async;
+						case "getHeader":
+							return requestHeaders.get( args[0] );
+						default:
+							return null;
+					}
+				}
+			} );
+		}
+
+		String body()
+				throws IOException
+		{
+			return output.toString( "UTF-8" );
+		}
+
+		final HttpServletRequest request;
+		final HttpServletResponse response;
+		final AsyncContext async;
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final Map<String,String> headers = new HashMap<>();
+		final Map<String,String> requestHeaders = new HashMap<>();
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch completed = new CountDownLatch( 1 );
+		volatile AsyncListener listener;
+		volatile int status;
+		volatile int completions;
+		volatile boolean failWrite;
+	}
+}
@@ -0,0 +1,283 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.CommandLine;
+import com.veetech.unitconversion.CommandLine.ResultType;
+import com.veetech.unitconversion.ConversionResult;
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.batch.BatchCommand;
+import com.veetech.unitconversion.batch.Grade;
+import com.veetech.unitconversion.batch.GradeCommand;
+import com.veetech.unitconversion.batch.GradeReport;
+import com.veetech.unitconversion.batch.ParallelBatchCommand;
+import com.veetech.unitconversion.domain.Constants;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for batch conversion.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class BatchConversionTest
+{
+	@Test
+	public void resultMessages()
+			throws IOException
+	{
+		String records =
+			"# conversion records" + LINE_SEP +
+			"celsius,fahrenheit,100" + LINE_SEP +
+			" celsius , fahrenheit , 100 , 212 " + LINE_SEP +
+			"celsius,fahrenheit,100,200" + LINE_SEP +
+			LINE_SEP +
+			"celsius,fahrenheit,100,dog" + LINE_SEP +
+			"celsius,fahrenheit,lots" + LINE_SEP +
+			"cups,pints,100" + LINE_SEP +
+			"celsius,cups,100" + LINE_SEP +
+			",fahrenheit,100" + LINE_SEP +
+			"celsius,,100" + LINE_SEP +
+			"celsius,fahrenheit";
+		
+		StringWriter output = new StringWriter();
+		long count = new BatchCommand( new StringReader(records), output ).execute();
+		
+		ResultType[] expected = {
+			ResultType.CONVERTED, ResultType.VALIDATED, ResultType.INCORRECT, ResultType.BAD_VALUE,
+			ResultType.BAD_UNITS, ResultType.BAD_TYPE, ResultType.MISMATCH, ResultType.NO_FROM,
+			ResultType.NO_TO, ResultType.NO_UNITS
+		};
+		String[] lines = output.toString().split( LINE_SEP );
+		Assert.assertEquals( expected.length, count );
+		Assert.assertEquals( expected.length + 1, lines.length );
+		Assert.assertEquals( Constants.VERSION, lines[0] );
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals( "  " + ConversionUtil.getMessageText(expected[i].toString() + "Test"), lines[i + 1] );
+		}
+	}
+
+	@Test
+	public void resultValues()
+	{
+		ConversionResult result = ConversionResult.evaluate( "celsius", "fahrenheit", "100", "212.00" );
+		Assert.assertEquals( ResultType.VALIDATED, result.getResultType() );
+		Assert.assertEquals( "100.0", result.getUnitText() );
+		Assert.assertEquals( "212.0", result.getOutputText() );
+		Assert.assertEquals( "212.0", result.getValidationText() );
+		Assert.assertEquals( String.format(ConversionUtil.getMessageText(ResultType.VALIDATED.toString()),
+				result.getParameters()), result.getMessage() );
+
+		// values as far as they were reached
+		result = ConversionResult.evaluate( "celsius", "cups", "22.25", null );
+		Assert.assertEquals( ResultType.MISMATCH, result.getResultType() );
+		Assert.assertEquals( "22.3", result.getUnitText() );
+		Assert.assertNull( result.getOutputText() );
+		Assert.assertNull( result.getValidationText() );
+
+		// an answer that isn't a number is incorrect, as on the command line
+		result = ConversionResult.evaluate( "celsius", "fahrenheit", "100", "dog" );
+		Assert.assertEquals( ResultType.INCORRECT, result.getResultType() );
+		Assert.assertEquals( "212.0", result.getOutputText() );
+		Assert.assertNull( result.getValidationText() );
+		Assert.assertEquals( Grade.INCORRECT, Grade.of(result.getResultType()) );
+
+		result = ConversionResult.evaluate( "celsius", "fahrenheit", "", "212" );
+		Assert.assertEquals( ResultType.NO_UNITS, result.getResultType() );
+		Assert.assertNull( result.getUnitText() );
+		Assert.assertEquals( ConversionUtil.getMessageText(ResultType.NO_UNITS.toString()), result.getMessage() );
+	}
+
+	@Test
+	public void matchesCommandLine()
+			throws IOException
+	{
+		String[][] records = {
+			{"kelvin", "rankine", "-12.25", null},
+			{"Cubic-Feet", "tbsp", "0.0001", "0.2"},
+			{"liters", "gallons", "22.5", "5.1"},
+			{"F", "C", "1E+3", "537.8"},
+			{"gallons", "kelvin", "3", null},
+			{"tablespoons", "cubic_inches", "1e", null}
+		};
+		
+		StringBuilder input = new StringBuilder();
+		for (String[] record : records) {
+			input.append( record[0] ).append( ',' ).append( record[1] ).append( ',' ).append( record[2] );
+			if (record[3] != null) input.append( ',' ).append( record[3] );
+			input.append( LINE_SEP );
+		}
+		StringWriter output = new StringWriter();
+		new BatchCommand( new StringReader(input.toString()), output ).execute();
+		String[] lines = output.toString().split( LINE_SEP );
+		
+		for (int i = 0; i < records.length; i++) {
+			String[] args = {
+				"--convertFrom=" + records[i][0],
+				"--convertTo=" + records[i][1],
+				"--units=" + records[i][2],
+				"--validate=" + (records[i][3] != null ? records[i][3] : Constants.NO_VALUE)
+			};
+			String[] expected = getCommandLineOutput( args ).split( LINE_BREAK );
+			Assert.assertEquals( 2, expected.length );
+			Assert.assertEquals( expected[0], lines[0] );
+			Assert.assertEquals( expected[1], lines[i + 1] );
+		}
+	}
+
+	@Test
+	public void parallelMatchesSequential()
+			throws IOException
+	{
+		String[] types = {"celsius", "F", "kelvin", "degr", "liters", "gal", "cups", "tbsp", "ft3", "dog"};
+		String[] values = {"100", "-40", "0.05", "1e3", "22.5", "lots", "", "-0.0001"};
+		Random random = new Random( 11 );
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			if (i % 97 == 0) input.append( "# comment " ).append( i ).append( '\n' );
+			if (i % 89 == 0) input.append( "\r\n" );
+			input.append( types[random.nextInt(types.length)] ).append( ',' );
+			input.append( types[random.nextInt(types.length)] ).append( ',' );
+			input.append( values[random.nextInt(values.length)] );
+			if (random.nextBoolean()) input.append( ',' ).append( values[random.nextInt(values.length)] );
+			input.append( i % 3 == 0 ? "\r\n" : "\n" );
+		}
+		input.append( "celsius,fahrenheit,100" );
+
+		File file = File.createTempFile( "records", ".csv" );
+		try {
+			try (OutputStream out = new FileOutputStream(file)) {
+				out.write( input.toString().getBytes("UTF-8") );
+			}
+
+			StringWriter expected = new StringWriter();
+			long expectedCount = new BatchCommand( new StringReader(input.toString()), expected ).execute();
+
+			int[][] settings = {{1, 1 << 22}, {4, 1}, {4, 64}, {3, 1000}};
+			for (int[] setting : settings) {
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				long count;
+				try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+					count = new ParallelBatchCommand( in.getChannel(), output, setting[0], setting[1] ) {}.execute();
+				}
+				Assert.assertEquals( expectedCount, count );
+				Assert.assertEquals( expected.toString(), output.toString("UTF-8") );
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void gradeAnswers()
+			throws IOException
+	{
+		String answers =
+			"# worksheet 1" + LINE_SEP +
+			"ann,celsius,fahrenheit,100,212" + LINE_SEP +
+			"ann, liters , gallons , 22.5 , 5.1 " + LINE_SEP +
+			"bob,celsius,fahrenheit,100,200" + LINE_SEP +
+			"bob,celsius,fahrenheit,100,dog" + LINE_SEP +
+			"bob,celsius,cups,100,1" + LINE_SEP +
+			"cat,celsius,fahrenheit,100" + LINE_SEP +
+			"cat,kelvin,celsius,lots,1" + LINE_SEP;
+		Grade[] expected = {Grade.CORRECT, Grade.CORRECT, Grade.INCORRECT, Grade.INCORRECT, Grade.INVALID, Grade.INVALID, Grade.INVALID};
+		String[] students = {"ann", "ann", "bob", "bob", "bob", "cat", "cat"};
+
+		File file = File.createTempFile( "answers", ".csv" );
+		try {
+			try (OutputStream out = new FileOutputStream(file)) {
+				out.write( answers.getBytes("UTF-8") );
+			}
+
+			for (int chunkSize : new int[] {1, 40, 1 << 20}) {
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				GradeCommand command;
+				try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+					command = new GradeCommand( in.getChannel(), output, 3, chunkSize ) {};
+					Assert.assertEquals( expected.length, command.execute() );
+				}
+
+				String[] lines = output.toString( "UTF-8" ).split( LINE_SEP );
+				Assert.assertEquals( 1 + expected.length + 4, lines.length );
+				Assert.assertEquals( Constants.VERSION, lines[0] );
+				for (int i = 0; i < expected.length; i++) {
+					Assert.assertTrue( lines[i + 1].startsWith("  " + students[i] + ": " + expected[i] + " - ") );
+				}
+				Assert.assertEquals( "  bob: Incorrect - " + ConversionUtil.getMessageText(ResultType.BAD_VALUE.toString() + "Test"), lines[4] );
+				Assert.assertEquals( "  Graded 7 answers: 2 correct, 2 incorrect, 3 invalid, pass rate 50.0%", lines[8] );
+				Assert.assertEquals( "  ann: 2 correct, 0 incorrect, 0 invalid, pass rate 100.0%", lines[9] );
+				Assert.assertEquals( "  bob: 0 correct, 2 incorrect, 1 invalid, pass rate 0.0%", lines[10] );
+				Assert.assertEquals( "  cat: 0 correct, 0 incorrect, 2 invalid, pass rate 0.0%", lines[11] );
+
+				GradeReport report = command.getReport();
+				Assert.assertEquals( 7, report.getTotal() );
+				Assert.assertEquals( 3, report.getCount(Grade.INVALID) );
+				Assert.assertEquals( 1, report.getCount("bob", Grade.INVALID) );
+				Assert.assertEquals( 0, report.getCount("dan", Grade.CORRECT) );
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void missingInput()
+	{
+		String[][] argSets = {{"--batch=missing.csv"}, {"--batch=missing.csv", "--parallel=2"}, {"--grade=missing.csv"}};
+		for (String[] args : argSets) {
+			String[] lines = getCommandLineOutput( args ).split( LINE_BREAK );
+			
+			Assert.assertEquals( 2, lines.length );
+			Assert.assertEquals( Constants.VERSION, lines[0] );
+			Assert.assertEquals( ConversionUtil.getMessageText(ResultType.BAD_INPUT.toString() + "Test"), lines[1].trim() );
+		}
+	}
+
+	@Test
+	public void missingGradeSource()
+	{
+		for (String arg : new String[] {"--grade", "--grade="}) {
+			String[] lines = getCommandLineOutput( new String[] {arg} ).split( LINE_BREAK );
+			
+			Assert.assertTrue( lines.length > 2 );
+			Assert.assertEquals( Constants.VERSION, lines[0] );
+			Assert.assertEquals( Constants.USAGE_HEADER, lines[1].trim() );
+		}
+	}
+
+
+	/*
+	 * Returns the standard output of running the command line with the given
+	 * arguments.
+	 */
+	String getCommandLineOutput( String[] args )
+	{
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream cout = new ByteArrayOutputStream();
+		System.setOut( new PrintStream(cout) );
+		try {
+			CommandLine.main( args );
+		}
+		finally {
+			System.setOut( stdout );
+		}
+		
+		return cout.toString();
+	}
+
+
+	private final static String LINE_SEP = System.getProperty( "line.separator" );
+	private final static String LINE_BREAK = "\r?\n";
+}
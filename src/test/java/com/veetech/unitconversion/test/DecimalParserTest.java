@@ -0,0 +1,163 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.domain.DecimalParser;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the decimal value parser.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class DecimalParserTest
+{
+	@Test
+	public void validValues()
+	{
+		for (String value : VALID) {
+			verify( value );
+		}
+	}
+
+	@Test
+	public void invalidValues()
+	{
+		for (String value : INVALID) {
+			verify( value );
+		}
+		
+		try {
+			DecimalParser.parseDecimal( "abc" );
+			Assert.fail( "Unexpected decimal value for 'abc'." );
+		}
+		catch (NumberFormatException exc) {
+			Assert.assertTrue( true );
+		}
+		
+		try {
+			DecimalParser.parseDecimal( null );
+			Assert.fail( "Unexpected decimal value for 'null'." );
+		}
+		catch (NullPointerException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void randomValues()
+	{
+		Random random = new Random( 20218 );
+		char[] alphabet = "0123456789012345678901234567890123456789.-+eE ".toCharArray();
+		for (int n = 0; n < 200000; n++) {
+			char[] value = new char[1 + random.nextInt(12)];
+			for (int i = 0; i < value.length; i++) {
+				value[i] = alphabet[random.nextInt(alphabet.length)];
+			}
+			verify( new String(value) );
+		}
+	}
+
+	@Test
+	public void compactValues()
+	{
+		DecimalParser parser = new DecimalParser();
+		Assert.assertTrue( parser.parse("-12.50") );
+		Assert.assertTrue( parser.isCompact() );
+		Assert.assertEquals( -1250, parser.getMantissa() );
+		Assert.assertEquals( 2, parser.getScale() );
+		
+		Assert.assertTrue( parser.parse("1E+3") );
+		Assert.assertEquals( 1, parser.getMantissa() );
+		Assert.assertEquals( -3, parser.getScale() );
+		
+		Assert.assertTrue( parser.parse("123456789012345678901234567890") );
+		Assert.assertFalse( parser.isCompact() );
+		Assert.assertEquals( new BigDecimal("123456789012345678901234567890"), parser.toBigDecimal() );
+		
+		Assert.assertFalse( parser.parse("12x") );
+		Assert.assertFalse( parser.isCompact() );
+		try {
+			parser.toBigDecimal();
+			Assert.fail( "Unexpected value after failed parse." );
+		}
+		catch (IllegalStateException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void ranges()
+	{
+		DecimalParser parser = new DecimalParser();
+		String line = "celsius,fahrenheit,-40.5,x";
+		byte[] bytes = line.getBytes( StandardCharsets.US_ASCII );
+		
+		Assert.assertTrue( parser.parse(line, 19, 24) );
+		Assert.assertEquals( new BigDecimal("-40.5"), parser.toBigDecimal() );
+		Assert.assertTrue( parser.parse(bytes, 19, 24) );
+		Assert.assertEquals( -40.5, parser.doubleValue(), 0 );
+		Assert.assertTrue( parser.parse(ByteBuffer.allocateDirect(bytes.length).put(bytes), 19, 24) );
+		Assert.assertEquals( -405, parser.getMantissa() );
+		Assert.assertFalse( parser.parse(bytes, 19, 26) );
+		Assert.assertFalse( parser.parse(bytes, 19, 19) );
+		
+		try {
+			parser.parse( bytes, 20, 30 );
+			Assert.fail( "Unexpected parse of out of bounds range." );
+		}
+		catch (IndexOutOfBoundsException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+
+	/*
+	 * Verifies the parser accepts or rejects the given value as BigDecimal
+	 * does, with the same value, scale and double value.
+	 */
+	void verify( String value )
+	{
+		BigDecimal expected = null;
+		try {
+			expected = new BigDecimal( value );
+		}
+		catch (NumberFormatException exc) {
+			// rejected
+		}
+		
+		DecimalParser parser = new DecimalParser();
+		byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+		Assert.assertEquals( value, expected != null, parser.parse(value) );
+		if (expected != null) {
+			Assert.assertEquals( value, expected, parser.toBigDecimal() );
+			Assert.assertEquals( value, Double.valueOf(expected.doubleValue()), Double.valueOf(parser.doubleValue()) );
+			Assert.assertEquals( value, expected, DecimalParser.parseDecimal(value) );
+			if (bytes.length == value.length()) {
+				Assert.assertTrue( value, parser.parse(bytes, 0, bytes.length) );
+				Assert.assertEquals( value, expected, parser.toBigDecimal() );
+			}
+		}
+		else {
+			Assert.assertFalse( value, parser.parse(bytes, 0, bytes.length) );
+		}
+	}
+
+
+	private final static String[] VALID = {
+		"0", "-0", "+0", "00.000", "1", "-1", "+1", "100", "2.25", "-22.5", ".5", "5.", "-.5", "0.05",
+		"1E+3", "1e3", "1E-3", "-1.5e-10", "12345.6789", "9223372036854775807", "-9223372036854775808",
+		"9223372036854775808", "92233720368547758070", "0.1234567890123456789", "1e2147483647",
+		"1e-2147483647", "1e0000000000001", "4503599627370497", "9007199254740993",
+		"123456789e-30", "1e22", "1e23", "\u0661\u0662.\u0663"
+	};
+	private final static String[] INVALID = {
+		"", "-", "+", ".", "-.", "e1", ".e1", "1e", "1e+", "1e-", "1.2.3", "--1", "+-1", " 1", "1 ",
+		"1e1.5", "1e+-1", "abc", "NaN", "Infinity", "0x10", "1,000", "1e2147483648", "1.0e-2147483648", "1.5e-2147483647", "1e-2147483648",
+		"1e12345678901", "1d", "1f", "\u00bd"
+	};
+}
@@ -0,0 +1,102 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.factory.ObjectFactory;
+import com.veetech.unitconversion.domain.Conversion;
+import com.veetech.unitconversion.domain.temperature.CelsiusConversion;
+import com.veetech.unitconversion.domain.temperature.CelsiusType;
+import com.veetech.unitconversion.domain.volume.CupsType;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the object factory.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class FactoryTest
+{
+	@Test
+	public void createByKey()
+			throws Exception
+	{
+		Object type = factory.createObject( "celsiusType" );
+		Assert.assertTrue( type instanceof CelsiusType );
+		Assert.assertNotSame( type, factory.createObject("celsiusType") );
+
+		Object converter = factory.createObject( "celsius", new Object[] {type} );
+		Assert.assertTrue( converter instanceof CelsiusConversion );
+		Assert.assertEquals( type, ((Conversion)converter).getConversionType() );
+	}
+
+	@Test
+	public void unknownKey()
+			throws Exception
+	{
+		try {
+			factory.createObject( "dogType" );
+			Assert.fail( "Unexpected object for key 'dogType'." );
+		}
+		catch (ClassNotFoundException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void noMatchingConstructor()
+			throws Exception
+	{
+		try {
+			factory.createObject( "celsius", new Object[] {new CupsType()} );
+			Assert.fail( "Unexpected Celsius converter for type 'cups'." );
+		}
+		catch (ClassNotFoundException exc) {
+			Assert.assertTrue( true );
+		}
+
+		try {
+			factory.createObject( "celsius" );
+			Assert.fail( "Unexpected Celsius converter without type." );
+		}
+		catch (ClassNotFoundException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void concurrentCreate()
+			throws Exception
+	{
+		final AtomicInteger created = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run()
+				{
+					try {
+						for (int n = 0; n < 1000; n++) {
+							Object type = factory.createObject( "kelvinType" );
+							if (factory.createObject("kelvin", new Object[] {type}) != null) {
+								created.incrementAndGet();
+							}
+						}
+					}
+					catch (ClassNotFoundException | InstantiationException exc) {
+						// counted as missing
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals( 8000, created.get() );
+	}
+
+
+	private final ObjectFactory factory = ObjectFactory.getInstance();
+}
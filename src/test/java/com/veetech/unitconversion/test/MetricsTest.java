@@ -0,0 +1,145 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.CommandLine.ResultType;
+import com.veetech.unitconversion.domain.ConversionUnit;
+import com.veetech.unitconversion.service.ConversionHandler;
+import com.veetech.unitconversion.service.ConversionMetrics;
+import com.veetech.unitconversion.service.LatencyHistogram;
+import com.veetech.unitconversion.service.RequestCoalescer;
+import com.veetech.unitconversion.service.ResponseCache;
+import com.veetech.unitconversion.service.StripedCounters;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the validate service metrics.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class MetricsTest
+{
+	@Test
+	public void countConcurrently()
+			throws InterruptedException
+	{
+		final StripedCounters counters = new StripedCounters( 3 );
+		ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+		for (int t = 0; t < THREADS; t++) {
+			executor.execute( new Runnable() {
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < COUNT; i++) {
+						counters.increment( 1 );
+						counters.add( 2, 2L );
+					}
+				}
+			} );
+		}
+		executor.shutdown();
+		Assert.assertTrue( executor.awaitTermination(10, TimeUnit.SECONDS) );
+
+		Assert.assertEquals( 0L, counters.get(0) );
+		Assert.assertEquals( (long) THREADS * COUNT, counters.get(1) );
+		Assert.assertEquals( 2L * THREADS * COUNT, counters.get(2) );
+		try {
+			counters.increment( 3 );
+			Assert.fail( "Expected exception for index out of range." );
+		}
+		catch (IndexOutOfBoundsException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void estimateQuantiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals( 0L, LatencyHistogram.getQuantile(histogram.getCounts(), 0.5) );
+
+		// 90 in (500, 1000] ns, 10 in (25, 50] us
+		for (int i = 0; i < 90; i++) histogram.record( 800L );
+		for (int i = 0; i < 10; i++) histogram.record( 40000L );
+		histogram.record( -1L );
+
+		long[] counts = histogram.getCounts();
+		Assert.assertEquals( 1L, counts[0] );
+		Assert.assertEquals( 90 * 800L + 10 * 40000L, histogram.getSum() );
+
+		long median = LatencyHistogram.getQuantile( counts, 0.5 );
+		Assert.assertTrue( median > 500L && median <= 1000L );
+		long tail = LatencyHistogram.getQuantile( counts, 0.99 );
+		Assert.assertTrue( tail > 25000L && tail <= 50000L );
+
+		// beyond the last bound
+		histogram.record( Long.MAX_VALUE );
+		long[] bounds = LatencyHistogram.getBounds();
+		Assert.assertEquals( 1L, histogram.getCounts()[bounds.length] );
+		Assert.assertEquals( bounds[bounds.length - 1], LatencyHistogram.getQuantile(histogram.getCounts(), 1.0) );
+	}
+
+	@Test
+	public void writePrometheusText()
+	{
+		ConversionMetrics metrics = new ConversionMetrics( new ResponseCache<String,byte[]>(10, 1000),
+				new RequestCoalescer<String,byte[]>() );
+		metrics.recordResult( ConversionUnit.CELSIUS, ConversionUnit.FAHRENHEIT, ResultType.VALIDATED );
+		metrics.recordResult( ConversionUnit.CELSIUS, ConversionUnit.FAHRENHEIT, ResultType.INCORRECT );
+		metrics.recordResult( null, null, ResultType.NO_FROM );
+		metrics.recordLatency( 2000000L );
+
+		String text = metrics.getText();
+		Assert.assertTrue( text.contains("unitconversion_conversions_total{from=\"celsius\",to=\"fahrenheit\"} 2\n") );
+		Assert.assertTrue( text.contains("unitconversion_conversions_total{from=\"unknown\",to=\"unknown\"} 1\n") );
+		Assert.assertFalse( text.contains("to=\"cups\"") );
+		Assert.assertTrue( text.contains("unitconversion_results_total{result=\"VALIDATED\"} 1\n") );
+		Assert.assertTrue( text.contains("unitconversion_results_total{result=\"MISMATCH\"} 0\n") );
+		Assert.assertTrue( text.contains("unitconversion_request_duration_seconds_bucket{le=\"0.001\"} 0\n") );
+		Assert.assertTrue( text.contains("unitconversion_request_duration_seconds_bucket{le=\"0.0025\"} 1\n") );
+		Assert.assertTrue( text.contains("unitconversion_request_duration_seconds_bucket{le=\"+Inf\"} 1\n") );
+		Assert.assertTrue( text.contains("unitconversion_request_duration_seconds_sum 0.002\n") );
+		Assert.assertTrue( text.contains("unitconversion_request_duration_seconds_count 1\n") );
+		Assert.assertTrue( text.contains("unitconversion_response_cache_entries 0\n") );
+
+		// every sample line is a name, optional labels and a number
+		for (String line : text.split("\n")) {
+			Assert.assertTrue( line, line.startsWith("# ") || line.matches("[a-z_]+(\\{.*\\})? -?[0-9.]+") );
+		}
+	}
+
+	@Test
+	public void recordResponses()
+	{
+		ConversionHandler handler = ConversionHandler.getInstance();
+		String before = handler.getMetrics().getText();
+
+		// counted by result, whether converted or cached
+		handler.getResponseBytes( "cups", "liters", "3", "0.7" );
+		handler.getResponseBytes( "cup", "l", "3", "0.7" );
+		String after = handler.getMetrics().getText();
+		Assert.assertEquals( getCount(before, "{from=\"cups\",to=\"liters\"}") + 2, getCount(after, "{from=\"cups\",to=\"liters\"}") );
+		Assert.assertEquals( getCount(before, "{result=\"VALIDATED\"}") + 2, getCount(after, "{result=\"VALIDATED\"}") );
+	}
+
+
+	/*
+	 * Returns the value of the sample with the given labels in the given
+	 * metrics text, or zero if there's none.
+	 */
+	long getCount( String text, String labels )
+	{
+		int index = text.indexOf( labels + " " );
+		if (index < 0) return 0L;
+
+		int start = index + labels.length() + 1;
+		return Long.parseLong( text.substring(start, text.indexOf('\n', start)) );
+	}
+
+
+	private final static int THREADS = 4;
+	private final static int COUNT = 100000;
+}
@@ -0,0 +1,363 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.Conversion;
+import com.veetech.unitconversion.domain.ConversionPlan;
+import com.veetech.unitconversion.domain.ConversionType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for compiled conversion plans.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class PlanConversionTest
+		extends ConversionTestBase
+{
+	@Test
+	public void nullValue()
+	{
+		try {
+			getPlan( null, getConversionType("celsius") );
+			Assert.fail( "Unexpected plan from type 'null'." );
+		}
+		catch (NullPointerException exc) {
+			Assert.assertTrue( true );
+		}
+
+		try {
+			getPlan( getConversionType("celsius"), null );
+			Assert.fail( "Unexpected plan to type 'null'." );
+		}
+		catch (NullPointerException exc) {
+			Assert.assertTrue( true );
+		}
+
+		try {
+			getPlan( getConversionType("celsius"), getConversionType("kelvin") ).convert( null );
+			Assert.fail( "Unexpected successful conversion of value 'null'." );
+		}
+		catch (NullPointerException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void typeMismatch()
+	{
+		try {
+			getPlan( getConversionType("fahrenheit"), getConversionType("gallons") );
+			Assert.fail( "Unexpected plan from fahrenheit to gallons." );
+		}
+		catch (UnsupportedOperationException exc) {
+			Assert.assertTrue( true );
+		}
+
+		try {
+			getPlan( getConversionType("cubic_feet"), getConversionType("celsius") );
+			Assert.fail( "Unexpected plan from cubic feet to celsius." );
+		}
+		catch (UnsupportedOperationException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void sharedPlan()
+	{
+		ConversionPlan plan = getPlan( getConversionType("celsius"), getConversionType("fahrenheit") );
+		Assert.assertSame( plan, getPlan(getConversionType("celsius"), getConversionType("fahrenheit")) );
+		Assert.assertEquals( getConversionType("celsius"), plan.getFromType() );
+		Assert.assertEquals( getConversionType("fahrenheit"), plan.getToType() );
+		Assert.assertEquals( "212.0", plan.convertUnits("100").toPlainString() );
+	}
+
+	@Test
+	public void matchesTemperatureConverters()
+	{
+		verifyAll( TEMPERATURES );
+	}
+
+	@Test
+	public void matchesVolumeConverters()
+	{
+		verifyAll( VOLUMES );
+	}
+
+	@Test
+	public void fixedPointTenths()
+	{
+		for (String[] types : new String[][] {TEMPERATURES, VOLUMES}) {
+			for (String from : types) {
+				Conversion converter = getConverter( getConversionType(from) );
+				for (String to : types) {
+					ConversionType toType = getConversionType( to );
+					ConversionPlan plan = getPlan( getConversionType(from), toType );
+					for (int scale = 1; scale <= 2; scale++) {
+						for (long mantissa = -30000; mantissa <= 30000; mantissa++) {
+							verifyTenths( converter, plan, toType, mantissa, scale );
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void fixedPointExtremes()
+	{
+		Random random = new Random( 20219 );
+		long[] mantissas = {
+			0, 1, -1, 5, -5, 15, -15, 25, -25, 45, -45, 50, -50, 2731500, -2731500, 45967, -45967,
+			999999999, 1000000000, -1000000000, 999999999999999999L, -999999999999999999L,
+			Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE / 1000, Long.MIN_VALUE / 1000
+		};
+		
+		for (String[] types : new String[][] {TEMPERATURES, VOLUMES}) {
+			for (String from : types) {
+				Conversion converter = getConverter( getConversionType(from) );
+				for (String to : types) {
+					ConversionType toType = getConversionType( to );
+					ConversionPlan plan = getPlan( getConversionType(from), toType );
+					for (long mantissa : mantissas) {
+						for (int scale = -20; scale <= 40; scale++) {
+							verifyTenths( converter, plan, toType, mantissa, scale );
+						}
+					}
+					for (int i = 0; i < 2000; i++) {
+						long mantissa = random.nextLong() >> random.nextInt( 64 );
+						verifyTenths( converter, plan, toType, mantissa, random.nextInt(40) - 10 );
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void doubleConversion()
+	{
+		ConversionPlan plan = getPlan( getConversionType("celsius"), getConversionType("fahrenheit") );
+		Assert.assertEquals( 212.0, plan.convert(100.0), 0 );
+		Assert.assertEquals( -40.0, plan.convert(-40.0), 0 );
+		Assert.assertEquals( 212.0, ConversionUtil.convert(100.0, getConversionType("celsius"), getConversionType("fahrenheit")), 0 );
+		Assert.assertEquals( 5.1, ConversionUtil.convert(22.5, getConversionType("liters"), getConversionType("gallons")), 0 );
+		Assert.assertTrue( Double.isNaN(plan.convert(Double.NaN)) );
+	}
+
+	@Test
+	public void doubleErrorBound()
+	{
+		verifyDoubles( TEMPERATURES );
+		verifyDoubles( VOLUMES );
+	}
+
+	@Test
+	public void bulkConversion()
+	{
+		Random random = new Random( 20212 );
+		double[] in = new double[1031];
+		for (int i = 0; i < in.length; i++) {
+			in[i] = (random.nextInt(2000000) - 1000000) / 100.0;
+		}
+		
+		for (String[] types : new String[][] {TEMPERATURES, VOLUMES}) {
+			for (String from : types) {
+				for (String to : types) {
+					ConversionPlan plan = getPlan( getConversionType(from), getConversionType(to) );
+					double[] out = new double[in.length];
+					plan.convertAll( in, out );
+					for (int i = 0; i < in.length; i++) {
+						Assert.assertEquals( String.format("%s %s to %s", in[i], from, to), plan.convert(in[i]), out[i], 0 );
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void bulkEdgeValues()
+	{
+		double[] in = {
+			0.0, -0.0, 0.05, -0.05, 0.25, -0.25, 1e15, -1e15, 1e300, -1e300,
+			Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE,
+			4503599627370495.5, -4503599627370495.5, 273.15, -459.67, 98.6, 1
+		};
+		
+		for (String[] types : new String[][] {TEMPERATURES, VOLUMES}) {
+			for (String from : types) {
+				for (String to : types) {
+					ConversionPlan plan = getPlan( getConversionType(from), getConversionType(to) );
+					double[] out = new double[in.length];
+					plan.convertAll( in, out );
+					for (int i = 0; i < in.length; i++) {
+						Assert.assertEquals( String.format("%s %s to %s", in[i], from, to),
+								Double.valueOf(plan.convert(in[i]) + 0.0), Double.valueOf(out[i] + 0.0) );
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void bulkSlices()
+	{
+		ConversionPlan plan = getPlan( getConversionType("liters"), getConversionType("gallons") );
+		double[] in = {1, 22.5, 100, -22.5, 7};
+		double[] out = {-1, -1, -1, -1, -1, -1};
+		
+		plan.convertAll( in, 1, out, 2, 3 );
+		Assert.assertArrayEquals( new double[] {-1, -1, 5.1, 22.7, -5.1, -1}, out, 0 );
+		
+		plan.convertAll( in, 0, in, 0, 2 );
+		Assert.assertArrayEquals( new double[] {0.2, 5.1, 100, -22.5, 7}, in, 0 );
+		
+		try {
+			plan.convertAll( in, 3, out, 0, 3 );
+			Assert.fail( "Unexpected conversion of out of bounds slice." );
+		}
+		catch (IndexOutOfBoundsException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void bulkBuffers()
+	{
+		ConversionPlan plan = getPlan( getConversionType("celsius"), getConversionType("fahrenheit") );
+		DoubleBuffer in = DoubleBuffer.wrap( new double[] {0, 100, -40, 37} );
+		DoubleBuffer out = DoubleBuffer.allocate( 4 );
+		in.position( 1 );
+		out.position( 1 );
+		
+		plan.convertAll( in, out );
+		Assert.assertEquals( 4, in.position() );
+		Assert.assertEquals( 4, out.position() );
+		Assert.assertArrayEquals( new double[] {0, 212, -40, 98.6}, out.array(), 0 );
+		
+		DoubleBuffer direct = ByteBuffer.allocateDirect( 32 ).asDoubleBuffer();
+		in.rewind();
+		plan.convertAll( in, direct );
+		direct.flip();
+		Assert.assertEquals( 32.0, direct.get(0), 0 );
+		Assert.assertEquals( 98.6, direct.get(3), 0 );
+		
+		in.rewind();
+		try {
+			plan.convertAll( in, DoubleBuffer.allocate(3) );
+			Assert.fail( "Unexpected conversion to short buffer." );
+		}
+		catch (BufferOverflowException exc) {
+			Assert.assertEquals( 0, in.position() );
+		}
+	}
+
+
+	/*
+	 * Verifies double conversions for every pair of the given types are
+	 * within one tenth of the BigDecimal conversion and are rarely off.
+	 */
+	void verifyDoubles( String[] types )
+	{
+		Random random = new Random( 20211 );
+		BigDecimal bound = new BigDecimal( "0.1" );
+		int samples = 0;
+		int rounded = 0;
+		
+		for (String from : types) {
+			for (String to : types) {
+				ConversionPlan plan = getPlan( getConversionType(from), getConversionType(to) );
+				for (int i = 0; i < 5000; i++) {
+					BigDecimal units = BigDecimal.valueOf( random.nextInt(2000000) - 1000000, random.nextInt(4) );
+					BigDecimal expected = plan.convert( units );
+					BigDecimal actual = BigDecimal.valueOf( plan.convert(units.doubleValue()) );
+					BigDecimal difference = expected.subtract( actual ).abs();
+
+					Assert.assertTrue( String.format("%s %s to %s: %s != %s", units, from, to, expected, actual),
+							difference.compareTo(bound) <= 0 );
+					if (difference.signum() != 0) rounded++;
+					samples++;
+				}
+			}
+		}
+		
+		Assert.assertTrue( String.format("%d of %d conversions rounded differently", rounded, samples),
+				rounded * 1000 < samples );
+	}
+
+	/*
+	 * Verifies plans for every pair of the given types return the same
+	 * values as the corresponding unit converter.
+	 */
+	void verifyAll( String[] types )
+	{
+		for (String from : types) {
+			Conversion converter = getConverter( getConversionType(from) );
+			for (String to : types) {
+				ConversionType toType = getConversionType( to );
+				ConversionPlan plan = getPlan( getConversionType(from), toType );
+				for (String units : SAMPLES) {
+					BigDecimal expected = converter.convertUnits( units, toType );
+					BigDecimal actual = plan.convert( new BigDecimal(units) );
+					Assert.assertEquals( String.format("%s %s to %s", units, from, to), expected, actual );
+					Assert.assertEquals( String.format("%s %s to %s", units, from, to), expected, plan.convert(new BigDecimal(units), scratch) );
+				}
+				for (int tenths = -20000; tenths <= 20000; tenths += 7) {
+					String units = BigDecimal.valueOf( tenths, 1 ).toPlainString();
+					Assert.assertEquals( String.format("%s %s to %s", units, from, to),
+							converter.convertUnits(units, toType), plan.convertUnits(units) );
+				}
+			}
+		}
+	}
+
+	/*
+	 * Verifies the plan's tenths conversion of the given value equals the
+	 * converter's BigDecimal conversion, or fails alike if out of range.
+	 */
+	void verifyTenths( Conversion converter, ConversionPlan plan, ConversionType toType, long mantissa, int scale )
+	{
+		String units = BigDecimal.valueOf( mantissa, scale ).toString();
+		BigInteger expected = converter.convertUnits( units, toType ).unscaledValue();
+		String message = String.format( "%s to %s", units, plan );
+		if (expected.bitLength() > 63) {
+			try {
+				plan.convertTenths( mantissa, scale );
+				Assert.fail( "Unexpected conversion of out of range value " + message );
+			}
+			catch (ArithmeticException exc) {
+				Assert.assertTrue( true );
+			}
+		}
+		else {
+			Assert.assertEquals( message, expected.longValue(), plan.convertTenths(mantissa, scale) );
+			Assert.assertEquals( message, expected.longValue(), plan.convertTenths(mantissa, scale, scratch) );
+		}
+	}
+
+	ConversionPlan getPlan( ConversionType fromType, ConversionType toType )
+	{
+		return ConversionUtil.getConversionPlan( fromType, toType );
+	}
+
+
+	private final ConversionPlan.Scratch scratch = new ConversionPlan.Scratch();
+
+	private final static String[] TEMPERATURES = {
+		"celsius", "fahrenheit", "kelvin", "rankine"
+	};
+	private final static String[] VOLUMES = {
+		"cubic_feet", "cubic_inches", "cups", "gallons", "liters", "tablespoons"
+	};
+	private final static String[] SAMPLES = {
+		"0", "100", "-40", "2.25", "22.5", "225", "2250", "0.05", "-0.05", "-0.25", "0.15",
+		"273.15", "-273.15", "459.67", "98.6", "1E+3", "12345.6789", "-9876.54321", "0.00001"
+	};
+}
@@ -0,0 +1,138 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.service.RequestCoalescer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for coalescing concurrent conversions.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class RequestCoalescerTest
+{
+	@Test
+	public void shareResult()
+			throws Exception
+	{
+		final RequestCoalescer<String,String> coalescer = new RequestCoalescer<>();
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final AtomicInteger runs = new AtomicInteger();
+		final Callable<String> computation = new Callable<String>() {
+			@Override
+			public String call()
+					throws InterruptedException
+			{
+				runs.incrementAndGet();
+				release.await();
+				return "result";
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool( CALLERS );
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < CALLERS; i++) {
+				results.add( executor.submit(new Callable<String>() {
+					@Override
+					public String call()
+					{
+						return coalescer.execute( "key", computation );
+					}
+				}) );
+			}
+			awaitCoalesced( coalescer, CALLERS - 1 );
+			Assert.assertEquals( 1, coalescer.getInFlightCount() );
+			release.countDown();
+
+			for (Future<String> result : results) {
+				Assert.assertEquals( "result", result.get(5, TimeUnit.SECONDS) );
+			}
+			Assert.assertEquals( 1, runs.get() );
+			Assert.assertEquals( 0, coalescer.getInFlightCount() );
+
+			// nothing is kept once the computation ends
+			Assert.assertEquals( "result", coalescer.execute("key", computation) );
+			Assert.assertEquals( 2, runs.get() );
+		}
+		finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void shareException()
+			throws Exception
+	{
+		final RequestCoalescer<String,String> coalescer = new RequestCoalescer<>();
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final Callable<String> computation = new Callable<String>() {
+			@Override
+			public String call()
+					throws InterruptedException
+			{
+				release.await();
+				throw new IllegalArgumentException( "bad request" );
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				results.add( executor.submit(new Callable<String>() {
+					@Override
+					public String call()
+					{
+						return coalescer.execute( "key", computation );
+					}
+				}) );
+			}
+			awaitCoalesced( coalescer, 1 );
+			release.countDown();
+
+			for (Future<String> result : results) {
+				try {
+					result.get( 5, TimeUnit.SECONDS );
+					Assert.fail( "Expected exception from computation." );
+				}
+				catch (ExecutionException exc) {
+					Assert.assertTrue( exc.getCause() instanceof IllegalArgumentException );
+				}
+			}
+		}
+		finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+
+	/*
+	 * Waits until the given number of calls are coalesced.
+	 */
+	void awaitCoalesced( RequestCoalescer<?,?> coalescer, long count )
+			throws InterruptedException
+	{
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+		while (coalescer.getCoalescedCount() < count) {
+			Assert.assertTrue( "Calls not coalesced.", System.nanoTime() < deadline );
+			Thread.sleep( 1 );
+		}
+	}
+
+
+	private final static int CALLERS = 8;
+}
@@ -0,0 +1,131 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.service.ConversionHandler;
+import com.veetech.unitconversion.service.ResponseCache;
+import com.veetech.unitconversion.service.WebCommand;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the web response cache.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class ResponseCacheTest
+{
+	@Test
+	public void cacheBodies()
+	{
+		ResponseCache<String,byte[]> cache = new ResponseCache<>( 10, 1 << 20 );
+		byte[] body = {1, 2, 3};
+
+		Assert.assertNull( cache.get("a") );
+		Assert.assertTrue( cache.put("a", body, 1) );
+		Assert.assertFalse( cache.put("a", new byte[] {4}, 1) );
+		Assert.assertSame( body, cache.get("a") );
+		Assert.assertSame( body, cache.peek("a") );
+		Assert.assertNull( cache.peek("b") );
+
+		Assert.assertEquals( 1, cache.size() );
+		Assert.assertEquals( 1, cache.getHitCount() );
+		Assert.assertEquals( 1, cache.getMissCount() );
+		Assert.assertTrue( cache.getWeight() > body.length );
+	}
+
+	@Test
+	public void evictInfrequent()
+	{
+		ResponseCache<String,byte[]> cache = new ResponseCache<>( 4, 1 << 20 );
+		for (int i = 0; i < 4; i++) {
+			String key = "hot" + i;
+			for (int n = 0; n < 5; n++) cache.get( key );
+			Assert.assertTrue( cache.put(key, new byte[10], key.length()) );
+		}
+
+		// a one-off request can't displace the hot set
+		Assert.assertNull( cache.get("cold") );
+		Assert.assertFalse( cache.put("cold", new byte[10], 4) );
+		Assert.assertEquals( 1, cache.getRejectionCount() );
+
+		// a request more frequent than the hot set can
+		for (int n = 0; n < 10; n++) cache.get( "warm" );
+		Assert.assertTrue( cache.put("warm", new byte[10], 4) );
+		Assert.assertEquals( 1, cache.getEvictionCount() );
+		Assert.assertEquals( 4, cache.size() );
+		Assert.assertNotNull( cache.get("warm") );
+	}
+
+	@Test
+	public void boundWeight()
+	{
+		ResponseCache<String,byte[]> cache = new ResponseCache<>( 100, 1000 );
+		Assert.assertFalse( cache.put("big", new byte[1000], 1006) );
+
+		int count = 0;
+		for (int i = 0; i < 100; i++) {
+			String key = "key" + i;
+			for (int n = 0; n <= i % 10; n++) cache.get( key );
+			if (cache.put(key, new byte[200], 200 + key.length() * 2)) count++;
+		}
+		Assert.assertTrue( count > cache.size() );
+		Assert.assertTrue( cache.getWeight() <= 1000 );
+	}
+
+	@Test
+	public void invalidSize()
+	{
+		try {
+			new ResponseCache<String,byte[]>( 0, 1 );
+			Assert.fail( "Expected exception for zero entries." );
+		}
+		catch (IllegalArgumentException exc) {
+			Assert.assertTrue( true );
+		}
+		try {
+			new ResponseCache<String,byte[]>( 1, 0 );
+			Assert.fail( "Expected exception for zero weight." );
+		}
+		catch (IllegalArgumentException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void cacheResponses()
+	{
+		byte[] body = handler.getResponseBytes( "liters", "gallons", "3.5", "0.9" );
+		Assert.assertEquals( getResponseBody("liters", "gallons", "3.5", "0.9"), new String(body, UTF8) );
+
+		// unit names resolve to the same entry, once cached
+		long hits = handler.getResponseCache().getHitCount();
+		Assert.assertSame( body, handler.getResponseBytes("l", "GAL", "3.5", "0.9") );
+		Assert.assertEquals( hits + 1, handler.getResponseCache().getHitCount() );
+
+		// names are echoed as given when a value is missing
+		String missing = new String( handler.getResponseBytes("l", "GAL", "NONE", "0.9"), UTF8 );
+		Assert.assertEquals( getResponseBody("l", "GAL", "NONE", "0.9"), missing );
+		Assert.assertEquals( getResponseBody("liters", "gallons", "NONE", "0.9"),
+				new String(handler.getResponseBytes("liters", "gallons", "NONE", "0.9"), UTF8) );
+		Assert.assertFalse( missing.equals(getResponseBody("liters", "gallons", "NONE", "0.9")) );
+	}
+
+
+	/*
+	 * Returns the uncached response body for the given values.
+	 */
+	String getResponseBody( String fromType, String toType, String units, String validation )
+	{
+		WebCommand web = new WebCommand( fromType, toType, units, validation );
+		web.execute();
+		String response = web.getResponseBody();
+		web.cleanup();
+
+		return response;
+	}
+
+
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
+	private final static Charset UTF8 = Charset.forName( "UTF-8" );
+}
@@ -0,0 +1,223 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.domain.Constants;
+import com.veetech.unitconversion.service.ConversionHandler;
+import com.veetech.unitconversion.service.ConversionServer;
+import com.veetech.unitconversion.service.WebCommand;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the standalone conversion server.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class ServerConversionTest
+{
+	@BeforeClass
+	public static void startServer()
+			throws IOException
+	{
+		server = ConversionServer.start( 0 );
+	}
+
+	@AfterClass
+	public static void stopServer()
+	{
+		server.stop();
+	}
+
+
+	@Test
+	public void sendValidation()
+			throws IOException
+	{
+		HttpURLConnection connection = open(
+				"/service/validate?convertFrom=celsius&CONVERTTO=fahrenheit&unitValue=100&validateValue=212" );
+
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertEquals( "application/json;charset=UTF-8", connection.getContentType() );
+		Assert.assertEquals( getResponseBody("celsius", "fahrenheit", "100", "212"), read(connection) );
+	}
+
+	@Test
+	public void sendEncodedValues()
+			throws IOException
+	{
+		HttpURLConnection connection = open(
+				"/service/validate?convertFrom=cubic%20feet&convertTo=l&unitValue=%2B1.5&convertTo=gallons" );
+
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertEquals( getResponseBody("cubic feet", "l", "+1.5", Constants.NO_VALUE), read(connection) );
+	}
+
+	@Test
+	public void sendMissingValues()
+			throws IOException
+	{
+		HttpURLConnection connection = open( "/service/validate?convertTo=fahrenheit" );
+
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertEquals( getResponseBody(Constants.NO_VALUE, "fahrenheit", Constants.NO_VALUE, Constants.NO_VALUE),
+				read(connection) );
+	}
+
+	@Test
+	public void sendConditional()
+			throws IOException
+	{
+		String query = "/service/validate?convertFrom=gallons&convertTo=liters&unitValue=2";
+		HttpURLConnection connection = open( query );
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertEquals( Constants.RESPONSE_CACHE_CONTROL, connection.getHeaderField("Cache-Control") );
+		String entityTag = connection.getHeaderField( "ETag" );
+		Assert.assertEquals( ConversionHandler.getInstance().getEntityTag("gallons", "liters", "2", Constants.NO_VALUE), entityTag );
+		read( connection );
+
+		connection = open( "/service/validate?convertFrom=gal&convertTo=L&unitValue=2" );
+		connection.setRequestProperty( "If-None-Match", "\"other\", " + entityTag );
+		Assert.assertEquals( 304, connection.getResponseCode() );
+		Assert.assertEquals( entityTag, connection.getHeaderField("ETag") );
+
+		connection = open( query + "&validateValue=7.6" );
+		connection.setRequestProperty( "If-None-Match", entityTag );
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertFalse( entityTag.equals(connection.getHeaderField("ETag")) );
+	}
+
+	@Test
+	public void sendBadRequests()
+			throws IOException
+	{
+		Assert.assertEquals( 400, open("/service/validate?convertFrom=%zz").getResponseCode() );
+		Assert.assertEquals( 404, open("/service/validate/more").getResponseCode() );
+
+		HttpURLConnection connection = open( "/service/validate" );
+		connection.setRequestMethod( "POST" );
+		Assert.assertEquals( 405, connection.getResponseCode() );
+	}
+
+	@Test
+	public void sendMetrics()
+			throws IOException
+	{
+		read( open("/service/validate?convertFrom=kelvin&convertTo=rankine&unitValue=10") );
+
+		HttpURLConnection connection = open( "/service/metrics" );
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertTrue( connection.getContentType().startsWith("text/plain; version=0.0.4") );
+		String metrics = read( connection );
+		Assert.assertTrue( metrics.contains("unitconversion_conversions_total{from=\"kelvin\",to=\"rankine\"} ") );
+		Assert.assertTrue( metrics.contains("# TYPE unitconversion_request_duration_seconds histogram\n") );
+		Assert.assertFalse( metrics.contains("unitconversion_request_duration_seconds_count 0\n") );
+	}
+
+	@Test
+	public void sendServerTiming()
+			throws IOException
+	{
+		String query = "/service/validate?convertFrom=cubic%20inches&convertTo=tablespoons&unitValue=12.375";
+		HttpURLConnection connection = open( query );
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertNull( connection.getHeaderField("Server-Timing") );
+		read( connection );
+
+		ConversionServer timed = ConversionServer.start( 0, 1.0 );
+		try {
+			// phases of a conversion, then of the cached response
+			connection = open( timed, query + "&validateValue=4.1" );
+			Assert.assertEquals( 200, connection.getResponseCode() );
+			String timing = connection.getHeaderField( "Server-Timing" );
+			Assert.assertTrue( timing, timing.matches(
+					"resolve;dur=[0-9.]+, (create;dur=[0-9.]+, )?parse;dur=[0-9.]+, convert;dur=[0-9.]+, render;dur=[0-9.]+, total;dur=[0-9.]+") );
+			read( connection );
+
+			connection = open( timed, query + "&validateValue=4.1" );
+			Assert.assertTrue( connection.getHeaderField("Server-Timing").matches("total;dur=[0-9]+\\.[0-9]{3}") );
+			read( connection );
+		}
+		finally {
+			timed.stop();
+		}
+	}
+
+	@Test
+	public void sendResources()
+			throws IOException
+	{
+		HttpURLConnection connection = open( "/" );
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertTrue( connection.getContentType().startsWith("text/html") );
+		Assert.assertTrue( read(connection).contains("scripts/conversion.js") );
+
+		connection = open( "/scripts/conversion.js" );
+		Assert.assertEquals( 200, connection.getResponseCode() );
+		Assert.assertTrue( read(connection).contains(Constants.CONTEXT_PATH + "/service/validate") );
+
+		Assert.assertEquals( 404, open("/missing.html").getResponseCode() );
+		Assert.assertEquals( 404, open("/scripts/../../webapp/index.html").getResponseCode() );
+	}
+
+
+	/*
+	 * Returns the synchronous response body for the given values.
+	 */
+	String getResponseBody( String fromType, String toType, String units, String validation )
+	{
+		WebCommand web = new WebCommand( fromType, toType, units, validation );
+		web.execute();
+		String response = web.getResponseBody();
+		web.cleanup();
+
+		return response;
+	}
+
+	/*
+	 * Returns a connection to the given path under the context path.
+	 */
+	HttpURLConnection open( String path )
+			throws IOException
+	{
+		return open( server, path );
+	}
+
+	/*
+	 * Returns a connection to the given path under the given server's context
+	 * path.
+	 */
+	HttpURLConnection open( ConversionServer server, String path )
+			throws IOException
+	{
+		URL url = new URL( String.format("http://localhost:%d%s%s", server.getPort(), Constants.CONTEXT_PATH, path) );
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	/*
+	 * Returns the response body of the given connection as UTF-8 text.
+	 */
+	String read( HttpURLConnection connection )
+			throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream input = connection.getInputStream()) {
+			byte[] buffer = new byte[1024];
+			int count;
+			while ((count = input.read(buffer)) >= 0) {
+				bytes.write( buffer, 0, count );
+			}
+		}
+
+		return bytes.toString( "UTF-8" );
+	}
+
+
+	private static ConversionServer server;
+}
@@ -0,0 +1,106 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.trace.PhaseTimes;
+import com.veetech.trace.Tracer;
+import com.veetech.trace.Tracing;
+import com.veetech.unitconversion.service.ServerTiming;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for tracing and Server-Timing.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class TracingTest
+{
+	@Test
+	public void configuredTracer()
+	{
+		Tracer tracer = Tracing.getTracer();
+		Assert.assertNotNull( tracer );
+		if (hasJfr()) {
+			Assert.assertEquals( "com.veetech.trace.JfrTracer", tracer.getClass().getName() );
+		}
+	}
+
+	@Test
+	public void endSpans()
+	{
+		// events are disabled unless a recording enables them
+		for (Tracer.Phase phase : Tracer.Phase.values()) {
+			Tracer.Span span = Tracing.begin( phase );
+			Assert.assertSame( Tracing.NO_SPAN, span );
+			span.end( "cups", "liters", null );
+			span.end( null, null, null );
+		}
+	}
+
+	@Test
+	public void timePhases()
+			throws InterruptedException
+	{
+		PhaseTimes times = Tracing.startTiming();
+		try {
+			Tracer.Span outer = Tracing.begin( Tracer.Phase.CONVERSION );
+			Tracer.Span inner = Tracing.begin( Tracer.Phase.CONVERSION );
+			Thread.sleep( 2 );
+			inner.end( null, null, null );
+			outer.end( null, null, null );
+			outer.end( null, null, null );
+		}
+		finally {
+			Tracing.stopTiming();
+		}
+		Assert.assertSame( Tracing.NO_SPAN, Tracing.begin(Tracer.Phase.CONVERSION) );
+
+		// nested span counted once
+		Assert.assertTrue( times.isTimed(Tracer.Phase.CONVERSION) );
+		Assert.assertTrue( times.getNanos(Tracer.Phase.CONVERSION) >= 2000000L );
+		Assert.assertTrue( times.getNanos(Tracer.Phase.CONVERSION) < 1000000000L );
+		Assert.assertFalse( times.isTimed(Tracer.Phase.RENDERING) );
+		Assert.assertEquals( 0L, times.getNanos(Tracer.Phase.RENDERING) );
+	}
+
+	@Test
+	public void sampleServerTiming()
+	{
+		Assert.assertNull( ServerTiming.sample(0.0) );
+		Assert.assertNotNull( ServerTiming.sample(1.0) );
+		Assert.assertEquals( "total;dur=1.250", ServerTiming.sample(1.0).getHeaderValue(1250000L) );
+
+		int sampled = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (ServerTiming.sample(0.1) != null) sampled++;
+		}
+		Assert.assertTrue( sampled > 800 && sampled < 1200 );
+
+		Assert.assertEquals( 0.0, ServerTiming.getRate(null), 0.0 );
+		Assert.assertEquals( 0.25, ServerTiming.getRate(" 0.25 "), 0.0 );
+		for (String rate : new String[] {"1.5", "-0.1", "often"}) {
+			try {
+				ServerTiming.getRate( rate );
+				Assert.fail( String.format("Unexpected rate for '%s'.", rate) );
+			}
+			catch (IllegalArgumentException exc) {
+				Assert.assertTrue( true );
+			}
+		}
+	}
+
+
+	/*
+	 * Returns true if this JVM has Java Flight Recorder events.
+	 */
+	boolean hasJfr()
+	{
+		try {
+			Class.forName( "jdk.jfr.Event" );
+			return true;
+		}
+		catch (ClassNotFoundException exc) {
+			return false;
+		}
+	}
+}
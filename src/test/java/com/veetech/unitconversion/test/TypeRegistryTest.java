@@ -0,0 +1,89 @@
+package com.veetech.unitconversion.test;
+
+import com.veetech.unitconversion.ConversionUtil;
+import com.veetech.unitconversion.domain.ConversionType;
+import com.veetech.unitconversion.domain.ConversionUnit;
+import com.veetech.unitconversion.domain.UnitResolver;
+import com.veetech.unitconversion.domain.temperature.CelsiusType;
+import com.veetech.unitconversion.domain.volume.CupsType;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Unit tests for the conversion unit registry.
+ *
+ * @author a.cook@veetechis.com
+ */
+public class TypeRegistryTest
+		extends ConversionTestBase
+{
+	@Test
+	public void canonicalTypes()
+	{
+		Assert.assertSame( ConversionUnit.CELSIUS.getType(), getConversionType("celsius") );
+		Assert.assertSame( getConversionType("cubic_feet"), getConversionType("Cubic-Feet") );
+		Assert.assertSame( ConversionUnit.TABLESPOONS, getConversionType("tablespoons").getUnit() );
+		
+		for (ConversionUnit unit : ConversionUnit.values()) {
+			Assert.assertSame( unit, unit.getType().getUnit() );
+			Assert.assertSame( unit.getType(), getConversionType(unit.getType().getFactoryKey()) );
+		}
+	}
+
+	@Test
+	public void typeEquality()
+	{
+		ConversionType celsius = new CelsiusType();
+		Assert.assertEquals( getConversionType("celsius"), celsius );
+		Assert.assertEquals( getConversionType("celsius").hashCode(), celsius.hashCode() );
+		Assert.assertFalse( celsius.equals(new CupsType()) );
+		Assert.assertFalse( celsius.equals(ConversionUnit.CELSIUS) );
+		
+		Set<Integer> hashes = new HashSet<>();
+		for (ConversionUnit unit : ConversionUnit.values()) {
+			hashes.add( unit.getType().hashCode() );
+		}
+		Assert.assertEquals( ConversionUnit.values().length, hashes.size() );
+	}
+
+	@Test
+	public void resolveNames()
+	{
+		Assert.assertSame( ConversionUnit.CUBIC_FEET, UnitResolver.resolve("cubic_feet") );
+		Assert.assertSame( ConversionUnit.CUBIC_FEET, UnitResolver.resolve("Cubic-Feet") );
+		Assert.assertSame( ConversionUnit.CUBIC_FEET, UnitResolver.resolve("cubic feet") );
+		Assert.assertSame( ConversionUnit.CUBIC_FEET, UnitResolver.resolve("CUFT") );
+		Assert.assertSame( ConversionUnit.CUBIC_FEET, UnitResolver.resolve("ft3") );
+		Assert.assertSame( ConversionUnit.CUBIC_INCHES, UnitResolver.resolve("cu.in.") );
+		Assert.assertSame( ConversionUnit.FAHRENHEIT, UnitResolver.resolve("F") );
+		Assert.assertSame( ConversionUnit.CELSIUS, UnitResolver.resolve("c") );
+		Assert.assertSame( ConversionUnit.LITERS, UnitResolver.resolve("l") );
+		Assert.assertSame( ConversionUnit.LITERS, UnitResolver.resolve("Litres") );
+		Assert.assertSame( ConversionUnit.TABLESPOONS, UnitResolver.resolve("tbsp") );
+		Assert.assertSame( ConversionUnit.TABLESPOONS, UnitResolver.resolve(new StringBuilder("TableSpoons")) );
+		Assert.assertSame( ConversionUnit.GALLONS.getType(), getConversionType("gal") );
+		
+		for (String name : new String[] {"", "_", "dog", "PONY", "pints", "cubic", "celsiusx", "cel sius s", "ft"}) {
+			Assert.assertNull( name, UnitResolver.resolve(name) );
+		}
+		
+		try {
+			UnitResolver.resolve( null );
+			Assert.fail( "Unexpected unit for name 'null'." );
+		}
+		catch (NullPointerException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void sharedConverters()
+	{
+		Assert.assertSame( getConverter(getConversionType("kelvin")), getConverter(getConversionType("kelvin")) );
+		Assert.assertSame( getConverter(getConversionType("cups")), ConversionUtil.getConverter(new CupsType()) );
+		Assert.assertSame( getConversionType("cups"), getConverter(new CupsType()).getConversionType() );
+	}
+}
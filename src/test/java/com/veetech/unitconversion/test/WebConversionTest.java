@@ -1,7 +1,16 @@
 package com.veetech.unitconversion.test;
 
+import com.veetech.unitconversion.ConversionUtil;
 import com.veetech.unitconversion.domain.Constants;
+import com.veetech.unitconversion.service.BatchConversion;
+import com.veetech.unitconversion.service.ConversionHandler;
+import com.veetech.unitconversion.service.ResponseTemplate;
 import com.veetech.unitconversion.service.WebCommand;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -139,6 +148,279 @@ public class WebConversionTest
 	}
 	
 	
+	// Request:
+	// convertFrom=cel"si$us\1, convertTo=fahrenheit, unitValue=100
+	//
+	// Response:
+	// inputType=cel"si$us\1, escaped in the JSON text
+	@Test
+	public void sendEscapedValues()
+			throws ParseException
+	{
+		String type = "cel\"si$us\\1\t@outputType@";
+		WebCommand web = new WebCommand( type, "fahrenheit", "100", Constants.NO_VALUE );
+		web.execute();
+		
+		String response = web.getResponseBody();
+		web.cleanup();
+		
+		JSONObject json = (JSONObject) parser.parse( response );
+		Assert.assertEquals( type, json.get("inputType") );
+		Assert.assertEquals( "fahrenheit", json.get("outputType") );
+		Assert.assertEquals( "Invalid: Can not convert unknown unit type '" + type + "'.", json.get("appResult") );
+	}
+
+	@Test
+	public void renderTemplate()
+	{
+		ResponseTemplate template = ResponseTemplate.compile( "[@a@|@ab@|@b@|@a@]", "@a@", "@ab@", "@b@" );
+		Assert.assertEquals( "[1|2|3|1]", template.render("1", "2", "3") );
+		Assert.assertEquals( "[|\\\\\\\"|\\n\\u0001\\u2028|]", template.render(null, "\\\"", "\n\u0001\u2028") );
+		Assert.assertEquals( "no tags", ResponseTemplate.compile("no tags", "@a@").render("1") );
+		
+		try {
+			template.render( "1", "2" );
+			Assert.fail( "Unexpected rendering with missing value." );
+		}
+		catch (IllegalArgumentException exc) {
+			Assert.assertTrue( true );
+		}
+	}
+
+	@Test
+	public void writeTemplateBytes()
+			throws IOException
+	{
+		ResponseTemplate template = ResponseTemplate.compile( "{\"a\": \"@a@\", \"b\": \"@b@\"}", "@a@", "@b@" );
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			large.append( "\u00b0C\"" );
+		}
+		String[][] values = {
+			{"100.0", null},
+			{"\u00b0F \u2103 \ud83c\udf21", "\\\"\n\u0001\u2028"},
+			{"\ud83c", "x\udf21"},
+			{large.toString(), "\u65e5\u672c"},
+			{"short", "after large"}
+		};
+		for (String[] value : values) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			template.writeTo( output, value );
+			Assert.assertArrayEquals( template.render(value).getBytes("UTF-8"), output.toByteArray() );
+		}
+
+		WebCommand web = new WebCommand( "celsius", "fahrenheit", "100", "212" );
+		web.execute();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		web.writeResponseBody( output );
+		Assert.assertEquals( web.getResponseBody(), output.toString("UTF-8") );
+		web.cleanup();
+		
+		output.reset();
+		web.writeResponseBody( output );
+		Assert.assertEquals( 0, output.size() );
+		Assert.assertNull( web.getResponseBody() );
+	}
+
+	@Test
+	public void matchesTextFormat()
+	{
+		String[][] requests = {
+			{"celsius", "fahrenheit", "100", "212"},
+			{"liters", "gallons", "22.5", "5"},
+			{"kelvin", "cups", "1", Constants.NO_VALUE},
+			{"dog", "cups", "1", Constants.NO_VALUE}
+		};
+		for (String[] request : requests) {
+			WebCommand web = new WebCommand( request[0], request[1], request[2], request[3] );
+			web.execute();
+			String response = web.getResponseBody();
+			web.cleanup();
+
+			// the template text with the response's values substituted as text
+			JSONObject json = verifyJson( response );
+			HashMap<String,String> values = new HashMap<>();
+			values.put( Constants.APP_RESULT_TAG, (String) json.get("appResult") );
+			values.put( Constants.INPUT_TYPE_TAG, (String) json.get("inputType") );
+			values.put( Constants.INPUT_VALUE_TAG, (String) json.get("inputValue") );
+			values.put( Constants.OUTPUT_TYPE_TAG, (String) json.get("outputType") );
+			values.put( Constants.OUTPUT_VALUE_TAG, (String) json.get("outputValue") );
+			values.put( Constants.VALIDATION_VALUE_TAG, (String) json.get("validationValue") );
+			values.put( Constants.VALIDATION_RESULT_TAG, (String) json.get("validation") );
+			Assert.assertEquals( ConversionUtil.textFormat(ConversionUtil.getMessageText("responseBodyTemplate"), values), response );
+		}
+	}
+
+	@Test
+	public void matchEntityTags()
+	{
+		String entityTag = handler.getEntityTag( "celsius", "fahrenheit", "100", "212" );
+		Assert.assertTrue( entityTag.matches("\"[0-9a-f]{32}\"") );
+
+		// equal responses share a tag, different ones don't
+		Assert.assertEquals( entityTag, handler.getEntityTag("C", "F", "100", "212") );
+		Assert.assertFalse( entityTag.equals(handler.getEntityTag("celsius", "fahrenheit", "100", "212.0")) );
+		Assert.assertFalse( entityTag.equals(handler.getEntityTag("celsius", "fahrenheit", "100", Constants.NO_VALUE)) );
+		Assert.assertFalse( handler.getEntityTag("C", "F", Constants.NO_VALUE, "212").equals(
+				handler.getEntityTag("celsius", "fahrenheit", Constants.NO_VALUE, "212")) );
+
+		// a cached response keeps the same tag
+		String uncached = handler.getEntityTag( "liters", "cups", "3.5", "14.8" );
+		Assert.assertEquals( uncached, handler.getResponse("liters", "cups", "3.5", "14.8").getEntityTag() );
+		Assert.assertEquals( uncached, handler.getEntityTag("liters", "cups", "3.5", "14.8") );
+
+		Assert.assertTrue( ConversionHandler.matchesEntityTag(entityTag, entityTag) );
+		Assert.assertTrue( ConversionHandler.matchesEntityTag("\"a\", W/" + entityTag, entityTag) );
+		Assert.assertTrue( ConversionHandler.matchesEntityTag("*", entityTag) );
+		Assert.assertFalse( ConversionHandler.matchesEntityTag("\"a\"", entityTag) );
+		Assert.assertFalse( ConversionHandler.matchesEntityTag(null, entityTag) );
+	}
+
+	// Request:
+	// the same values to the command and the handler
+	//
+	// Response:
+	// the same response body, for every kind of result
+	@Test
+	public void handlerMatchesCommand()
+			throws IOException
+	{
+		String[][] requests = {
+			{"celsius", "fahrenheit", "100", "212"},
+			{"C", "f", "100", "200"},
+			{"liters", "gallons", "22.5", Constants.NO_VALUE},
+			{"liters", "gallons", "22.5", "some"},
+			{"kelvin", "rankine", "-12.25", "22.1"},
+			{"celsius", "cups", "100", "5"},
+			{"celsius", "fahrenheit", "some", "212"},
+			{"dog", "fahrenheit", "100", Constants.NO_VALUE},
+			{"celsius", "dog", "100", Constants.NO_VALUE},
+			{"celsius", "fahrenheit", Constants.NO_VALUE, "212"},
+			{Constants.NO_VALUE, "fahrenheit", "100", Constants.NO_VALUE},
+			{"celsius", null, "100", null},
+			{"celsius", "fahrenheit", "", "212"},
+			{"", "fahrenheit", "100", ""},
+			{null, null, null, null}
+		};
+		for (String[] request : requests) {
+			WebCommand web = new WebCommand( request[0], request[1], request[2], request[3] );
+			web.execute();
+			String response = web.getResponseBody();
+			web.cleanup();
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			handler.writeResponseBody( request[0], request[1], request[2], request[3], output );
+			Assert.assertEquals( response, output.toString("UTF-8") );
+		}
+
+		// an empty value is not provided, as in batch mode
+		Assert.assertArrayEquals( handler.getResponseBytes("celsius", "fahrenheit", Constants.NO_VALUE, "212"),
+				handler.getResponseBytes("celsius", "fahrenheit", "", "212") );
+	}
+
+	// Request:
+	// [{convertFrom=celsius, convertTo=fahrenheit, unitValue=100, validateValue=212},
+	//  {convertFrom=celsius, convertTo=fahrenheit, unitValue=100, validateValue=200}, ...]
+	//
+	// Response:
+	// an array of the responses to each request
+	@Test
+	public void sendBatchArray()
+			throws IOException, ParseException
+	{
+		String requests = "[ {\"convertFrom\": \"celsius\", \"convertTo\": \"fahrenheit\", \"unitValue\": 100, \"validateValue\": \"212\"},\n" +
+				"{\"CONVERTFROM\": \"celsius\", \"convertTo\": \"fahrenheit\", \"unitValue\": \"100\", \"validateValue\": 2.0e2, \"extra\": true},\n" +
+				"{\"convertFrom\": \"celsius\", \"convertTo\": \"fahrenheit\", \"unitValue\": \"some\", \"validateValue\": null},\n" +
+				"{\"convertFrom\": \"celsius\", \"convertTo\": \"cups\", \"unitValue\": 100},\n" +
+				"{\"convertFrom\": \"\\u0063elsius\", \"convertTo\": \"fahrenheit\", \"unitValue\": 100},\n" +
+				"{} ]";
+		BatchConversion batch = BatchConversion.read( new StringReader(requests), 10 );
+		Assert.assertTrue( batch.isComplete() );
+		Assert.assertEquals( 6, batch.size() );
+		Assert.assertEquals( "application/json", batch.getMediaType() );
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		batch.write( output );
+		JSONArray responses = (JSONArray) parser.parse( output.toString("UTF-8") );
+		Assert.assertEquals( 6, responses.size() );
+
+		verify( (JSONObject) responses.get(0), "100.0", "212.0", "212.0", "Correct" );
+		verify( (JSONObject) responses.get(1), "100.0", "212.0", "200.0", "Incorrect" );
+		verify( (JSONObject) responses.get(2), "some", Constants.NO_VALUE, Constants.NO_VALUE, "Invalid" );
+		verify( (JSONObject) responses.get(3), "100.0", Constants.NO_VALUE, Constants.NO_VALUE, "Invalid" );
+		verify( (JSONObject) responses.get(4), "100.0", "212.0", Constants.NO_VALUE, Constants.NO_VALUE );
+		verify( (JSONObject) responses.get(5), Constants.NO_VALUE, Constants.NO_VALUE, Constants.NO_VALUE, "Invalid" );
+	}
+
+	// Request:
+	// newline-delimited request objects
+	//
+	// Response:
+	// one line per response, as the single request response
+	@Test
+	public void sendBatchLines()
+			throws IOException
+	{
+		String requests = "{\"convertFrom\": \"liters\", \"convertTo\": \"gallons\", \"unitValue\": \"22.5\", \"validateValue\": \"5.1\"}\n" +
+				"\n" +
+				"{\"convertFrom\": \"kelvin\", \"convertTo\": \"rankine\", \"unitValue\": \"-12.25\"}\r\n";
+		BatchConversion batch = BatchConversion.read( new StringReader(requests), 2 );
+		Assert.assertTrue( batch.isComplete() );
+		Assert.assertEquals( BatchConversion.APPLICATION_NDJSON, batch.getMediaType() );
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		batch.write( output );
+		String[] lines = output.toString( "UTF-8" ).split( "\n" );
+		Assert.assertEquals( 2, lines.length );
+
+		String[][] singles = {{"liters", "gallons", "22.5", "5.1"}, {"kelvin", "rankine", "-12.25", Constants.NO_VALUE}};
+		for (int i = 0; i < singles.length; i++) {
+			WebCommand web = new WebCommand( singles[i][0], singles[i][1], singles[i][2], singles[i][3] );
+			web.execute();
+			Assert.assertEquals( web.getResponseBody(), lines[i] );
+			web.cleanup();
+		}
+	}
+
+	@Test
+	public void sendBatchTooLarge()
+			throws IOException
+	{
+		String requests = "[{\"unitValue\": 1}, {\"unitValue\": 2}, {\"unitValue\": 3}]";
+		Assert.assertTrue( BatchConversion.read(new StringReader(requests), 3).isComplete() );
+		
+		BatchConversion batch = BatchConversion.read( new StringReader(requests), 2 );
+		Assert.assertFalse( batch.isComplete() );
+		Assert.assertEquals( 2, batch.size() );
+	}
+
+	@Test
+	public void sendBatchInvalid()
+			throws IOException
+	{
+		String[] requests = {
+			"\"celsius\"",
+			"[{\"unitValue\": 1} {\"unitValue\": 2}]",
+			"[{\"unitValue\": 1}",
+			"[{\"unitValue\": 1}] x",
+			"{\"unitValue\": [1]}",
+			"{\"unitValue\": 1x}",
+			"{\"unitValue\": \"1}",
+			"{\"unitValue\": \"\\q\"}",
+			"{unitValue: 1}"
+		};
+		for (String request : requests) {
+			try {
+				BatchConversion.read( new StringReader(request), 10 );
+				Assert.fail( String.format("Unexpected batch for request '%s'.", request) );
+			}
+			catch (IllegalArgumentException exc) {
+				Assert.assertTrue( true );
+			}
+		}
+	}
+	
+	
 	/*
 	 * Verifies the given JSON response message has the specified values.
 	 * 
@@ -151,20 +433,43 @@ public class WebConversionTest
 	void verify( String response, String inputValue, String outputValue, String validationValue, String validation )
 	{
 		try {
-			JSONObject json = (JSONObject) parser.parse( response );
-			Assert.assertEquals( inputValue, json.get("inputValue") );
-			Assert.assertEquals( outputValue, json.get("outputValue") );
-			Assert.assertEquals( validationValue, json.get("validationValue") );
-			Assert.assertEquals( validation, json.get("validation") );
-			Assert.assertNotEquals( null, json.get("appResult") );
-			
-			Assert.assertEquals( Constants.VERSION, json.get("appVersion") );
+			verify( (JSONObject) parser.parse(response), inputValue, outputValue, validationValue, validation );
 		}
 		catch (ParseException exc) {
 			Assert.fail( String.format("JSON parsing error for response message\n%s", response) );
 		}
 	}
+
+	/*
+	 * Returns the given response parsed as a JSON object.
+	 */
+	JSONObject verifyJson( String response )
+	{
+		try {
+			return (JSONObject) parser.parse( response );
+		}
+		catch (ParseException exc) {
+			Assert.fail( String.format("JSON parsing error for response message\n%s", response) );
+			return null;
+		}
+	}
+
+	/*
+	 * Verifies the given parsed JSON response has the specified values.
+	 */
+	void verify( JSONObject json, String inputValue, String outputValue, String validationValue, String validation )
+	{
+		Assert.assertEquals( inputValue, json.get("inputValue") );
+		Assert.assertEquals( outputValue, json.get("outputValue") );
+		Assert.assertEquals( validationValue, json.get("validationValue") );
+		Assert.assertEquals( validation, json.get("validation") );
+		Assert.assertNotEquals( null, json.get("appResult") );
+		
+		Assert.assertEquals( Constants.VERSION, json.get("appVersion") );
+	}
 	
 	
 	JSONParser parser;
+
+	private final static ConversionHandler handler = ConversionHandler.getInstance();
 }